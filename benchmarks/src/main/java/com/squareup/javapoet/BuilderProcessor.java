@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileObject;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+
+/**
+ * A processor shaped like a typical builder generator. For each class in the round, and each of
+ * its nested classes, it writes a {@code Foo_Builder} with a field and a setter per field of
+ * {@code Foo}. It records where its time goes: converting mirrors with {@link
+ * TypeName#get(javax.lang.model.type.TypeMirror)}, constructing specs, rendering, and Filer I/O.
+ */
+final class BuilderProcessor extends AbstractProcessor {
+  private static final String SUFFIX = "_Builder";
+
+  private Filer filer;
+
+  int rounds;
+  int filesWritten;
+  long processNanos;
+  long typeNameNanos;
+  long specNanos;
+  long renderNanos;
+  long filerNanos;
+
+  @Override public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    filer = new TimingFiler(processingEnv.getFiler());
+  }
+
+  @Override public Set<String> getSupportedAnnotationTypes() {
+    return Collections.singleton("*");
+  }
+
+  @Override public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override public boolean process(Set<? extends TypeElement> annotations,
+      RoundEnvironment roundEnv) {
+    long start = System.nanoTime();
+    rounds++;
+    for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+      if (!type.getSimpleName().toString().endsWith(SUFFIX)) {
+        generate(type);
+      }
+    }
+    processNanos += System.nanoTime() - start;
+    return false;
+  }
+
+  private void generate(TypeElement type) {
+    if (type.getKind() != ElementKind.CLASS) return;
+
+    long start = System.nanoTime();
+    List<TypeVariableName> typeVariables = new ArrayList<>();
+    for (TypeParameterElement typeParameter : type.getTypeParameters()) {
+      typeVariables.add(TypeVariableName.get(typeParameter));
+    }
+    List<VariableElement> fields = ElementFilter.fieldsIn(type.getEnclosedElements());
+    List<TypeName> fieldTypes = new ArrayList<>(fields.size());
+    for (VariableElement field : fields) {
+      fieldTypes.add(TypeName.get(field.asType()));
+    }
+    long converted = System.nanoTime();
+    typeNameNanos += converted - start;
+
+    ClassName className = ClassName.get(type);
+    ClassName builderName = ClassName.get(className.packageName(),
+        String.join("_", className.simpleNames()) + SUFFIX);
+    TypeName builderType = typeVariables.isEmpty()
+        ? builderName
+        : ParameterizedTypeName.get(builderName, typeVariables.toArray(new TypeName[0]));
+    TypeSpec.Builder builder = TypeSpec.classBuilder(builderName)
+        .addOriginatingElement(type)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .addTypeVariables(typeVariables)
+        .addJavadoc("Builds instances of {@link $T}.\n", ClassName.get(type));
+    CodeBlock.Builder describe = CodeBlock.builder()
+        .add("return $S", className.simpleName() + "{");
+    for (int i = 0; i < fields.size(); i++) {
+      String name = fields.get(i).getSimpleName().toString();
+      builder.addField(fieldTypes.get(i), name, Modifier.PRIVATE);
+      builder.addMethod(MethodSpec.methodBuilder(name)
+          .addModifiers(Modifier.PUBLIC)
+          .returns(builderType)
+          .addParameter(fieldTypes.get(i), name)
+          .addStatement("this.$N = $N", name, name)
+          .addStatement("return this")
+          .build());
+      describe.add("$W+ $S + $N", (i == 0 ? "" : ", ") + name + "=", name);
+    }
+    builder.addMethod(MethodSpec.methodBuilder("describe")
+        .addModifiers(Modifier.PUBLIC)
+        .returns(String.class)
+        .addStatement("$L + $S", describe.build(), "}")
+        .build());
+    JavaFile javaFile = JavaFile.builder(className.packageName(), builder.build())
+        .addFileComment("Generated by $L.", getClass().getSimpleName())
+        .build();
+    long built = System.nanoTime();
+    specNanos += built - converted;
+
+    long filerBefore = filerNanos;
+    try {
+      javaFile.writeTo(filer);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    renderNanos += System.nanoTime() - built - (filerNanos - filerBefore);
+    filesWritten++;
+
+    for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+      if (nested.getModifiers().contains(Modifier.STATIC)) generate(nested);
+    }
+  }
+
+  /**
+   * Buffers each source file in memory while JavaPoet renders it, and then writes it to the real
+   * Filer in one call. Time spent in the real Filer is added to {@link #filerNanos}.
+   */
+  private final class TimingFiler implements Filer {
+    private final Filer delegate;
+
+    TimingFiler(Filer delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override public JavaFileObject createSourceFile(CharSequence name,
+        Element... originatingElements) throws IOException {
+      long start = System.nanoTime();
+      JavaFileObject file = delegate.createSourceFile(name, originatingElements);
+      filerNanos += System.nanoTime() - start;
+      return new ForwardingJavaFileObject<JavaFileObject>(file) {
+        @Override public Writer openWriter() {
+          return new StringWriter() {
+            @Override public void close() throws IOException {
+              long start = System.nanoTime();
+              try (Writer writer = fileObject.openWriter()) {
+                writer.write(toString());
+              }
+              filerNanos += System.nanoTime() - start;
+            }
+          };
+        }
+      };
+    }
+
+    @Override public JavaFileObject createClassFile(CharSequence name,
+        Element... originatingElements) throws IOException {
+      return delegate.createClassFile(name, originatingElements);
+    }
+
+    @Override public FileObject createResource(JavaFileManager.Location location,
+        CharSequence moduleAndPkg, CharSequence relativeName,
+        Element... originatingElements) throws IOException {
+      return delegate.createResource(location, moduleAndPkg, relativeName, originatingElements);
+    }
+
+    @Override public FileObject getResource(JavaFileManager.Location location,
+        CharSequence moduleAndPkg, CharSequence relativeName) throws IOException {
+      return delegate.getResource(location, moduleAndPkg, relativeName);
+    }
+  }
+}
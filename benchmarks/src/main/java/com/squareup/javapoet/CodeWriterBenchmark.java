@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Emits a block dominated by {@code $T} references, half of which are imported. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodeWriterBenchmark {
+  @Param
+  public SpecSize size;
+
+  private CodeBlock code;
+  private Map<String, ClassName> importedTypes;
+
+  @Setup
+  public void setUp() {
+    code = Fixtures.statements(0, size.operations());
+    importedTypes = new LinkedHashMap<>();
+    for (int i = 0; i < Fixtures.TYPES.length; i += 2) {
+      ClassName className = Fixtures.TYPES[i];
+      importedTypes.putIfAbsent(className.simpleName(), className);
+    }
+  }
+
+  @Benchmark
+  public StringBuilder emitTypeHeavyBlock() throws IOException {
+    StringBuilder out = new StringBuilder();
+    new CodeWriter(out, "  ", importedTypes, Collections.emptySet(), Collections.emptySet())
+        .emit(code);
+    return out;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javax.lang.model.element.Modifier;
+
+/**
+ * Renders one small file and prints how long it took, in microseconds, followed by the JVM's
+ * uptime in milliseconds. {@link StartupMain} runs this in fresh JVMs; it should only ever be the
+ * first use of JavaPoet in its process.
+ */
+public final class FirstFileMain {
+  private FirstFileMain() {
+  }
+
+  public static void main(String[] args) {
+    long start = System.nanoTime();
+    String source = JavaFile.builder("com.example.generated",
+        TypeSpec.classBuilder("Greeter")
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addField(ParameterizedTypeName.get(List.class, String.class), "names",
+                Modifier.PRIVATE, Modifier.FINAL)
+            .addMethod(MethodSpec.methodBuilder("greet")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(String.class)
+                .addParameter(int.class, "index")
+                .addStatement("return $S + $N.get(index)", "Hello, ", "names")
+                .build())
+            .build())
+        .build()
+        .toString();
+    long elapsedNanos = System.nanoTime() - start;
+    if (source.isEmpty()) throw new AssertionError();
+    System.out.println(elapsedNanos / 1_000 + " "
+        + ManagementFactory.getRuntimeMXBean().getUptime());
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.Modifier;
+
+/** Deterministic synthetic specs for the benchmarks. */
+final class Fixtures {
+  /**
+   * Types referenced by the generated code. Both {@code List}s and both {@code Date}s are
+   * included so that some references must stay qualified.
+   */
+  static final ClassName[] TYPES = {
+      ClassName.get("java.util", "List"),
+      ClassName.get("java.util", "Map"),
+      ClassName.get("java.util", "Set"),
+      ClassName.get("java.util", "ArrayList"),
+      ClassName.get("java.util", "HashMap"),
+      ClassName.get("java.util", "Date"),
+      ClassName.get("java.sql", "Date"),
+      ClassName.get("java.awt", "List"),
+      ClassName.get("java.lang", "String"),
+      ClassName.get("java.lang", "Integer"),
+      ClassName.get("java.util.concurrent", "ConcurrentHashMap"),
+      ClassName.get("java.util.function", "Function"),
+      ClassName.get("com.example.model", "User"),
+      ClassName.get("com.example.model", "Account"),
+      ClassName.get("com.example.model", "Account", "Builder"),
+      ClassName.get("com.example.service", "UserService"),
+  };
+
+  private Fixtures() {
+  }
+
+  static TypeName type(int index) {
+    ClassName raw = TYPES[index % TYPES.length];
+    if (index % 3 != 0) return raw;
+    return ParameterizedTypeName.get(ClassName.get("java.util", "Map"),
+        TYPES[(index + 8) % TYPES.length], ParameterizedTypeName.get(
+            ClassName.get("java.util", "List"), TYPES[(index + 12) % TYPES.length]));
+  }
+
+  static JavaFile javaFile(SpecSize size) {
+    TypeSpec.Builder type = typeBuilder("Generated", size);
+    for (int i = 0; i < size.nestedTypes; i++) {
+      type.addType(typeBuilder("Nested" + i, size).addModifiers(Modifier.STATIC).build());
+    }
+    return JavaFile.builder("com.example.generated", type.build()).build();
+  }
+
+  private static TypeSpec.Builder typeBuilder(String name, SpecSize size) {
+    TypeSpec.Builder type = TypeSpec.classBuilder(name)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .addJavadoc("Generated by the benchmarks. Do not edit.\n");
+    for (int i = 0; i < size.membersPerType; i++) {
+      type.addField(FieldSpec.builder(type(i), "field" + i, Modifier.PRIVATE, Modifier.FINAL)
+          .build());
+    }
+    for (int i = 0; i < size.membersPerType; i++) {
+      type.addMethod(MethodSpec.methodBuilder("method" + i)
+          .addModifiers(Modifier.PUBLIC)
+          .returns(type(i))
+          .addParameter(type(i + 1), "argument")
+          .addCode(statements(i, size.statementsPerMethod))
+          .addStatement("return field$L", i)
+          .build());
+    }
+    return type;
+  }
+
+  /** Returns {@code count} statements that each reference several types. */
+  static CodeBlock statements(int seed, int count) {
+    CodeBlock.Builder code = CodeBlock.builder();
+    for (int i = 0; i < count; i++) {
+      int index = seed + i;
+      code.addStatement("$T local$L = new $T<>($S, $T.class, $L)", type(index), i,
+          TYPES[(index + 3) % TYPES.length], "value " + index, TYPES[(index + 5) % TYPES.length],
+          index);
+    }
+    return code.build();
+  }
+
+  /** Returns a long expression with a {@code $W} wrapping point between each of its tokens. */
+  static CodeBlock wrappingExpression(int tokens) {
+    CodeBlock.Builder code = CodeBlock.builder().add("int sum =");
+    for (int i = 0; i < tokens; i++) {
+      code.add("$Wvalue$L +", i);
+    }
+    return code.add("$W0;\n").build();
+  }
+
+  /** Returns names a generator might derive from a schema, including collisions and keywords. */
+  static List<String> nameSuggestions(int count) {
+    String[] stems = {"value", "class", "user-id", "1st", "default", "list", "$field", "é"};
+    List<String> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(i % 4 == 0 ? stems[i % stems.length] : stems[i % stems.length] + (i / 4));
+    }
+    return result;
+  }
+}
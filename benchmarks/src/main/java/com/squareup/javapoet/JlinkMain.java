@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.lang.model.element.Modifier;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Compares deploying a generator as a {@code jlink} image holding only the modules it needs with
+ * running it from the class path of the full JDK. Links an image with JavaPoet and a small
+ * generator module, then reports each deployment's size on disk and the median time to run the
+ * generator in a fresh JVM.
+ *
+ * <p>Arguments are {@code --javapoet=PATH}, the JavaPoet module jar such as {@code
+ * target/javapoet-1.14.0-SNAPSHOT.jar}, and {@code --runs=N}, the number of JVMs to start for each
+ * deployment.
+ */
+public final class JlinkMain {
+  private JlinkMain() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    Path javapoet = null;
+    int runs = 10;
+    for (String arg : args) {
+      if (arg.startsWith("--javapoet=")) {
+        javapoet = Paths.get(arg.substring("--javapoet=".length()));
+      } else if (arg.startsWith("--runs=")) {
+        runs = Integer.parseInt(arg.substring("--runs=".length()));
+      } else {
+        throw new IllegalArgumentException("unexpected argument " + arg);
+      }
+    }
+    if (javapoet == null) throw new IllegalArgumentException("--javapoet is required");
+
+    Path javaHome = Paths.get(System.getProperty("java.home"));
+    Path tmp = Files.createTempDirectory("jlink");
+    try {
+      Path generator = compileGenerator(javapoet, tmp);
+      Path image = tmp.resolve("image");
+      run(javaHome.resolve("bin").resolve("jlink").toString(),
+          "--module-path", javapoet + File.pathSeparator + generator,
+          "--add-modules", "generator",
+          "--strip-debug",
+          "--no-header-files",
+          "--no-man-pages",
+          "--output", image.toString());
+
+      long imageMillis = medianRunMillis(runs,
+          image.resolve("bin").resolve("java").toString(), "-m", "generator/generator.Main");
+      long classPathMillis = medianRunMillis(runs,
+          javaHome.resolve("bin").resolve("java").toString(),
+          "-cp", javapoet + File.pathSeparator + generator, "generator.Main");
+      System.out.printf("jlink image:           %4d MiB, median %d ms%n",
+          sizeOf(image) >> 20, imageMillis);
+      System.out.printf("class path on the JDK: %4d MiB, median %d ms%n",
+          sizeOf(javaHome) >> 20, classPathMillis);
+    } finally {
+      try (Stream<Path> paths = Files.walk(tmp)) {
+        paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+      }
+    }
+  }
+
+  /** Writes and compiles a module whose main class prints a generated file. */
+  private static Path compileGenerator(Path javapoet, Path tmp) throws IOException {
+    Path sources = tmp.resolve("generator-src");
+    Path classes = tmp.resolve("generator-classes");
+    Files.createDirectories(sources);
+    Path moduleInfo = sources.resolve("module-info.java");
+    Files.write(moduleInfo, Arrays.asList(
+        "module generator {",
+        "  requires com.squareup.javapoet;",
+        "}"), StandardCharsets.UTF_8);
+    TypeSpec main = TypeSpec.classBuilder("Main")
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .addMethod(MethodSpec.methodBuilder("main")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(String[].class, "args")
+            .addStatement("$T.out.print($T.builder($S, $T.classBuilder($S).build()).build())",
+                System.class, JavaFile.class, "com.example", TypeSpec.class, "Hello")
+            .build())
+        .build();
+    JavaFile.builder("generator", main).build().writeTo(sources);
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) throw new IllegalStateException("javac is unavailable");
+    int status = compiler.run(null, null, null,
+        "--module-path", javapoet.toString(),
+        "-d", classes.toString(),
+        moduleInfo.toString(),
+        sources.resolve("generator").resolve("Main.java").toString());
+    if (status != 0) throw new IllegalStateException("javac failed");
+    return classes;
+  }
+
+  private static long medianRunMillis(int runs, String... command) throws Exception {
+    List<Long> millis = new ArrayList<>();
+    for (int i = 0; i < runs; i++) {
+      long start = System.nanoTime();
+      run(command);
+      millis.add((System.nanoTime() - start) / 1_000_000);
+    }
+    Collections.sort(millis);
+    return millis.get(millis.size() / 2);
+  }
+
+  private static void run(String... command) throws Exception {
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    if (process.waitFor() != 0) {
+      throw new IllegalStateException(command[0] + " failed: " + output);
+    }
+  }
+
+  private static long sizeOf(Path directory) throws IOException {
+    long size = 0;
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path file : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+        size += Files.size(file);
+      }
+    }
+    return size;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Wraps long expressions that have a wrapping point between every token. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LineWrapperBenchmark {
+  @Param
+  public SpecSize size;
+
+  private CodeBlock code;
+  private String[] tokens;
+
+  @Setup
+  public void setUp() {
+    code = Fixtures.wrappingExpression(size.operations());
+    tokens = new String[size.operations()];
+    for (int i = 0; i < tokens.length; i++) {
+      tokens[i] = "value" + i + " +";
+    }
+  }
+
+  /** Appends tokens directly to the line wrapper. */
+  @Benchmark
+  public StringBuilder denseWrappingSpaces() throws IOException {
+    StringBuilder out = new StringBuilder();
+    LineWrapper lineWrapper = new LineWrapper(out, "  ", 100);
+    lineWrapper.append("int sum =");
+    for (String token : tokens) {
+      lineWrapper.wrappingSpace(2);
+      lineWrapper.append(token);
+    }
+    lineWrapper.append(" 0;\n");
+    lineWrapper.close();
+    return out;
+  }
+
+  /** Emits {@code $W} placeholders through the code writer. */
+  @Benchmark
+  public StringBuilder emitDenseW() throws IOException {
+    StringBuilder out = new StringBuilder();
+    new CodeWriter(out).emit(code);
+    return out;
+  }
+}
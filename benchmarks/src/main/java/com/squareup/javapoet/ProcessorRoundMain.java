@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles a {@link Workload} in memory with {@link BuilderProcessor}, and reports how long the
+ * processor took per compilation, split into {@code TypeName.get(TypeMirror)} conversions, spec
+ * construction, rendering and Filer I/O.
+ *
+ * <p>Arguments are {@code --name=value} pairs: {@code --seed}, {@code --types} (the number of
+ * input files), {@code --members}, {@code --depth}, {@code --generics}, {@code --warmups} and
+ * {@code --runs}.
+ */
+public final class ProcessorRoundMain {
+  private ProcessorRoundMain() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    Workload.Builder builder = Workload.builder().fileCount(200).packageCount(10);
+    int warmups = 3;
+    int runs = 5;
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (!arg.startsWith("--") || equals == -1) {
+        throw new IllegalArgumentException("expected --name=value but was " + arg);
+      }
+      String name = arg.substring(2, equals);
+      String value = arg.substring(equals + 1);
+      switch (name) {
+        case "seed": builder.seed(Long.parseLong(value)); break;
+        case "types": builder.fileCount(Integer.parseInt(value)); break;
+        case "members": builder.membersPerType(Integer.parseInt(value)); break;
+        case "depth": builder.nestingDepth(Integer.parseInt(value)); break;
+        case "generics": builder.genericDensity(Double.parseDouble(value)); break;
+        case "warmups": warmups = Integer.parseInt(value); break;
+        case "runs": runs = Integer.parseInt(value); break;
+        default: throw new IllegalArgumentException("unexpected argument " + arg);
+      }
+    }
+
+    Workload workload = builder.build();
+    List<JavaFileObject> sources = new ArrayList<>();
+    for (JavaFile javaFile : workload.files()) {
+      sources.add(javaFile.toJavaFileObject());
+    }
+
+    System.out.println(workload);
+    for (int i = 0; i < warmups; i++) {
+      compile(sources);
+    }
+    System.out.printf("%8s %8s %10s %10s %8s %8s %8s %8s%n", "compile", "process", "rounds",
+        "files", "types", "specs", "render", "filer");
+    for (int i = 0; i < runs; i++) {
+      long start = System.nanoTime();
+      BuilderProcessor processor = compile(sources);
+      long compileNanos = System.nanoTime() - start;
+      System.out.printf("%8.1f %8.1f %10d %10d %8.1f %8.1f %8.1f %8.1f%n",
+          compileNanos / 1e6, processor.processNanos / 1e6, processor.rounds,
+          processor.filesWritten, processor.typeNameNanos / 1e6, processor.specNanos / 1e6,
+          processor.renderNanos / 1e6, processor.filerNanos / 1e6);
+    }
+    System.out.println("Times are in milliseconds per compilation.");
+  }
+
+  private static BuilderProcessor compile(List<JavaFileObject> sources) throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    BuilderProcessor processor = new BuilderProcessor();
+    try (InMemoryFileManager fileManager = new InMemoryFileManager(
+        compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8))) {
+      JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+          Arrays.asList("-nowarn", "-Xlint:none", "-encoding", "UTF-8"), null, sources);
+      task.setProcessors(Arrays.asList(processor));
+      if (!task.call()) {
+        throw new IllegalStateException("compilation failed: " + diagnostics.getDiagnostics());
+      }
+    }
+    return processor;
+  }
+
+  /** Keeps generated sources and class files in memory so the file system isn't measured. */
+  private static final class InMemoryFileManager
+      extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    InMemoryFileManager(StandardJavaFileManager fileManager) {
+      super(fileManager);
+    }
+
+    @Override public JavaFileObject getJavaFileForOutput(Location location, String className,
+        JavaFileObject.Kind kind, FileObject sibling) {
+      URI uri = URI.create("mem:///" + className.replace('.', '/') + kind.extension);
+      return new InMemoryFile(uri, kind);
+    }
+  }
+
+  private static final class InMemoryFile extends SimpleJavaFileObject {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    InMemoryFile(URI uri, Kind kind) {
+      super(uri, kind);
+    }
+
+    @Override public OutputStream openOutputStream() {
+      bytes.reset();
+      return bytes;
+    }
+
+    @Override public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+/** How much synthetic code a benchmark renders per operation. */
+public enum SpecSize {
+  /** A single small class, like a generated value type. */
+  SMALL(0, 4, 4),
+  /** A class with a few nested types, like a generated DAO or adapter. */
+  MEDIUM(4, 32, 8),
+  /** A large class with many nested types, like a generated component or registry. */
+  HUGE(16, 256, 16);
+
+  /** The number of nested types in the top-level type. */
+  final int nestedTypes;
+  /** The number of fields, and separately of methods, in each type. */
+  final int membersPerType;
+  final int statementsPerMethod;
+
+  SpecSize(int nestedTypes, int membersPerType, int statementsPerMethod) {
+    this.nestedTypes = nestedTypes;
+    this.membersPerType = membersPerType;
+    this.statementsPerMethod = statementsPerMethod;
+  }
+
+  /** The number of repetitions for benchmarks that measure one operation in a loop. */
+  int operations() {
+    return membersPerType * statementsPerMethod;
+  }
+}
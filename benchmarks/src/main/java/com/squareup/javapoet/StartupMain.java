@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures the time to the first {@code JavaFile.toString()} in a fresh JVM, which is what a
+ * short-lived annotation processor pays. Runs {@link FirstFileMain} in new JVMs with this
+ * process's class path and reports the median of the runs.
+ *
+ * <p>Arguments are {@code --runs=N}, the number of JVMs to start, and {@code --jvmArg=ARG}, which
+ * may be repeated to pass options such as {@code -XX:SharedArchiveFile=javapoet.jsa} to each JVM.
+ */
+public final class StartupMain {
+  private StartupMain() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    int runs = 20;
+    List<String> jvmArgs = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("--runs=")) {
+        runs = Integer.parseInt(arg.substring("--runs=".length()));
+      } else if (arg.startsWith("--jvmArg=")) {
+        jvmArgs.add(arg.substring("--jvmArg=".length()));
+      } else {
+        throw new IllegalArgumentException("unexpected argument " + arg);
+      }
+    }
+
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator
+        + "java";
+    List<String> command = new ArrayList<>();
+    command.add(java);
+    command.addAll(jvmArgs);
+    command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"),
+        FirstFileMain.class.getName()));
+
+    List<Long> renderMicros = new ArrayList<>();
+    List<Long> uptimeMillis = new ArrayList<>();
+    for (int i = 0; i < runs; i++) {
+      Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+      String output;
+      try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+        output = reader.readLine();
+      }
+      if (process.waitFor() != 0 || output == null) {
+        throw new IllegalStateException("run failed: " + output);
+      }
+      String[] fields = output.trim().split(" ");
+      renderMicros.add(Long.parseLong(fields[0]));
+      uptimeMillis.add(Long.parseLong(fields[1]));
+    }
+
+    System.out.println(command);
+    System.out.printf("first JavaFile.toString(): median %d us, min %d us%n",
+        median(renderMicros), Collections.min(renderMicros));
+    System.out.printf("JVM uptime after it:       median %d ms, min %d ms%n",
+        median(uptimeMillis), Collections.min(uptimeMillis));
+  }
+
+  private static long median(List<Long> values) {
+    List<Long> sorted = new ArrayList<>(values);
+    Collections.sort(sorted);
+    return sorted.get(sorted.size() / 2);
+  }
+}
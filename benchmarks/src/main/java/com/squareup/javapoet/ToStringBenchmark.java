@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.Modifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Renders small specs with {@code toString()}, as logging, diffing and map keys do. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToStringBenchmark {
+  private final CodeBlock codeBlock = CodeBlock.of("$T $N = new $T<>()",
+      Fixtures.TYPES[0], "names", Fixtures.TYPES[3]);
+  private final FieldSpec fieldSpec = FieldSpec.builder(Fixtures.type(0), "cache",
+      Modifier.PRIVATE, Modifier.FINAL).initializer("new $T<>()", Fixtures.TYPES[4]).build();
+  private final MethodSpec methodSpec = MethodSpec.methodBuilder("name")
+      .addModifiers(Modifier.PUBLIC)
+      .returns(String.class)
+      .addStatement("return $N", "name")
+      .build();
+  private final AnnotationSpec annotationSpec = AnnotationSpec.builder(Fixtures.TYPES[15])
+      .addMember("value", "$S", "users")
+      .build();
+
+  @Benchmark
+  public String codeBlock() {
+    return codeBlock.toString();
+  }
+
+  @Benchmark
+  public String fieldSpec() {
+    return fieldSpec.toString();
+  }
+
+  @Benchmark
+  public String methodSpec() {
+    return methodSpec.toString();
+  }
+
+  @Benchmark
+  public String annotationSpec() {
+    return annotationSpec.toString();
+  }
+
+  /** Type names cache their string, so each call renders a new one. */
+  @Benchmark
+  public String typeName() {
+    return ParameterizedTypeName.get(Fixtures.TYPES[0], Fixtures.TYPES[12]).toString();
+  }
+}
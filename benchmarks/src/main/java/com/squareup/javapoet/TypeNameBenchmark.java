@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Converts reflection types to type names. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TypeNameBenchmark {
+  private static final Class<?>[] CLASSES = {
+      String.class, Integer.class, List.class, Map.class, Map.Entry.class, Thread.State.class,
+      StringBuilder.class, ArrayList.class, Character.UnicodeBlock.class, Object.class,
+      int.class, long[].class, String[][].class, java.util.concurrent.TimeUnit.class,
+  };
+
+  /** Generic field types: parameterized types, wildcards, arrays and type variables. */
+  @SuppressWarnings("unused")
+  static class GenericTypes<T extends Comparable<? super T>> {
+    Map<String, List<Integer>> map;
+    List<? extends Number> extendsWildcard;
+    Map.Entry<? super T, T[]> superWildcard;
+    List<Map<String, ? extends List<? super Integer>>>[] arrayOfLists;
+    T typeVariable;
+  }
+
+  @Param
+  public SpecSize size;
+
+  private int operations;
+  private Type[] genericTypes;
+
+  @Setup
+  public void setUp() {
+    operations = size.operations();
+    Field[] fields = GenericTypes.class.getDeclaredFields();
+    genericTypes = new Type[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      genericTypes[i] = fields[i].getGenericType();
+    }
+  }
+
+  @Benchmark
+  public void typeNameGet(Blackhole blackhole) {
+    for (int i = 0; i < operations; i++) {
+      Type type = i % 2 == 0 ? CLASSES[i % CLASSES.length] : genericTypes[i % genericTypes.length];
+      blackhole.consume(TypeName.get(type));
+    }
+  }
+
+  @Benchmark
+  public void classNameGet(Blackhole blackhole) {
+    for (int i = 0; i < operations; i++) {
+      Class<?> type = CLASSES[i % CLASSES.length];
+      if (type.isPrimitive() || type.isArray()) type = Object.class;
+      blackhole.consume(ClassName.get(type));
+    }
+  }
+}
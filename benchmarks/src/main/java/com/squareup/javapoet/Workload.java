@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import javax.lang.model.element.Modifier;
+
+import static com.squareup.javapoet.Util.checkArgument;
+
+/**
+ * A reproducible synthetic codebase, shaped like the output of a large code generator: many files
+ * across many packages, nested types, generics and cross-references that need imports.
+ *
+ * <p>Each file is generated from its own seed, so {@code file(i)} is the same regardless of which
+ * other files are generated or in what order.
+ */
+public final class Workload {
+  private static final ClassName[] PLAIN_TYPES = {
+      ClassName.get("java.util", "Date"),
+      ClassName.get("java.sql", "Date"),
+      ClassName.get("java.lang", "String"),
+      ClassName.get("java.lang", "Long"),
+      ClassName.get("java.math", "BigDecimal"),
+      ClassName.get("java.time", "Instant"),
+  };
+  private static final ClassName[] GENERIC_TYPES = {
+      ClassName.get("java.util", "List"),
+      ClassName.get("java.util", "Set"),
+      ClassName.get("java.util", "Optional"),
+      ClassName.get("java.util.concurrent", "CompletableFuture"),
+  };
+  private static final ClassName[] GENERIC_PAIR_TYPES = {
+      ClassName.get("java.util", "Map"),
+      ClassName.get("java.util.function", "Function"),
+  };
+  private static final String[] WORDS = {
+      "lorem", "ipsum", "dolor", "sit", "amet", "\"quoted\"", "tab\t", "line\n", "€uro", "$0",
+  };
+
+  final long seed;
+  final int fileCount;
+  final int packageCount;
+  final int membersPerType;
+  final int nestingDepth;
+  final double genericDensity;
+  final int stringLiteralLength;
+
+  private Workload(Builder builder) {
+    this.seed = builder.seed;
+    this.fileCount = builder.fileCount;
+    this.packageCount = builder.packageCount;
+    this.membersPerType = builder.membersPerType;
+    this.nestingDepth = builder.nestingDepth;
+    this.genericDensity = builder.genericDensity;
+    this.stringLiteralLength = builder.stringLiteralLength;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public List<JavaFile> files() {
+    List<JavaFile> result = new ArrayList<>(fileCount);
+    for (int i = 0; i < fileCount; i++) {
+      result.add(file(i));
+    }
+    return result;
+  }
+
+  /** Returns the file at {@code index}, which is in {@code [0, fileCount)}. */
+  public JavaFile file(int index) {
+    checkArgument(index >= 0 && index < fileCount, "index %s out of range", index);
+    Random random = new Random(seed * 31 + index);
+    ClassName className = generatedType(index);
+    TypeSpec type = type(random, className, nestingDepth)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .build();
+    return JavaFile.builder(className.packageName(), type)
+        .addFileComment("Generated by the workload generator. Do not edit.")
+        .build();
+  }
+
+  private ClassName generatedType(int index) {
+    return ClassName.get("com.example.generated.p" + (index % packageCount), "Type" + index);
+  }
+
+  private TypeSpec.Builder type(Random random, ClassName className, int depth) {
+    TypeSpec.Builder type = TypeSpec.classBuilder(className)
+        .addJavadoc("$L\n", words(random, stringLiteralLength));
+    boolean generic = random.nextDouble() < genericDensity;
+    TypeVariableName t = TypeVariableName.get("T",
+        ParameterizedTypeName.get(ClassName.get(Comparable.class), TypeVariableName.get("T")));
+    if (generic) type.addTypeVariable(t);
+
+    for (int i = 0; i < membersPerType; i++) {
+      TypeName fieldType = generic && i % 4 == 0 ? t : typeName(random, 0);
+      type.addField(FieldSpec.builder(fieldType, "field" + i, Modifier.PRIVATE)
+          .addAnnotation(Deprecated.class)
+          .build());
+    }
+    for (int i = 0; i < membersPerType; i++) {
+      type.addMethod(method(random, "method" + i, i));
+    }
+    if (depth > 0) {
+      ClassName nestedName = className.nestedClass("Nested" + depth);
+      type.addType(type(random, nestedName, depth - 1)
+          .addModifiers(Modifier.STATIC)
+          .build());
+    }
+    return type;
+  }
+
+  private MethodSpec method(Random random, String name, int fieldIndex) {
+    TypeName parameterType = typeName(random, 0);
+    MethodSpec.Builder method = MethodSpec.methodBuilder(name)
+        .addModifiers(Modifier.PUBLIC)
+        .returns(String.class)
+        .addParameter(parameterType, "input")
+        .addStatement("$T.requireNonNull(input, $S)", Objects.class, "input == null")
+        .beginControlFlow("if (field$L == null)", fieldIndex)
+        .addStatement("return $S", words(random, stringLiteralLength))
+        .endControlFlow();
+    TypeName localType = typeName(random, 0);
+    method.addStatement("$T local = null", localType);
+    method.addStatement("return $S + input + local + field$L",
+        words(random, stringLiteralLength), fieldIndex);
+    return method.build();
+  }
+
+  /** Returns a type that is parameterized with probability {@link #genericDensity}. */
+  private TypeName typeName(Random random, int depth) {
+    if (random.nextInt(3) == 0) {
+      return generatedType(random.nextInt(fileCount));
+    }
+    if (depth >= 3 || random.nextDouble() >= genericDensity) {
+      return PLAIN_TYPES[random.nextInt(PLAIN_TYPES.length)];
+    }
+    if (random.nextInt(3) == 0) {
+      ClassName raw = GENERIC_PAIR_TYPES[random.nextInt(GENERIC_PAIR_TYPES.length)];
+      return ParameterizedTypeName.get(raw, typeName(random, depth + 1),
+          typeName(random, depth + 1));
+    }
+    ClassName raw = GENERIC_TYPES[random.nextInt(GENERIC_TYPES.length)];
+    TypeName argument = typeName(random, depth + 1);
+    if (random.nextInt(4) == 0) argument = WildcardTypeName.subtypeOf(argument);
+    return ParameterizedTypeName.get(raw, argument);
+  }
+
+  private static String words(Random random, int length) {
+    StringBuilder result = new StringBuilder();
+    while (result.length() < length) {
+      if (result.length() > 0) result.append(' ');
+      result.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    return result.toString();
+  }
+
+  @Override public String toString() {
+    return String.format("seed=%s files=%s packages=%s members=%s depth=%s generics=%s strings=%s",
+        seed, fileCount, packageCount, membersPerType, nestingDepth, genericDensity,
+        stringLiteralLength);
+  }
+
+  public static final class Builder {
+    private long seed;
+    private int fileCount = 15_000;
+    private int packageCount = 100;
+    private int membersPerType = 10;
+    private int nestingDepth = 3;
+    private double genericDensity = 0.5;
+    private int stringLiteralLength = 40;
+
+    private Builder() {
+    }
+
+    public Builder seed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    public Builder fileCount(int fileCount) {
+      checkArgument(fileCount > 0, "fileCount must be positive");
+      this.fileCount = fileCount;
+      return this;
+    }
+
+    public Builder packageCount(int packageCount) {
+      checkArgument(packageCount > 0, "packageCount must be positive");
+      this.packageCount = packageCount;
+      return this;
+    }
+
+    public Builder membersPerType(int membersPerType) {
+      checkArgument(membersPerType >= 0, "membersPerType must not be negative");
+      this.membersPerType = membersPerType;
+      return this;
+    }
+
+    public Builder nestingDepth(int nestingDepth) {
+      checkArgument(nestingDepth >= 0, "nestingDepth must not be negative");
+      this.nestingDepth = nestingDepth;
+      return this;
+    }
+
+    /** The probability that a type reference or a type is generic, in {@code [0, 1]}. */
+    public Builder genericDensity(double genericDensity) {
+      checkArgument(genericDensity >= 0 && genericDensity <= 1,
+          "genericDensity must be in [0, 1]");
+      this.genericDensity = genericDensity;
+      return this;
+    }
+
+    /** The approximate length of each string literal and javadoc paragraph. */
+    public Builder stringLiteralLength(int stringLiteralLength) {
+      checkArgument(stringLiteralLength >= 0, "stringLiteralLength must not be negative");
+      this.stringLiteralLength = stringLiteralLength;
+      return this;
+    }
+
+    public Workload build() {
+      return new Workload(this);
+    }
+  }
+}
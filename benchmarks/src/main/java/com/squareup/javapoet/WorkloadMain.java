@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Generates a {@link Workload} and writes it to a temporary directory with {@link
+ * JavaFile#writeToPath(Path)}, once for each thread count. Reports files per second, bytes per
+ * second and peak heap use, so scaling can be compared across releases and core counts.
+ *
+ * <p>Arguments are {@code --name=value} pairs. {@code --threads} takes a comma-separated list, and
+ * the other arguments configure the workload: {@code --seed}, {@code --files}, {@code --packages},
+ * {@code --members}, {@code --depth}, {@code --generics} and {@code --strings}. Each thread count
+ * runs {@code --runs} times after one warm-up run.
+ */
+public final class WorkloadMain {
+  private WorkloadMain() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    Workload.Builder builder = Workload.builder();
+    List<Integer> threadCounts = new ArrayList<>();
+    threadCounts.add(1);
+    int availableProcessors = Runtime.getRuntime().availableProcessors();
+    if (availableProcessors > 1) threadCounts.add(availableProcessors);
+    int runs = 3;
+
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (!arg.startsWith("--") || equals == -1) {
+        throw new IllegalArgumentException("expected --name=value but was " + arg);
+      }
+      String name = arg.substring(2, equals);
+      String value = arg.substring(equals + 1);
+      switch (name) {
+        case "seed": builder.seed(Long.parseLong(value)); break;
+        case "files": builder.fileCount(Integer.parseInt(value)); break;
+        case "packages": builder.packageCount(Integer.parseInt(value)); break;
+        case "members": builder.membersPerType(Integer.parseInt(value)); break;
+        case "depth": builder.nestingDepth(Integer.parseInt(value)); break;
+        case "generics": builder.genericDensity(Double.parseDouble(value)); break;
+        case "strings": builder.stringLiteralLength(Integer.parseInt(value)); break;
+        case "runs": runs = Integer.parseInt(value); break;
+        case "threads":
+          threadCounts.clear();
+          for (String threadCount : value.split(",")) {
+            threadCounts.add(Integer.parseInt(threadCount.trim()));
+          }
+          break;
+        default: throw new IllegalArgumentException("unexpected argument " + arg);
+      }
+    }
+
+    Workload workload = builder.build();
+    System.out.println(workload);
+    run(workload, threadCounts.get(threadCounts.size() - 1)); // Warm up.
+    System.out.printf("%7s %12s %12s %14s%n", "threads", "files/s", "MiB/s", "peak heap MiB");
+    for (int threadCount : threadCounts) {
+      for (int i = 0; i < runs; i++) {
+        Result result = run(workload, threadCount);
+        System.out.printf("%7d %12.1f %12.2f %14.1f%n", threadCount,
+            workload.fileCount / result.seconds(),
+            result.bytes / result.seconds() / (1 << 20),
+            result.peakHeapBytes / (double) (1 << 20));
+      }
+    }
+  }
+
+  static Result run(Workload workload, int threadCount) throws Exception {
+    Path directory = Files.createTempDirectory("javapoet-workload");
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      System.gc();
+      List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          pool.resetPeakUsage();
+          heapPools.add(pool);
+        }
+      }
+
+      AtomicInteger nextFile = new AtomicInteger();
+      LongAdder bytes = new LongAdder();
+      long start = System.nanoTime();
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threadCount; i++) {
+        futures.add(executor.submit(() -> {
+          for (int index; (index = nextFile.getAndIncrement()) < workload.fileCount; ) {
+            Path path = workload.file(index).writeToPath(directory);
+            bytes.add(Files.size(path));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          throw (Exception) e.getCause();
+        }
+      }
+      long elapsedNanos = System.nanoTime() - start;
+
+      long peakHeapBytes = 0;
+      for (MemoryPoolMXBean pool : heapPools) {
+        peakHeapBytes += pool.getPeakUsage().getUsed();
+      }
+      return new Result(elapsedNanos, bytes.sum(), peakHeapBytes);
+    } finally {
+      executor.shutdown();
+      deleteRecursively(directory);
+    }
+  }
+
+  private static void deleteRecursively(Path directory) throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  static final class Result {
+    final long elapsedNanos;
+    final long bytes;
+    /** The sum of each heap pool's peak, which may overstate the peak of the heap as a whole. */
+    final long peakHeapBytes;
+
+    Result(long elapsedNanos, long bytes, long peakHeapBytes) {
+      this.elapsedNanos = elapsedNanos;
+      this.bytes = bytes;
+      this.peakHeapBytes = peakHeapBytes;
+    }
+
+    double seconds() {
+      return elapsedNanos / 1e9;
+    }
+  }
+}
@@ -23,7 +23,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -39,6 +38,7 @@ import javax.lang.model.util.SimpleAnnotationValueVisitor8;
 import static com.squareup.javapoet.Util.characterLiteralWithoutSingleQuotes;
 import static com.squareup.javapoet.Util.checkArgument;
 import static com.squareup.javapoet.Util.checkNotNull;
+import static com.squareup.javapoet.Util.checkState;
 
 /**
  * A generated annotation on a declaration.
@@ -49,9 +49,9 @@ public final class AnnotationSpec {
     public final TypeName type;
     public final Map<String, List<CodeBlock>> members;
 
-    private AnnotationSpec(Builder builder) {
+    private AnnotationSpec(Builder builder, boolean transfer) {
         this.type = builder.type;
-        this.members = Util.immutableMultimap(builder.members);
+        this.members = Util.immutableMultimap(builder.members, transfer);
     }
 
     void emit(CodeWriter codeWriter, boolean inline) throws IOException {
@@ -187,20 +187,14 @@ public final class AnnotationSpec {
 
     @Override
     public String toString() {
-        StringBuilder out = new StringBuilder();
-        try {
-            CodeWriter codeWriter = new CodeWriter(out);
-            codeWriter.emit("$L", this);
-            return out.toString();
-        } catch (IOException e) {
-            throw new AssertionError();
-        }
+        return CodeWriter.render(codeWriter -> codeWriter.emit("$L", this));
     }
 
     public static final class Builder {
         private final TypeName type;
 
-        public final Map<String, List<CodeBlock>> members = new LinkedHashMap<>();
+        public final Map<String, List<CodeBlock>> members = new FreezableMap<>();
+        private boolean frozen;
 
         private Builder(TypeName type) {
             this.type = type;
@@ -211,7 +205,7 @@ public final class AnnotationSpec {
         }
 
         public Builder addMember(String name, CodeBlock codeBlock) {
-            List<CodeBlock> values = members.computeIfAbsent(name, k -> new ArrayList<>());
+            List<CodeBlock> values = members.computeIfAbsent(name, k -> new FreezableList<>());
             values.add(codeBlock);
             return this;
         }
@@ -244,11 +238,27 @@ public final class AnnotationSpec {
         }
 
         public AnnotationSpec build() {
+            return build(false);
+        }
+
+        /**
+         * Returns an annotation like {@link #build}, but hands this builder's member values to the
+         * annotation instead of copying them. This builder can't be changed or built again
+         * afterwards.
+         */
+        public AnnotationSpec freeze() {
+            return build(true);
+        }
+
+        private AnnotationSpec build(boolean transfer) {
+            checkState(!frozen, "this builder was frozen");
             for (String name : members.keySet()) {
                 checkNotNull(name, "name == null");
                 checkArgument(SourceVersion.isName(name), "not a valid name: %s", name);
             }
-            return new AnnotationSpec(this);
+            AnnotationSpec result = new AnnotationSpec(this, transfer);
+            frozen = transfer;
+            return result;
         }
     }
 
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Estimates the size of the bytecode javac emits for a code block. Code blocks aren't parsed, so
+ * this tokenizes the code and charges each token what it typically costs: a method call is an
+ * invoke instruction, a string is a constant load, a comparison is a branch, and so on. Estimates
+ * are meant to catch methods that are far over a limit, not to predict javac's output exactly.
+ */
+final class BytecodeEstimator {
+  /** A token for {@code $T}. Types cost nothing unless they're used in an expression. */
+  private static final String TYPE = "#type";
+  /** A token for {@code $S} and string literals. */
+  private static final String STRING = "#string";
+  /** A token for {@code $N}. */
+  private static final String NAME = "name";
+  /** A token for numbers and characters. */
+  private static final String NUMBER = "0";
+  /** The cost of storing an element in an array initializer, excluding the element itself. */
+  private static final int ARRAY_ELEMENT = 4; // dup, index, store.
+
+  private final List<String> tokens = new ArrayList<>();
+  /** Elements in array initializers emitted with {@link CodeBlock#ofIntArray} and friends. */
+  private int arrayElements;
+
+  private BytecodeEstimator() {
+  }
+
+  static int estimate(CodeBlock code) {
+    BytecodeEstimator estimator = new BytecodeEstimator();
+    estimator.tokenize(code);
+    return estimator.score();
+  }
+
+  private void tokenize(CodeBlock code) {
+    int a = 0;
+    for (String part : code.formatParts) {
+      switch (part) {
+        case "$T":
+          a++;
+          tokens.add(TYPE);
+          break;
+        case "$S":
+          tokens.add(code.args.get(a++) != null ? STRING : "null");
+          break;
+        case "$N":
+          a++;
+          tokens.add(NAME);
+          break;
+        case "$L":
+          Object arg = code.args.get(a++);
+          if (arg instanceof CodeBlock) {
+            tokenize((CodeBlock) arg);
+          } else if (arg instanceof LazyCodeBlock) {
+            // Don't call the supplier. Charge the block like a name: a single opaque expression.
+            tokens.add(NAME);
+          } else if (arg instanceof PrimitiveArrayLiteral) {
+            tokens.add("{");
+            arrayElements += ((PrimitiveArrayLiteral) arg).length();
+            tokens.add("}");
+          } else if (!(arg instanceof TypeSpec) && !(arg instanceof AnnotationSpec)) {
+            // Anonymous classes are compiled separately and annotations aren't code.
+            tokenize(String.valueOf(arg));
+          }
+          break;
+        default:
+          if (!part.startsWith("$")) tokenize(part);
+          break;
+      }
+    }
+  }
+
+  private void tokenize(String code) {
+    for (int i = 0; i < code.length(); ) {
+      char c = code.charAt(i);
+      int end = i + 1;
+      if (Character.isWhitespace(c)) {
+        i = end;
+        continue;
+      } else if (Character.isJavaIdentifierStart(c)) {
+        while (end < code.length() && Character.isJavaIdentifierPart(code.charAt(end))) end++;
+      } else if (Character.isDigit(c) || (c == '.' && end < code.length()
+          && Character.isDigit(code.charAt(end)))) {
+        while (end < code.length() && (Character.isLetterOrDigit(code.charAt(end))
+            || code.charAt(end) == '.' || code.charAt(end) == '_')) end++;
+        tokens.add(NUMBER);
+        i = end;
+        continue;
+      } else if (c == '"' || c == '\'') {
+        while (end < code.length() && code.charAt(end) != c) {
+          if (code.charAt(end) == '\\') end++;
+          end++;
+        }
+        tokens.add(c == '"' ? STRING : NUMBER);
+        i = end + 1;
+        continue;
+      } else if (c == '/' && end < code.length() && code.charAt(end) == '/') {
+        end = code.indexOf('\n', end);
+        i = end == -1 ? code.length() : end;
+        continue;
+      } else if ("=<>!&|+-*/%^".indexOf(c) != -1) {
+        while (end < code.length() && "=<>&|+-".indexOf(code.charAt(end)) != -1
+            && end - i < 3) end++;
+      }
+      tokens.add(code.substring(i, end));
+      i = end;
+    }
+  }
+
+  private int score() {
+    // The implicit or explicit return, and the elements of primitive array literals.
+    int size = 1 + arrayElements * (ARRAY_ELEMENT + symbolCost(NUMBER));
+    Deque<Boolean> arrayInitializers = new ArrayDeque<>();
+    for (int i = 0; i < tokens.size(); i++) {
+      String token = tokens.get(i);
+      String previous = i > 0 ? tokens.get(i - 1) : "";
+      String next = i + 1 < tokens.size() ? tokens.get(i + 1) : "";
+
+      if (token.equals("{")) {
+        boolean arrayInitializer = previous.equals("]") || previous.equals("=")
+            || (!arrayInitializers.isEmpty() && arrayInitializers.peek()
+            && (previous.equals("{") || previous.equals(",")));
+        arrayInitializers.push(arrayInitializer);
+      } else if (token.equals("}")) {
+        // Count the last element of a non-empty array initializer.
+        if (Boolean.TRUE.equals(arrayInitializers.poll()) && !previous.equals("{")) {
+          size += ARRAY_ELEMENT;
+        }
+      } else if (token.equals(",")) {
+        if (Boolean.TRUE.equals(arrayInitializers.peek())) size += ARRAY_ELEMENT;
+      } else if (token.equals(TYPE)) {
+        if (next.equals("(")) size += 3; // invokespecial for a constructor.
+      } else if (Character.isJavaIdentifierStart(token.charAt(0))) {
+        size += identifierCost(token, previous, next);
+      } else {
+        size += symbolCost(token);
+      }
+    }
+    return size;
+  }
+
+  private static int identifierCost(String identifier, String previous, String next) {
+    switch (identifier) {
+      case "new":
+        return 4; // new, dup. The constructor call is charged to the type that follows.
+      case "if":
+      case "while":
+      case "else":
+      case "break":
+      case "continue":
+      case "instanceof":
+        return 3; // A branch or checkcast-sized instruction.
+      case "for":
+        return 3; // The jump to the condition.
+      case "switch":
+        return 16; // Padding and the default offset of a tableswitch or lookupswitch.
+      case "case":
+        return 4; // A jump table entry.
+      case "catch":
+        return 3; // Storing the exception.
+      case "return":
+      case "throw":
+      case "this":
+      case "super":
+      case "null":
+      case "true":
+      case "false":
+        return 1;
+      case "do":
+      case "try":
+      case "finally":
+      case "final":
+      case "var":
+      case "default":
+      case "boolean":
+      case "byte":
+      case "char":
+      case "short":
+      case "int":
+      case "long":
+      case "float":
+      case "double":
+      case "void":
+        return 0;
+      default:
+        if (next.equals("(")) return previous.equals("new") ? 3 : 5; // invoke*, maybe a pop.
+        if (previous.equals(".")) return next.equals(".") ? 0 : 3; // getfield or getstatic.
+        return next.equals(".") ? 0 : 1; // A qualifier, or a local variable load or store.
+    }
+  }
+
+  private static int symbolCost(String symbol) {
+    switch (symbol) {
+      case STRING:
+        return 2; // ldc
+      case NUMBER:
+        return 2; // A constant push.
+      case "=":
+      case ";":
+      case "[":
+      case "+":
+      case "-":
+      case "*":
+      case "/":
+      case "%":
+      case "&":
+      case "|":
+      case "^":
+      case "<<":
+      case ">>":
+      case ">>>":
+      case "!":
+        return 1;
+      case "+=":
+      case "-=":
+      case "*=":
+      case "/=":
+      case "++":
+      case "--":
+        return 3;
+      case "==":
+      case "!=":
+      case "<":
+      case ">":
+      case "<=":
+      case ">=":
+      case "&&":
+      case "||":
+      case "?":
+        return 3; // A conditional branch.
+      case "->":
+        return 5; // invokedynamic
+      default:
+        return 0;
+    }
+  }
+}
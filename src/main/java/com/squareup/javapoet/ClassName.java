@@ -16,6 +16,8 @@
 package com.squareup.javapoet;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -31,6 +33,9 @@ import static com.squareup.javapoet.Util.checkNotNull;
 
 /** A fully-qualified class name for top-level and member classes. */
 public final class ClassName extends TypeName implements Comparable<ClassName> {
+  private static final VarHandle SIMPLE_NAMES =
+      Util.lazyField(MethodHandles.lookup(), "simpleNames", List.class);
+
   public static final ClassName OBJECT = ClassName.get(Object.class);
 
   /** The name representing the default Java package. */
@@ -45,6 +50,8 @@ public final class ClassName extends TypeName implements Comparable<ClassName> {
   /** This class name, like "Entry" for java.util.Map.Entry. */
   final String simpleName;
 
+  /** Lazily-initialized simple names of this class and its enclosing classes. */
+  @SuppressWarnings("unused") // Accessed through SIMPLE_NAMES.
   private List<String> simpleNames;
 
   /** The full class name like "java.util.Map.Entry". */
@@ -113,20 +120,20 @@ public final class ClassName extends TypeName implements Comparable<ClassName> {
         : (packageName.isEmpty() ? simpleName : packageName + '.' + simpleName);
   }
 
+  @SuppressWarnings("unchecked")
   public List<String> simpleNames() {
-    if (simpleNames != null) {
-      return simpleNames;
-    }
+    List<String> result = (List<String>) SIMPLE_NAMES.getAcquire(this);
+    if (result != null) return result;
 
     if (enclosingClassName == null) {
-      simpleNames = Collections.singletonList(simpleName);
+      result = Collections.singletonList(simpleName);
     } else {
       List<String> mutableNames = new ArrayList<>();
       mutableNames.addAll(enclosingClassName().simpleNames());
       mutableNames.add(simpleName);
-      simpleNames = Collections.unmodifiableList(mutableNames);
+      result = Collections.unmodifiableList(mutableNames);
     }
-    return simpleNames;
+    return Util.publish(SIMPLE_NAMES, this, result);
   }
 
   /**
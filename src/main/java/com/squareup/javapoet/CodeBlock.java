@@ -15,19 +15,20 @@
  */
 package com.squareup.javapoet;
 
-import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Supplier;
 import java.util.stream.Collector;
 import java.util.stream.StreamSupport;
+import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.type.TypeMirror;
 
 import static com.squareup.javapoet.Util.checkArgument;
+import static com.squareup.javapoet.Util.checkState;
 
 /**
  * A fragment of a .java file, potentially containing declarations, statements, and documentation.
@@ -63,17 +64,13 @@ import static com.squareup.javapoet.Util.checkArgument;
  * </ul>
  */
 public final class CodeBlock {
-  private static final Pattern NAMED_ARGUMENT =
-      Pattern.compile("\\$(?<argumentName>[\\w_]+):(?<typeChar>[\\w]).*");
-  private static final Pattern LOWERCASE = Pattern.compile("[a-z]+[\\w_]*");
-
   /** A heterogeneous list containing string literals and value placeholders. */
   final List<String> formatParts;
   final List<Object> args;
 
-  private CodeBlock(Builder builder) {
-    this.formatParts = Util.immutableList(builder.formatParts);
-    this.args = Util.immutableList(builder.args);
+  private CodeBlock(Builder builder, boolean transfer) {
+    this.formatParts = Util.immutableList(builder.formatParts, transfer);
+    this.args = Util.immutableList(builder.args, transfer);
   }
 
   public boolean isEmpty() {
@@ -92,19 +89,104 @@ public final class CodeBlock {
   }
 
   @Override public String toString() {
-    StringBuilder out = new StringBuilder();
-    try {
-      new CodeWriter(out).emit(this);
-      return out.toString();
-    } catch (IOException e) {
-      throw new AssertionError();
-    }
+    return CodeWriter.render(codeWriter -> codeWriter.emit(this));
   }
 
   public static CodeBlock of(String format, Object... args) {
     return new Builder().add(format, args).build();
   }
 
+  /**
+   * Returns an array initializer like {@code {1, 2, 3}} containing {@code values}. Use it as a
+   * field initializer or following {@code new int[]}. Unlike adding each element with {@code $L},
+   * this doesn't box the elements: the values are copied into a single array that is formatted when
+   * the code is emitted. Long arrays are wrapped at the column limit.
+   */
+  public static CodeBlock ofIntArray(int... values) {
+    return ofArray(values.clone(), values.length);
+  }
+
+  /** Returns an array initializer containing {@code values}. See {@link #ofIntArray}. */
+  public static CodeBlock ofLongArray(long... values) {
+    return ofArray(values.clone(), values.length);
+  }
+
+  /** Returns an array initializer containing {@code values}. See {@link #ofIntArray}. */
+  public static CodeBlock ofShortArray(short... values) {
+    return ofArray(values.clone(), values.length);
+  }
+
+  /** Returns an array initializer containing {@code values}. See {@link #ofIntArray}. */
+  public static CodeBlock ofByteArray(byte... values) {
+    return ofArray(values.clone(), values.length);
+  }
+
+  /** Returns an array initializer containing {@code values}. See {@link #ofIntArray}. */
+  public static CodeBlock ofCharArray(char... values) {
+    return ofArray(values.clone(), values.length);
+  }
+
+  /** Returns an array initializer containing {@code values}. See {@link #ofIntArray}. */
+  public static CodeBlock ofFloatArray(float... values) {
+    return ofArray(values.clone(), values.length);
+  }
+
+  /** Returns an array initializer containing {@code values}. See {@link #ofIntArray}. */
+  public static CodeBlock ofDoubleArray(double... values) {
+    return ofArray(values.clone(), values.length);
+  }
+
+  /** Returns an array initializer containing {@code values}. See {@link #ofIntArray}. */
+  public static CodeBlock ofBooleanArray(boolean... values) {
+    return ofArray(values.clone(), values.length);
+  }
+
+  /**
+   * Returns an expression that evaluates to a new {@code byte[]} containing {@code values}, like
+   * {@code Base64.getDecoder().decode("AQID")}. Use this instead of {@link #ofByteArray} for large
+   * tables. An array initializer compiles to roughly 7 bytes of bytecode per element, which quickly
+   * hits the 64 KiB method size limit in the static initializer. The string form is stored in the
+   * constant pool, split across several constants if necessary, and is decoded in one call when
+   * the class is initialized.
+   */
+  public static CodeBlock ofPackedByteArray(byte... values) {
+    String encoded = Base64.getEncoder().encodeToString(values);
+    Builder builder = new Builder().add("$T.getDecoder().decode(", Base64.class);
+    // Base64 is ASCII, so each character takes one byte in the class file's constant pool.
+    int chunkLength = Util.MAX_STRING_CONSTANT_LENGTH;
+    if (encoded.length() <= chunkLength) {
+      builder.add("$S", encoded);
+    } else {
+      // Adjacent constants are folded together by javac, so join them with a method call instead.
+      builder.add("$T.join($S", String.class, "");
+      for (int i = 0; i < encoded.length(); i += chunkLength) {
+        builder.add(",$W$S", encoded.substring(i, Math.min(i + chunkLength, encoded.length())));
+      }
+      builder.add(")");
+    }
+    return builder.add(")").build();
+  }
+
+  private static CodeBlock ofArray(Object values, int length) {
+    return new Builder().add("$L", new PrimitiveArrayLiteral(values, 0, length)).build();
+  }
+
+  /**
+   * Returns a code block that calls {@code supplier} each time it's emitted, and emits the code
+   * block it returns. Use this for method bodies that are expensive to hold in memory: the result
+   * isn't retained, so only the block being written is resident. {@link JavaFile} emits its type
+   * twice, once to collect imports, so the supplier must return the same code on every call.
+   *
+   * <p>Lazy blocks are never {@linkplain #isEmpty empty}, and features that inspect code, like
+   * {@link TypeSpec.Builder#splitLargeMethods} and {@link MethodSpec#estimatedBytecodeSize}, treat
+   * them as a single expression without calling the supplier. They assume the expression may use
+   * any local variable in scope, so a lazy block must not declare locals of its own.
+   */
+  public static CodeBlock lazy(Supplier<CodeBlock> supplier) {
+    checkArgument(supplier != null, "supplier == null");
+    return new Builder().add("$L", new LazyCodeBlock(supplier)).build();
+  }
+
   /**
    * Joins {@code codeBlocks} into a single {@link CodeBlock}, each separated by {@code separator}.
    * For example, joining {@code String s}, {@code Object o} and {@code int i} using {@code ", "}
@@ -157,8 +239,9 @@ public final class CodeBlock {
   }
 
   public static final class Builder {
-    final List<String> formatParts = new ArrayList<>();
-    final List<Object> args = new ArrayList<>();
+    final List<String> formatParts = new FreezableList<>();
+    final List<Object> args = new FreezableList<>();
+    private boolean frozen;
 
     private Builder() {
     }
@@ -182,7 +265,7 @@ public final class CodeBlock {
       int p = 0;
 
       for (String argument : arguments.keySet()) {
-        checkArgument(LOWERCASE.matcher(argument).matches(),
+        checkArgument(isArgumentName(argument),
             "argument '%s' must start with a lowercase character", argument);
       }
 
@@ -198,20 +281,17 @@ public final class CodeBlock {
           p = nextP;
         }
 
-        Matcher matcher = null;
+        // A named argument like $name:T, where the first colon after the $ ends the name.
         int colon = format.indexOf(':', p);
-        if (colon != -1) {
-          int endIndex = Math.min(colon + 2, format.length());
-          matcher = NAMED_ARGUMENT.matcher(format.substring(p, endIndex));
-        }
-        if (matcher != null && matcher.lookingAt()) {
-          String argumentName = matcher.group("argumentName");
+        if (colon > p + 1 && colon + 1 < format.length()
+            && isWordChars(format, p + 1, colon) && isWordChars(format, colon + 1, colon + 2)) {
+          String argumentName = format.substring(p + 1, colon);
           checkArgument(arguments.containsKey(argumentName), "Missing named argument for $%s",
               argumentName);
-          char formatChar = matcher.group("typeChar").charAt(0);
+          char formatChar = format.charAt(colon + 1);
           addArgument(format, formatChar, arguments.get(argumentName));
           formatParts.add("$" + formatChar);
-          p += matcher.regionEnd();
+          p = colon + 2;
         } else {
           checkArgument(p < format.length() - 1, "dangling $ at end");
           checkArgument(isNoArgPlaceholder(format.charAt(p + 1)),
@@ -315,6 +395,24 @@ public final class CodeBlock {
       return c == '$' || c == '>' || c == '<' || c == '[' || c == ']' || c == 'W' || c == 'Z';
     }
 
+    /** Returns true if {@code name} is a lowercase letter followed by word characters. */
+    private static boolean isArgumentName(String name) {
+      return !name.isEmpty()
+          && name.charAt(0) >= 'a' && name.charAt(0) <= 'z'
+          && isWordChars(name, 1, name.length());
+    }
+
+    /** Returns true if {@code s} has only {@code [a-zA-Z0-9_]} in {@code [from, to)}. */
+    private static boolean isWordChars(String s, int from, int to) {
+      for (int i = from; i < to; i++) {
+        char c = s.charAt(i);
+        if ((c < 'a' || c > 'z') && (c < 'A' || c > 'Z') && (c < '0' || c > '9') && c != '_') {
+          return false;
+        }
+      }
+      return true;
+    }
+
     private void addArgument(String format, char c, Object arg) {
       switch (c) {
         case 'N':
@@ -397,6 +495,32 @@ public final class CodeBlock {
       return this;
     }
 
+    /**
+     * Adds a switch on the string {@code subject} that runs the case of {@code cases} whose key
+     * equals it, or {@code defaultCase} if none does. This behaves like a switch on a string, but
+     * finds the case with a perfect hash of the string's hash code instead of javac's {@code
+     * lookupswitch}. The lookup is a dense {@code tableswitch} followed by one {@code equals()}
+     * call, and takes less bytecode than javac's translation, which keeps large switches under the
+     * method size limits of the compiler and the JIT.
+     *
+     * <p>Like the cases of a switch statement, each case should end with {@code break}, {@code
+     * return} or {@code throw}, or it falls through to the next case. The default case may be
+     * empty.
+     *
+     * @param subject the name of a local variable, parameter or field holding the string. It's read
+     *     more than once, and the lookup declares a local variable named {@code subject + "Index"}.
+     */
+    public Builder addPerfectHashSwitch(String subject, Map<String, CodeBlock> cases,
+        CodeBlock defaultCase) {
+      checkArgument(subject != null && SourceVersion.isName(subject),
+          "not a valid name: %s", subject);
+      checkArgument(cases != null, "cases == null");
+      checkArgument(defaultCase != null, "defaultCase == null");
+      checkArgument(!cases.containsKey(null), "cases contain a null key");
+      PerfectHash.addSwitch(this, subject, cases, defaultCase);
+      return this;
+    }
+
     public Builder addStatement(String format, Object... args) {
       add("$[");
       add(format, args);
@@ -431,7 +555,23 @@ public final class CodeBlock {
     }
 
     public CodeBlock build() {
-      return new CodeBlock(this);
+      return build(false);
+    }
+
+    /**
+     * Returns a code block like {@link #build}, but hands this builder's contents to the code block
+     * instead of copying them. Use this for large blocks that are built once: this builder can't
+     * be changed or built again afterwards.
+     */
+    public CodeBlock freeze() {
+      return build(true);
+    }
+
+    CodeBlock build(boolean transfer) {
+      checkState(!frozen, "this builder was frozen");
+      CodeBlock result = new CodeBlock(this, transfer);
+      frozen = transfer;
+      return result;
     }
   }
 
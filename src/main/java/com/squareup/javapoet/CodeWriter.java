@@ -16,25 +16,25 @@
 package com.squareup.javapoet;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.regex.Pattern;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Modifier;
 
 import static com.squareup.javapoet.Util.checkArgument;
 import static com.squareup.javapoet.Util.checkNotNull;
 import static com.squareup.javapoet.Util.checkState;
+import static com.squareup.javapoet.Util.MAX_STRING_CONSTANT_LENGTH;
 import static com.squareup.javapoet.Util.stringLiteralWithDoubleQuotes;
+import static com.squareup.javapoet.Util.stringLiteralsWithDoubleQuotes;
 import static java.lang.String.join;
 
 /**
@@ -44,10 +44,23 @@ import static java.lang.String.join;
 final class CodeWriter {
   /** Sentinel value that indicates that no user-provided package has been set. */
   private static final String NO_PACKAGE = new String();
-  private static final Pattern LINE_BREAKING_PATTERN = Pattern.compile("\\R");
+
+  /** The largest buffer, in chars, that {@link #render} keeps for the next render. */
+  private static final int MAX_POOLED_CAPACITY = 8192;
+  /** The most imports and names that {@link #render} keeps a writer's collections sized for. */
+  private static final int MAX_POOLED_NAMES = 64;
+
+  /**
+   * Each thread's writer for {@link #render}, held through a weak reference. The thread only
+   * strongly holds the reference, a JDK class, so it doesn't keep JavaPoet's class loader alive,
+   * such as in a build daemon that outlives the processor. The writer lasts until the next garbage
+   * collection, which is long enough to serve a burst of renders.
+   */
+  private static final ThreadLocal<WeakReference<PooledWriter>> POOL = new ThreadLocal<>();
 
   private final String indent;
   private final LineWrapper out;
+  private final boolean splitLongStrings;
   private int indentLevel;
 
   private boolean javadoc = false;
@@ -60,6 +73,8 @@ final class CodeWriter {
   private final Map<String, ClassName> importedTypes;
   private final Map<String, ClassName> importableTypes = new LinkedHashMap<>();
   private final Set<String> referencedNames = new LinkedHashSet<>();
+  /** Simple names of nested types that {@link JavaFileWriter} declared. See {@link #shadow}. */
+  private final Set<String> shadowedNames = new LinkedHashSet<>();
   private final Multiset<String> currentTypeVariables = new Multiset<>();
   private boolean trailingNewline;
 
@@ -70,6 +85,11 @@ final class CodeWriter {
    */
   int statementLine = -1;
 
+  /** Counts for {@link EmissionStats}. */
+  int newlines;
+  int typeLookups;
+  int typeLookupHits;
+
   CodeWriter(Appendable out) {
     this(out, "  ", Collections.emptySet(), Collections.emptySet());
   }
@@ -83,11 +103,21 @@ final class CodeWriter {
       Map<String, ClassName> importedTypes,
       Set<String> staticImports,
       Set<String> alwaysQualify) {
+    this(out, indent, importedTypes, staticImports, alwaysQualify, false);
+  }
+
+  CodeWriter(Appendable out,
+      String indent,
+      Map<String, ClassName> importedTypes,
+      Set<String> staticImports,
+      Set<String> alwaysQualify,
+      boolean splitLongStrings) {
     this.out = new LineWrapper(out, indent, 100);
     this.indent = checkNotNull(indent, "indent == null");
     this.importedTypes = checkNotNull(importedTypes, "importedTypes == null");
     this.staticImports = checkNotNull(staticImports, "staticImports == null");
     this.alwaysQualify = checkNotNull(alwaysQualify, "alwaysQualify == null");
+    this.splitLongStrings = splitLongStrings;
     this.staticImportClassNames = new LinkedHashSet<>();
     for (String signature : staticImports) {
       staticImportClassNames.add(signature.substring(0, signature.lastIndexOf('.')));
@@ -176,12 +206,12 @@ final class CodeWriter {
    */
   public void emitModifiers(Set<Modifier> modifiers, Set<Modifier> implicitModifiers)
       throws IOException {
-    if (modifiers.isEmpty()) return;
-    for (Modifier modifier : EnumSet.copyOf(modifiers)) {
-      if (implicitModifiers.contains(modifier)) continue;
-      emitAndIndent(modifier.name().toLowerCase(Locale.US));
-      emitAndIndent(" ");
-    }
+    emitModifiers(ModifierSet.mask(modifiers) & ~ModifierSet.mask(implicitModifiers));
+  }
+
+  /** Emits the modifiers in {@code mask}, a {@link ModifierSet} bit mask, in the standard order. */
+  void emitModifiers(long mask) throws IOException {
+    if (mask != 0L) emitAndIndent(ModifierSet.keywords(mask));
   }
 
   public void emitModifiers(Set<Modifier> modifiers) throws IOException {
@@ -247,9 +277,13 @@ final class CodeWriter {
         case "$S":
           String string = (String) codeBlock.args.get(a++);
           // Emit null as a literal null: no quotes.
-          emitAndIndent(string != null
-              ? stringLiteralWithDoubleQuotes(string, indent)
-              : "null");
+          if (string == null) {
+            emitAndIndent("null");
+          } else if (splitLongStrings) {
+            emitStringLiterals(string);
+          } else {
+            emitAndIndent(stringLiteralWithDoubleQuotes(string, indent));
+          }
           break;
 
         case "$T":
@@ -329,6 +363,27 @@ final class CodeWriter {
     return this;
   }
 
+  /**
+   * Emits {@code string} as a literal that javac accepts regardless of its length. Strings too long
+   * for a single class file constant are assembled at runtime from constants that fit. That
+   * expression is not a compile-time constant, but the alternative doesn't compile.
+   */
+  private void emitStringLiterals(String string) throws IOException {
+    List<String> literals =
+        stringLiteralsWithDoubleQuotes(string, indent, MAX_STRING_CONSTANT_LENGTH);
+    if (literals.size() == 1) {
+      emitAndIndent(literals.get(0));
+      return;
+    }
+    // Adjacent constants are folded together by javac, so join them with a method call instead.
+    emit("$T.join($S", ClassName.get(String.class), "");
+    for (String literal : literals) {
+      emitAndIndent(",\n" + indent + indent);
+      emitAndIndent(literal);
+    }
+    emitAndIndent(")");
+  }
+
   private static String extractMemberName(String part) {
     checkArgument(Character.isJavaIdentifierStart(part.charAt(0)), "not an identifier: %s", part);
     for (int i = 1; i <= part.length(); i++) {
@@ -363,6 +418,12 @@ final class CodeWriter {
     } else if (o instanceof CodeBlock) {
       CodeBlock codeBlock = (CodeBlock) o;
       emit(codeBlock);
+    } else if (o instanceof LazyCodeBlock) {
+      LazyCodeBlock lazyCodeBlock = (LazyCodeBlock) o;
+      emit(lazyCodeBlock.get());
+    } else if (o instanceof PrimitiveArrayLiteral) {
+      PrimitiveArrayLiteral arrayLiteral = (PrimitiveArrayLiteral) o;
+      arrayLiteral.emit(this);
     } else {
       emitAndIndent(String.valueOf(o));
     }
@@ -374,6 +435,8 @@ final class CodeWriter {
    * names visible due to inheritance.
    */
   String lookupName(ClassName className) {
+    typeLookups++;
+
     // If the top level simple name is masked by a current type variable, use the canonical name.
     String topLevelSimpleName = className.topLevelClassName().simpleName();
     if (currentTypeVariables.contains(topLevelSimpleName)) {
@@ -388,6 +451,7 @@ final class CodeWriter {
       nameResolved = resolved != null;
 
       if (resolved != null && Objects.equals(resolved.canonicalName, c.canonicalName)) {
+        typeLookupHits++;
         int suffixOffset = c.simpleNames().size() - 1;
         return join(".", className.simpleNames().subList(
             suffixOffset, className.simpleNames().size()));
@@ -400,7 +464,9 @@ final class CodeWriter {
     }
 
     // If the class is in the same package, we're done.
-    if (Objects.equals(packageName, className.packageName())) {
+    if (Objects.equals(packageName, className.packageName())
+        && !shadowedNames.contains(topLevelSimpleName)) {
+      typeLookupHits++;
       referencedNames.add(topLevelSimpleName);
       return join(".", className.simpleNames());
     }
@@ -470,41 +536,61 @@ final class CodeWriter {
    * unnecessary trailing whitespace.
    */
   CodeWriter emitAndIndent(String s) throws IOException {
-    boolean first = true;
-    for (String line : LINE_BREAKING_PATTERN.split(s, -1)) {
-      // Emit a newline character. Make sure blank lines in Javadoc & comments look good.
-      if (!first) {
-        if ((javadoc || comment) && trailingNewline) {
-          emitIndentation();
-          out.append(javadoc ? " *" : "//");
-        }
-        out.append("\n");
-        trailingNewline = true;
-        if (statementLine != -1) {
-          if (statementLine == 0) {
-            indent(2); // Begin multiple-line statement. Increase the indentation level.
-          }
-          statementLine++;
-        }
-      }
+    int start = 0;
+    while (true) {
+      int end = lineBreak(s, start);
+      emitLine(s.substring(start, end), start == 0);
+      if (end == s.length()) return this;
+      start = end + (s.startsWith("\r\n", end) ? 2 : 1);
+    }
+  }
 
-      first = false;
-      if (line.isEmpty()) continue; // Don't indent empty lines.
+  /** Returns the index of the first line break in {@code s} at or after {@code from}. */
+  private static int lineBreak(String s, int from) {
+    for (int i = from; i < s.length(); i++) {
+      switch (s.charAt(i)) {
+        // The same characters as \R in a regex.
+        case '\n': case '\r': case '\u000B': case '\f': case '\u0085': case '\u2028': case '\u2029':
+          return i;
+        default:
+          break;
+      }
+    }
+    return s.length();
+  }
 
-      // Emit indentation and comment prefix if necessary.
-      if (trailingNewline) {
+  private void emitLine(String line, boolean first) throws IOException {
+    // Emit a newline character. Make sure blank lines in Javadoc & comments look good.
+    if (!first) {
+      if ((javadoc || comment) && trailingNewline) {
         emitIndentation();
-        if (javadoc) {
-          out.append(" * ");
-        } else if (comment) {
-          out.append("// ");
+        out.append(javadoc ? " *" : "//");
+      }
+      out.append("\n");
+      newlines++;
+      trailingNewline = true;
+      if (statementLine != -1) {
+        if (statementLine == 0) {
+          indent(2); // Begin multiple-line statement. Increase the indentation level.
         }
+        statementLine++;
       }
+    }
+
+    if (line.isEmpty()) return; // Don't indent empty lines.
 
-      out.append(line);
-      trailingNewline = false;
+    // Emit indentation and comment prefix if necessary.
+    if (trailingNewline) {
+      emitIndentation();
+      if (javadoc) {
+        out.append(" * ");
+      } else if (comment) {
+        out.append("// ");
+      }
     }
-    return this;
+
+    out.append(line);
+    trailingNewline = false;
   }
 
   private void emitIndentation() throws IOException {
@@ -513,6 +599,108 @@ final class CodeWriter {
     }
   }
 
+  /**
+   * Flushes any text that is buffered to decide where to wrap lines. Nothing may be emitted after
+   * this is called.
+   */
+  void close() throws IOException {
+    out.close();
+  }
+
+  /**
+   * Returns this writer to the state it was constructed in, discarding scopes, imports collected
+   * so far and text buffered for line wrapping. The appendable and configuration are kept.
+   */
+  void reset() {
+    out.reset();
+    indentLevel = 0;
+    javadoc = false;
+    comment = false;
+    packageName = NO_PACKAGE;
+    typeSpecStack.clear();
+    importableTypes.clear();
+    referencedNames.clear();
+    shadowedNames.clear();
+    currentTypeVariables.clear();
+    trailingNewline = false;
+    statementLine = -1;
+    newlines = 0;
+    typeLookups = 0;
+    typeLookupHits = 0;
+  }
+
+  /**
+   * Returns the text {@code emitter} writes to a writer with the default configuration. Each
+   * thread reuses one writer and buffer for this, so small renders like {@code toString()} don't
+   * construct them every time. Between renders the pool retains at most the writer's buffers of
+   * {@link #MAX_POOLED_CAPACITY} chars and collections of {@link #MAX_POOLED_NAMES} names.
+   */
+  static String render(Emitter emitter) {
+    WeakReference<PooledWriter> reference = POOL.get();
+    PooledWriter pooled = reference != null ? reference.get() : null;
+    boolean nested = pooled != null && pooled.inUse;
+    boolean fresh = pooled == null || nested;
+    if (fresh) {
+      // Nothing is pooled, or something being rendered on this thread is rendering too, such as
+      // via toString().
+      pooled = new PooledWriter();
+    } else {
+      pooled.out.setLength(0);
+      pooled.codeWriter.reset();
+    }
+    pooled.inUse = true;
+    try {
+      emitter.emit(pooled.codeWriter);
+      pooled.codeWriter.close();
+      return pooled.out.toString();
+    } catch (IOException e) {
+      throw new AssertionError();
+    } finally {
+      pooled.inUse = false;
+      if (!nested) {
+        // Cleared collections and buffers keep their capacity, so don't keep those of a large
+        // render alive for the next one.
+        if (!pooled.isSmall()) {
+          POOL.remove();
+        } else if (fresh) {
+          POOL.set(new WeakReference<>(pooled));
+        }
+      }
+    }
+  }
+
+  /** Writes code for {@link #render}. */
+  interface Emitter {
+    void emit(CodeWriter codeWriter) throws IOException;
+  }
+
+  long charsWritten() {
+    return out.charsWritten();
+  }
+
+  /** Returns the number of lines started, including those started by wrapping. */
+  int linesWritten() {
+    return newlines + out.wraps;
+  }
+
+  int lineWraps() {
+    return out.wraps;
+  }
+
+  /** Returns true if a type of this package was written with the simple name {@code name}. */
+  boolean wroteSamePackageName(String name) {
+    return referencedNames.contains(name);
+  }
+
+  /**
+   * Writes types of this package named {@code name} with their qualified names from now on. Use
+   * this for nested types that are declared without being in their enclosing type's spec, so that
+   * {@link #resolve} can't see them.
+   */
+  void shadow(String name) {
+    shadowedNames.add(name);
+  }
+
   /**
    * Returns the types that should have been imported for this code. If there were any simple name
    * collisions, that type's first use is imported.
@@ -523,6 +711,21 @@ final class CodeWriter {
     return result;
   }
 
+  /** A writer with the default configuration and the buffer it writes to. */
+  private static final class PooledWriter {
+    final StringBuilder out = new StringBuilder();
+    final CodeWriter codeWriter = new CodeWriter(out);
+    boolean inUse;
+
+    /** Returns true if the last render left buffers and collections that are cheap to keep. */
+    boolean isSmall() {
+      return out.capacity() <= MAX_POOLED_CAPACITY
+          && codeWriter.out.bufferCapacity() <= MAX_POOLED_CAPACITY
+          && codeWriter.importableTypes.size() <= MAX_POOLED_NAMES
+          && codeWriter.referencedNames.size() <= MAX_POOLED_NAMES;
+    }
+  }
+
   // A makeshift multi-set implementation
   private static final class Multiset<T> {
     private final Map<T, Integer> map = new LinkedHashMap<>();
@@ -543,5 +746,9 @@ final class CodeWriter {
     boolean contains(T t) {
       return map.getOrDefault(t, 0) > 0;
     }
+
+    void clear() {
+      map.clear();
+    }
   }
 }
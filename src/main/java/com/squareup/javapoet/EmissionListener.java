@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+/**
+ * Receives measurements of each {@link JavaFile} written. Register a listener with {@link
+ * JavaFile.Builder#emissionListener}; files without one skip the measurements entirely.
+ *
+ * <p>Listeners are called on the thread that wrote the file, so a listener shared by files written
+ * concurrently must be thread-safe. {@link EmissionMetrics} is a listener that sums measurements
+ * across threads.
+ */
+public interface EmissionListener {
+  /**
+   * Called after {@code javaFile} was written by one of its {@code writeTo} methods. Since a file
+   * has exactly one top-level type, {@code stats} is also the cost of {@code javaFile.typeSpec}.
+   */
+  void fileEmitted(JavaFile javaFile, EmissionStats stats);
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link EmissionListener} that sums the measurements of every file it's registered with. It
+ * may be shared by files written on many threads; each sum is a {@link LongAdder}, so threads
+ * don't contend on a shared counter.
+ *
+ * <pre>{@code
+ * EmissionMetrics metrics = new EmissionMetrics();
+ * for (TypeSpec type : types) {
+ *   JavaFile.builder(packageName, type)
+ *       .emissionListener(metrics)
+ *       .build()
+ *       .writeTo(filer);
+ * }
+ * log(metrics);
+ * }</pre>
+ */
+public final class EmissionMetrics implements EmissionListener {
+  private final LongAdder files = new LongAdder();
+  private final LongAdder importPassNanos = new LongAdder();
+  private final LongAdder emitPassNanos = new LongAdder();
+  private final LongAdder charsWritten = new LongAdder();
+  private final LongAdder linesWritten = new LongAdder();
+  private final LongAdder lineWraps = new LongAdder();
+  private final LongAdder typeLookups = new LongAdder();
+  private final LongAdder typeLookupHits = new LongAdder();
+
+  /** Creates metrics with every sum at zero. */
+  public EmissionMetrics() {
+  }
+
+  @Override public void fileEmitted(JavaFile javaFile, EmissionStats stats) {
+    files.increment();
+    importPassNanos.add(stats.importPassNanos);
+    emitPassNanos.add(stats.emitPassNanos);
+    charsWritten.add(stats.charsWritten);
+    linesWritten.add(stats.linesWritten);
+    lineWraps.add(stats.lineWraps);
+    typeLookups.add(stats.typeLookups);
+    typeLookupHits.add(stats.typeLookupHits);
+  }
+
+  public long files() {
+    return files.sum();
+  }
+
+  /** See {@link EmissionStats#importPassNanos}. */
+  public long importPassNanos() {
+    return importPassNanos.sum();
+  }
+
+  /** See {@link EmissionStats#emitPassNanos}. */
+  public long emitPassNanos() {
+    return emitPassNanos.sum();
+  }
+
+  public long charsWritten() {
+    return charsWritten.sum();
+  }
+
+  public long linesWritten() {
+    return linesWritten.sum();
+  }
+
+  /** See {@link EmissionStats#lineWraps}. */
+  public long lineWraps() {
+    return lineWraps.sum();
+  }
+
+  /** See {@link EmissionStats#typeLookups}. */
+  public long typeLookups() {
+    return typeLookups.sum();
+  }
+
+  /** See {@link EmissionStats#typeLookupHits}. */
+  public long typeLookupHits() {
+    return typeLookupHits.sum();
+  }
+
+  @Override public String toString() {
+    return "EmissionMetrics{files=" + files()
+        + ", importPassNanos=" + importPassNanos()
+        + ", emitPassNanos=" + emitPassNanos()
+        + ", charsWritten=" + charsWritten()
+        + ", linesWritten=" + linesWritten()
+        + ", lineWraps=" + lineWraps()
+        + ", typeLookups=" + typeLookups()
+        + ", typeLookupHits=" + typeLookupHits()
+        + "}";
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+/** Measurements of writing one {@link JavaFile}. */
+public final class EmissionStats {
+  /** Time spent in the first pass, which emits the file to find the types it should import. */
+  public final long importPassNanos;
+  /** Time spent in the second pass, which writes the file. */
+  public final long emitPassNanos;
+  public final long charsWritten;
+  public final int linesWritten;
+  /** The number of lines that were wrapped because they would exceed the column limit. */
+  public final int lineWraps;
+  /** The number of class names written in the second pass, such as for {@code $T}. */
+  public final int typeLookups;
+  /**
+   * The number of {@link #typeLookups} that resolved to a short name through an import, the
+   * current package or an enclosing type. The remainder were written fully qualified.
+   */
+  public final int typeLookupHits;
+
+  EmissionStats(long importPassNanos, long emitPassNanos, CodeWriter codeWriter) {
+    this.importPassNanos = importPassNanos;
+    this.emitPassNanos = emitPassNanos;
+    this.charsWritten = codeWriter.charsWritten();
+    this.linesWritten = codeWriter.linesWritten();
+    this.lineWraps = codeWriter.lineWraps();
+    this.typeLookups = codeWriter.typeLookups;
+    this.typeLookupHits = codeWriter.typeLookupHits;
+  }
+
+  @Override public String toString() {
+    return "EmissionStats{importPassNanos=" + importPassNanos
+        + ", emitPassNanos=" + emitPassNanos
+        + ", charsWritten=" + charsWritten
+        + ", linesWritten=" + linesWritten
+        + ", lineWraps=" + lineWraps
+        + ", typeLookups=" + typeLookups
+        + ", typeLookupHits=" + typeLookupHits
+        + "}";
+  }
+}
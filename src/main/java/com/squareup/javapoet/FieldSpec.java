@@ -17,7 +17,6 @@ package com.squareup.javapoet;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -37,12 +36,12 @@ public final class FieldSpec {
   public final Set<Modifier> modifiers;
   public final CodeBlock initializer;
 
-  private FieldSpec(Builder builder) {
+  private FieldSpec(Builder builder, boolean transfer) {
     this.type = checkNotNull(builder.type, "type == null");
     this.name = checkNotNull(builder.name, "name == null");
-    this.javadoc = builder.javadoc.build();
-    this.annotations = Util.immutableList(builder.annotations);
-    this.modifiers = Util.immutableSet(builder.modifiers);
+    this.javadoc = builder.javadoc.build(transfer);
+    this.annotations = Util.immutableList(builder.annotations, transfer);
+    this.modifiers = ModifierSet.of(builder.modifiers);
     this.initializer = (builder.initializer == null)
         ? CodeBlock.builder().build()
         : builder.initializer;
@@ -76,14 +75,7 @@ public final class FieldSpec {
   }
 
   @Override public String toString() {
-    StringBuilder out = new StringBuilder();
-    try {
-      CodeWriter codeWriter = new CodeWriter(out);
-      emit(codeWriter, Collections.emptySet());
-      return out.toString();
-    } catch (IOException e) {
-      throw new AssertionError();
-    }
+    return CodeWriter.render(codeWriter -> emit(codeWriter, Collections.emptySet()));
   }
 
   public static Builder builder(TypeName type, String name, Modifier... modifiers) {
@@ -112,9 +104,10 @@ public final class FieldSpec {
 
     private final CodeBlock.Builder javadoc = CodeBlock.builder();
     private CodeBlock initializer = null;
+    private boolean frozen;
 
-    public final List<AnnotationSpec> annotations = new ArrayList<>();
-    public final List<Modifier> modifiers = new ArrayList<>();
+    public final List<AnnotationSpec> annotations = new FreezableList<>();
+    public final List<Modifier> modifiers = new FreezableList<>();
 
     private Builder(TypeName type, String name) {
       this.type = type;
@@ -169,7 +162,23 @@ public final class FieldSpec {
     }
 
     public FieldSpec build() {
-      return new FieldSpec(this);
+      return build(false);
+    }
+
+    /**
+     * Returns a field like {@link #build}, but hands this builder's lists to the field instead of
+     * copying them. This builder can't be changed or built again afterwards.
+     */
+    public FieldSpec freeze() {
+      return build(true);
+    }
+
+    private FieldSpec build(boolean transfer) {
+      checkState(!frozen, "this builder was frozen");
+      FieldSpec result = new FieldSpec(this, transfer);
+      if (transfer) ((FreezableList<Modifier>) modifiers).freeze();
+      frozen = transfer;
+      return result;
     }
   }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import static com.squareup.javapoet.Util.checkState;
+
+/**
+ * An array list that can be made immutable in place. Builders collect members in these so that
+ * {@code freeze()} can hand the list to the spec it builds instead of copying it.
+ */
+final class FreezableList<E> extends AbstractList<E> implements RandomAccess {
+  private static final Object[] EMPTY = {};
+
+  private Object[] elements = EMPTY;
+  private int size;
+  private boolean frozen;
+  private List<E> view;
+
+  /**
+   * Makes this list immutable. Every mutation after this throws {@link IllegalStateException}, like
+   * the rest of a frozen builder. Specs get an unmodifiable view, which throws {@link
+   * UnsupportedOperationException} like the lists of specs that were built.
+   */
+  void freeze() {
+    frozen = true;
+  }
+
+  /** Returns the unmodifiable view of this list that is handed to specs. */
+  List<E> view() {
+    if (view == null) view = Collections.unmodifiableList(this);
+    return view;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override public E get(int index) {
+    Objects.checkIndex(index, size);
+    return (E) elements[index];
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  @Override public E set(int index, E element) {
+    checkNotFrozen();
+    E previous = get(index);
+    elements[index] = element;
+    return previous;
+  }
+
+  @Override public boolean add(E element) {
+    checkNotFrozen();
+    if (size == elements.length) grow(size + 1);
+    elements[size++] = element;
+    modCount++;
+    return true;
+  }
+
+  @Override public void add(int index, E element) {
+    checkNotFrozen();
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+    }
+    if (size == elements.length) grow(size + 1);
+    System.arraycopy(elements, index, elements, index + 1, size - index);
+    elements[index] = element;
+    size++;
+    modCount++;
+  }
+
+  @Override public boolean addAll(Collection<? extends E> collection) {
+    checkNotFrozen();
+    Object[] added = collection.toArray();
+    if (added.length == 0) return false;
+    if (size + added.length > elements.length) grow(size + added.length);
+    System.arraycopy(added, 0, elements, size, added.length);
+    size += added.length;
+    modCount++;
+    return true;
+  }
+
+  @Override public E remove(int index) {
+    checkNotFrozen();
+    E previous = get(index);
+    System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+    elements[--size] = null;
+    modCount++;
+    return previous;
+  }
+
+  @Override public void clear() {
+    checkNotFrozen();
+    Arrays.fill(elements, 0, size, null);
+    size = 0;
+    modCount++;
+  }
+
+  private void grow(int minCapacity) {
+    elements = Arrays.copyOf(elements, Math.max(minCapacity, Math.max(10, size + (size >> 1))));
+  }
+
+  private void checkNotFrozen() {
+    checkState(!frozen, "this builder was frozen");
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.squareup.javapoet.Util.checkState;
+
+/**
+ * A linked hash map that can be made immutable in place, like {@link FreezableList}. Builders keep
+ * their maps in these so that {@code freeze()} can lock them along with their lists.
+ */
+final class FreezableMap<K, V> extends AbstractMap<K, V> {
+  private final Map<K, V> entries = new LinkedHashMap<>();
+  private final Set<Entry<K, V>> entrySet = new EntrySet();
+  private boolean frozen;
+  private Map<K, V> view;
+
+  /** Makes this map immutable. Every mutation after this throws. */
+  void freeze() {
+    frozen = true;
+  }
+
+  /** Returns the unmodifiable view of this map that is handed to specs. */
+  Map<K, V> view() {
+    if (view == null) view = Collections.unmodifiableMap(this);
+    return view;
+  }
+
+  @Override public int size() {
+    return entries.size();
+  }
+
+  @Override public boolean containsKey(Object key) {
+    return entries.containsKey(key);
+  }
+
+  @Override public V get(Object key) {
+    return entries.get(key);
+  }
+
+  @Override public V put(K key, V value) {
+    checkNotFrozen();
+    return entries.put(key, value);
+  }
+
+  @Override public V remove(Object key) {
+    checkNotFrozen();
+    return entries.remove(key);
+  }
+
+  @Override public void clear() {
+    checkNotFrozen();
+    entries.clear();
+  }
+
+  @Override public Set<Entry<K, V>> entrySet() {
+    return entrySet;
+  }
+
+  private void checkNotFrozen() {
+    checkState(!frozen, "this builder was frozen");
+  }
+
+  private final class EntrySet extends AbstractSet<Entry<K, V>> {
+    @Override public int size() {
+      return entries.size();
+    }
+
+    @Override public Iterator<Entry<K, V>> iterator() {
+      Iterator<Entry<K, V>> iterator = entries.entrySet().iterator();
+      return new Iterator<Entry<K, V>>() {
+        @Override public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override public Entry<K, V> next() {
+          Entry<K, V> entry = iterator.next();
+          return frozen ? new SimpleImmutableEntry<>(entry) : entry;
+        }
+
+        @Override public void remove() {
+          checkNotFrozen();
+          iterator.remove();
+        }
+      };
+    }
+  }
+}
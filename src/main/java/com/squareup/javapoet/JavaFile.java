@@ -60,17 +60,21 @@ public final class JavaFile {
   public final String packageName;
   public final TypeSpec typeSpec;
   public final boolean skipJavaLangImports;
+  public final boolean splitLongStrings;
   private final Set<String> staticImports;
   private final Set<String> alwaysQualify;
   private final String indent;
+  private final EmissionListener emissionListener;
 
   private JavaFile(Builder builder) {
     this.fileComment = builder.fileComment.build();
     this.packageName = builder.packageName;
     this.typeSpec = builder.typeSpec;
     this.skipJavaLangImports = builder.skipJavaLangImports;
+    this.splitLongStrings = builder.splitLongStrings;
     this.staticImports = Util.immutableSet(builder.staticImports);
     this.indent = builder.indent;
+    this.emissionListener = builder.emissionListener;
 
     Set<String> alwaysQualifiedNames = new LinkedHashSet<>();
     fillAlwaysQualifiedNames(builder.typeSpec, alwaysQualifiedNames);
@@ -85,20 +89,49 @@ public final class JavaFile {
   }
 
   public void writeTo(Appendable out) throws IOException {
+    writeTo(out, emissionListener, true);
+  }
+
+  /**
+   * Emits this file to {@code out}. Only writes are reported, not {@link #toString()} and the
+   * {@link #equals} and {@link #hashCode} that call it.
+   */
+  private void writeTo(Appendable out, EmissionListener listener, boolean recordEvents)
+      throws IOException {
+    long start = listener != null ? System.nanoTime() : 0L;
+    JfrEvents.FileRenderEvent renderEvent = null;
+    JfrEvents.ImportResolutionEvent importEvent = null;
+    if (recordEvents && JfrEvents.AVAILABLE) {
+      renderEvent = JfrEvents.beginFileRender();
+      importEvent = JfrEvents.beginImportResolution();
+    }
+
     // First pass: emit the entire class, just to collect the types we'll need to import.
     CodeWriter importsCollector = new CodeWriter(
         NULL_APPENDABLE,
         indent,
+        Collections.emptyMap(),
         staticImports,
-        alwaysQualify
+        alwaysQualify,
+        splitLongStrings
     );
     emit(importsCollector);
     Map<String, ClassName> suggestedImports = importsCollector.suggestedImports();
+    long importsCollected = listener != null ? System.nanoTime() : 0L;
+    if (importEvent != null) JfrEvents.commit(importEvent, this, suggestedImports.size());
 
     // Second pass: write the code, taking advantage of the imports.
-    CodeWriter codeWriter
-        = new CodeWriter(out, indent, suggestedImports, staticImports, alwaysQualify);
+    CodeWriter codeWriter = new CodeWriter(
+        out, indent, suggestedImports, staticImports, alwaysQualify, splitLongStrings);
     emit(codeWriter);
+
+    if (renderEvent != null) {
+      JfrEvents.commit(renderEvent, this, suggestedImports.size(), codeWriter.charsWritten());
+    }
+    if (listener != null) {
+      listener.fileEmitted(this, new EmissionStats(importsCollected - start,
+          System.nanoTime() - importsCollected, codeWriter));
+    }
   }
 
   /** Writes this to {@code directory} as UTF-8 using the standard directory structure. */
@@ -139,9 +172,11 @@ public final class JavaFile {
     }
 
     Path outputPath = outputDirectory.resolve(typeSpec.name + ".java");
+    JfrEvents.FileWriteEvent writeEvent = JfrEvents.AVAILABLE ? JfrEvents.beginFileWrite() : null;
     try (Writer writer = new OutputStreamWriter(Files.newOutputStream(outputPath), charset)) {
       writeTo(writer);
     }
+    if (writeEvent != null) JfrEvents.commit(writeEvent, this, outputPath.toUri());
 
     return outputPath;
   }
@@ -166,6 +201,7 @@ public final class JavaFile {
         ? typeSpec.name
         : packageName + "." + typeSpec.name;
     List<Element> originatingElements = typeSpec.originatingElements;
+    JfrEvents.FileWriteEvent writeEvent = JfrEvents.AVAILABLE ? JfrEvents.beginFileWrite() : null;
     JavaFileObject filerSourceFile = filer.createSourceFile(fileName,
         originatingElements.toArray(new Element[originatingElements.size()]));
     try (Writer writer = filerSourceFile.openWriter()) {
@@ -177,6 +213,7 @@ public final class JavaFile {
       }
       throw e;
     }
+    if (writeEvent != null) JfrEvents.commit(writeEvent, this, filerSourceFile.toUri());
   }
 
   private void emit(CodeWriter codeWriter) throws IOException {
@@ -233,7 +270,7 @@ public final class JavaFile {
   @Override public String toString() {
     try {
       StringBuilder result = new StringBuilder();
-      writeTo(result);
+      writeTo(result, null, false);
       return result.toString();
     } catch (IOException e) {
       throw new AssertionError();
@@ -269,7 +306,9 @@ public final class JavaFile {
     Builder builder = new Builder(packageName, typeSpec);
     builder.fileComment.add(fileComment);
     builder.skipJavaLangImports = skipJavaLangImports;
+    builder.splitLongStrings = splitLongStrings;
     builder.indent = indent;
+    builder.emissionListener = emissionListener;
     return builder;
   }
 
@@ -278,7 +317,9 @@ public final class JavaFile {
     private final TypeSpec typeSpec;
     private final CodeBlock.Builder fileComment = CodeBlock.builder();
     private boolean skipJavaLangImports;
+    private boolean splitLongStrings;
     private String indent = "  ";
+    private EmissionListener emissionListener;
 
     public final Set<String> staticImports = new TreeSet<>();
 
@@ -324,11 +365,34 @@ public final class JavaFile {
       return this;
     }
 
+    /**
+     * Call this to emit {@code $S} strings that are too long for a class file constant as several
+     * shorter constants joined at runtime.
+     *
+     * <p>The class file format limits each string constant to 65535 bytes of modified UTF-8, and
+     * javac rejects longer string literals with "constant string too long". When this is enabled,
+     * such strings are emitted as {@code String.join("", "...", "...")}. Note that the result is
+     * not a compile-time constant, so it cannot be used in {@code case} labels or annotations.
+     */
+    public Builder splitLongStrings(boolean splitLongStrings) {
+      this.splitLongStrings = splitLongStrings;
+      return this;
+    }
+
     public Builder indent(String indent) {
       this.indent = indent;
       return this;
     }
 
+    /**
+     * Reports measurements of each write of the built file to {@code emissionListener}, or to no
+     * listener if it's null. {@link JavaFile#toString()} doesn't report.
+     */
+    public Builder emissionListener(EmissionListener emissionListener) {
+      this.emissionListener = emissionListener;
+      return this;
+    }
+
     public JavaFile build() {
       return new JavaFile(this);
     }
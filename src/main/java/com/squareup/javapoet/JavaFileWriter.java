@@ -0,0 +1,418 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Modifier;
+
+import static com.squareup.javapoet.Util.checkArgument;
+import static com.squareup.javapoet.Util.checkNotNull;
+import static com.squareup.javapoet.Util.checkState;
+
+/**
+ * Writes a Java file one declaration at a time, without building the complete {@link TypeSpec}
+ * first. Use this for files too large to hold in memory as specs: the writer only retains the
+ * types and the method that are currently open.
+ *
+ * <pre>{@code
+ * try (JavaFileWriter writer = JavaFileWriter.builder(out, "com.example")
+ *     .addImport(List.class)
+ *     .build()) {
+ *   writer.beginType(TypeSpec.classBuilder("Fixtures").build());
+ *   writer.beginMethod(MethodSpec.methodBuilder("load").addParameter(listOfString, "out").build());
+ *   for (String row : rows) {
+ *     writer.addStatement("out.add($S)", row);
+ *   }
+ *   writer.endMethod();
+ *   writer.endType();
+ * }
+ * }</pre>
+ *
+ * <p>Because the file is written before its contents are known, imports must be declared up front.
+ * Types that aren't imported are written with their fully-qualified names, except for types in the
+ * same package. A nested type can't have the simple name of a type in the same package that was
+ * already written, and such types are written with their qualified names after it. Members are
+ * written in the order they're added.
+ */
+public final class JavaFileWriter implements Closeable {
+  private final CodeWriter codeWriter;
+  private final Map<String, ClassName> imports;
+  private final Deque<OpenType> openTypes = new ArrayDeque<>();
+  private MethodSpec openMethod;
+  private boolean wroteTopLevelType;
+
+  private JavaFileWriter(Builder builder) throws IOException {
+    this.imports = Util.immutableMap(builder.imports);
+    this.codeWriter = new CodeWriter(builder.out, builder.indent, imports,
+        builder.staticImports, Collections.emptySet(), builder.splitLongStrings);
+
+    codeWriter.pushPackage(builder.packageName);
+    CodeBlock fileComment = builder.fileComment.build();
+    if (!fileComment.isEmpty()) {
+      codeWriter.emitComment(fileComment);
+    }
+    if (!builder.packageName.isEmpty()) {
+      codeWriter.emit("package $L;\n", builder.packageName);
+      codeWriter.emit("\n");
+    }
+    if (!builder.staticImports.isEmpty()) {
+      for (String signature : builder.staticImports) {
+        codeWriter.emit("import static $L;\n", signature);
+      }
+      codeWriter.emit("\n");
+    }
+    if (!imports.isEmpty()) {
+      for (ClassName className : new TreeSet<>(imports.values())) {
+        codeWriter.emit("import $L;\n", className);
+      }
+      codeWriter.emit("\n");
+    }
+  }
+
+  public static Builder builder(Appendable out, String packageName) {
+    checkNotNull(out, "out == null");
+    checkNotNull(packageName, "packageName == null");
+    return new Builder(out, packageName);
+  }
+
+  /**
+   * Writes the declaration of {@code type} and opens its body. The type must not have members
+   * other than enum constants; add them with this writer's methods instead, then call {@link
+   * #endType}. Types may be nested in the open type, but not in the open method.
+   */
+  public JavaFileWriter beginType(TypeSpec type) throws IOException {
+    checkArgument(type != null, "type == null");
+    checkArgument(type.anonymousTypeArguments == null, "anonymous types can't be opened");
+    checkArgument(type.fieldSpecs.isEmpty() && type.methodSpecs.isEmpty()
+        && type.typeSpecs.isEmpty() && type.staticBlock.isEmpty()
+        && type.initializerBlock.isEmpty(), "%s has members; add them to this writer instead",
+        type.name);
+    Set<Modifier> implicitModifiers;
+    if (openTypes.isEmpty()) {
+      checkState(!wroteTopLevelType, "a file has only one top-level type");
+      checkArgument(!imports.containsKey(type.name), "%s clashes with an import", type.name);
+      implicitModifiers = Collections.emptySet();
+    } else {
+      checkNestedTypeName(type.name);
+      implicitModifiers = beforeMember().type.kind.implicitTypeModifiers;
+    }
+
+    type.emitDeclaration(codeWriter, implicitModifiers);
+    codeWriter.emit(" {\n");
+    codeWriter.pushType(type);
+    codeWriter.indent();
+    openTypes.push(new OpenType(type));
+    wroteTopLevelType = true;
+    for (Map.Entry<String, TypeSpec> enumConstant : type.enumConstants.entrySet()) {
+      addEnumConstant(enumConstant.getKey(), enumConstant.getValue());
+    }
+    return this;
+  }
+
+  /** Closes the body of the type opened most recently. */
+  public JavaFileWriter endType() throws IOException {
+    checkNoOpenMethod();
+    checkState(!openTypes.isEmpty(), "no type is open");
+    OpenType openType = openTypes.pop();
+    if (openType.enumConstantCount > 0 && !openType.hasMembers) {
+      codeWriter.emit("\n");
+    }
+    codeWriter.unindent();
+    codeWriter.popType();
+    codeWriter.popTypeVariables(openType.type.typeVariables);
+    codeWriter.emit("}\n");
+    return this;
+  }
+
+  public JavaFileWriter addEnumConstant(String name) throws IOException {
+    return addEnumConstant(name, TypeSpec.anonymousClassBuilder("").build());
+  }
+
+  /** Writes an enum constant. Enum constants must be written before the enum's other members. */
+  public JavaFileWriter addEnumConstant(String name, TypeSpec typeSpec) throws IOException {
+    checkNoOpenMethod();
+    checkState(!openTypes.isEmpty(), "no type is open");
+    OpenType openType = openTypes.peek();
+    checkState(openType.type.kind == TypeSpec.Kind.ENUM, "%s is not enum", openType.type.name);
+    checkState(!openType.hasMembers, "enum constants must be added before other members");
+    checkArgument(SourceVersion.isName(name), "not a valid enum constant: %s", name);
+    checkArgument(typeSpec.anonymousTypeArguments != null,
+        "enum constants must have anonymous type arguments");
+
+    if (openType.enumConstantCount > 0) {
+      codeWriter.emit(",\n");
+      codeWriter.emit("\n");
+    }
+    typeSpec.emit(codeWriter, name, Collections.emptySet());
+    openType.enumConstantCount++;
+    return this;
+  }
+
+  public JavaFileWriter addField(FieldSpec fieldSpec) throws IOException {
+    checkArgument(fieldSpec != null, "fieldSpec == null");
+    OpenType openType = beforeMember();
+    fieldSpec.emit(codeWriter, openType.type.kind.implicitFieldModifiers);
+    return this;
+  }
+
+  public JavaFileWriter addStaticBlock(CodeBlock block) throws IOException {
+    beforeMember();
+    codeWriter.emit(CodeBlock.builder()
+        .add("static {\n")
+        .indent()
+        .add(block)
+        .unindent()
+        .add("}\n")
+        .build());
+    return this;
+  }
+
+  public JavaFileWriter addInitializerBlock(CodeBlock block) throws IOException {
+    OpenType openType = beforeMember();
+    TypeSpec.Kind kind = openType.type.kind;
+    if (kind != TypeSpec.Kind.CLASS && kind != TypeSpec.Kind.ENUM) {
+      throw new UnsupportedOperationException(kind + " can't have initializer blocks");
+    }
+    codeWriter.emit(CodeBlock.builder()
+        .add("{\n")
+        .indent()
+        .add(block)
+        .unindent()
+        .add("}\n")
+        .build());
+    return this;
+  }
+
+  public JavaFileWriter addMethod(MethodSpec methodSpec) throws IOException {
+    checkArgument(methodSpec != null, "methodSpec == null");
+    OpenType openType = beforeMember();
+    methodSpec.emit(codeWriter, openType.type.name, openType.type.kind.implicitMethodModifiers);
+    return this;
+  }
+
+  /** Writes a complete nested type. */
+  public JavaFileWriter addType(TypeSpec typeSpec) throws IOException {
+    checkArgument(typeSpec != null, "typeSpec == null");
+    checkNestedTypeName(typeSpec.name);
+    OpenType openType = beforeMember();
+    typeSpec.emit(codeWriter, null, openType.type.kind.implicitTypeModifiers);
+    return this;
+  }
+
+  /**
+   * Writes the signature of {@code method} and opens its body. The method must not have code; add
+   * it with {@link #addCode}, {@link #addStatement} and the control flow methods of this writer,
+   * then call {@link #endMethod}.
+   */
+  public JavaFileWriter beginMethod(MethodSpec method) throws IOException {
+    checkArgument(method != null, "method == null");
+    checkArgument(method.code.isEmpty(), "%s has code; add it to this writer instead",
+        method.name);
+    checkArgument(!method.hasModifier(Modifier.ABSTRACT) && !method.hasModifier(Modifier.NATIVE),
+        "%s has no body", method.name);
+    OpenType openType = beforeMember();
+    method.emitSignature(codeWriter, openType.type.name,
+        openType.type.kind.implicitMethodModifiers);
+    codeWriter.emit(" {\n");
+    codeWriter.indent();
+    openMethod = method;
+    return this;
+  }
+
+  /** Closes the body of the open method. */
+  public JavaFileWriter endMethod() throws IOException {
+    checkState(openMethod != null, "no method is open");
+    codeWriter.emit(CodeBlock.of(""), true);
+    codeWriter.unindent();
+    codeWriter.emit("}\n");
+    codeWriter.popTypeVariables(openMethod.typeVariables);
+    openMethod = null;
+    return this;
+  }
+
+  public JavaFileWriter addCode(String format, Object... args) throws IOException {
+    return addCode(CodeBlock.of(format, args));
+  }
+
+  public JavaFileWriter addCode(CodeBlock codeBlock) throws IOException {
+    checkState(openMethod != null, "no method is open");
+    codeWriter.emit(codeBlock);
+    return this;
+  }
+
+  public JavaFileWriter addStatement(String format, Object... args) throws IOException {
+    return addCode(CodeBlock.builder().addStatement(format, args).build());
+  }
+
+  public JavaFileWriter addStatement(CodeBlock codeBlock) throws IOException {
+    return addCode(CodeBlock.builder().addStatement(codeBlock).build());
+  }
+
+  /** See {@link CodeBlock.Builder#beginControlFlow}. */
+  public JavaFileWriter beginControlFlow(String controlFlow, Object... args) throws IOException {
+    return addCode(CodeBlock.builder().beginControlFlow(controlFlow, args).build());
+  }
+
+  /** See {@link CodeBlock.Builder#nextControlFlow}. */
+  public JavaFileWriter nextControlFlow(String controlFlow, Object... args) throws IOException {
+    return addCode(CodeBlock.builder().nextControlFlow(controlFlow, args).build());
+  }
+
+  public JavaFileWriter endControlFlow() throws IOException {
+    return addCode(CodeBlock.builder().endControlFlow().build());
+  }
+
+  /** See {@link CodeBlock.Builder#endControlFlow(String, Object...)}. */
+  public JavaFileWriter endControlFlow(String controlFlow, Object... args) throws IOException {
+    return addCode(CodeBlock.builder().endControlFlow(controlFlow, args).build());
+  }
+
+  /**
+   * Flushes the file to its {@link Appendable}, which isn't closed. Every type and method must be
+   * closed first.
+   */
+  @Override public void close() throws IOException {
+    checkNoOpenMethod();
+    checkState(openTypes.isEmpty(), "type %s is open",
+        !openTypes.isEmpty() ? openTypes.peek().type.name : null);
+    codeWriter.popPackage();
+    codeWriter.close();
+  }
+
+  /** Writes the separator before a member of the open type, and returns that type. */
+  private OpenType beforeMember() throws IOException {
+    checkNoOpenMethod();
+    checkState(!openTypes.isEmpty(), "no type is open");
+    OpenType openType = openTypes.peek();
+    if (openType.type.kind == TypeSpec.Kind.ENUM && !openType.hasMembers) {
+      codeWriter.emit(";\n");
+    }
+    if (openType.hasMembers || openType.enumConstantCount > 0) {
+      codeWriter.emit("\n");
+    }
+    openType.hasMembers = true;
+    return openType;
+  }
+
+  /**
+   * Checks that a nested type named {@code name} doesn't change the meaning of a simple name that
+   * was already written, and qualifies the types of this package that it shadows from now on.
+   */
+  private void checkNestedTypeName(String name) {
+    checkArgument(!imports.containsKey(name), "%s clashes with an import", name);
+    checkArgument(!codeWriter.wroteSamePackageName(name),
+        "%s clashes with a type in the same package that was already written", name);
+    codeWriter.shadow(name);
+  }
+
+  private void checkNoOpenMethod() {
+    if (openMethod != null) {
+      throw new IllegalStateException("method " + openMethod.name + " is open");
+    }
+  }
+
+  private static final class OpenType {
+    final TypeSpec type;
+    int enumConstantCount;
+    /** True once a member other than an enum constant has been written. */
+    boolean hasMembers;
+
+    OpenType(TypeSpec type) {
+      this.type = type;
+    }
+  }
+
+  public static final class Builder {
+    private final Appendable out;
+    private final String packageName;
+    private final CodeBlock.Builder fileComment = CodeBlock.builder();
+    private final Map<String, ClassName> imports = new LinkedHashMap<>();
+    private final Set<String> staticImports = new TreeSet<>();
+    private boolean splitLongStrings;
+    private String indent = "  ";
+
+    private Builder(Appendable out, String packageName) {
+      this.out = out;
+      this.packageName = packageName;
+    }
+
+    public Builder addFileComment(String format, Object... args) {
+      this.fileComment.add(format, args);
+      return this;
+    }
+
+    /**
+     * Imports {@code className}, so that it's written with its simple name. Two imports can't
+     * have the same simple name.
+     */
+    public Builder addImport(ClassName className) {
+      checkArgument(className != null, "className == null");
+      ClassName previous = imports.put(className.simpleName(), className.withoutAnnotations());
+      checkArgument(previous == null || previous.equals(className.withoutAnnotations()),
+          "%s and %s have the same simple name", previous, className);
+      return this;
+    }
+
+    public Builder addImport(Class<?> clazz) {
+      return addImport(ClassName.get(clazz));
+    }
+
+    public Builder addStaticImport(Enum<?> constant) {
+      return addStaticImport(ClassName.get(constant.getDeclaringClass()), constant.name());
+    }
+
+    public Builder addStaticImport(Class<?> clazz, String... names) {
+      return addStaticImport(ClassName.get(clazz), names);
+    }
+
+    public Builder addStaticImport(ClassName className, String... names) {
+      checkArgument(className != null, "className == null");
+      checkArgument(names != null, "names == null");
+      checkArgument(names.length > 0, "names array is empty");
+      for (String name : names) {
+        checkArgument(name != null, "null entry in names array: %s", Arrays.toString(names));
+        staticImports.add(className.canonicalName + "." + name);
+      }
+      return this;
+    }
+
+    /** See {@link JavaFile.Builder#splitLongStrings}. */
+    public Builder splitLongStrings(boolean splitLongStrings) {
+      this.splitLongStrings = splitLongStrings;
+      return this;
+    }
+
+    public Builder indent(String indent) {
+      this.indent = indent;
+      return this;
+    }
+
+    /** Writes the file comment, package and imports, and returns a writer for the rest. */
+    public JavaFileWriter build() throws IOException {
+      return new JavaFileWriter(this);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for writing {@link JavaFile}s. The events are disabled by default;
+ * enable them in a recording's settings, such as with {@code
+ * -XX:StartFlightRecording:javapoet.FileRender#enabled=true}.
+ *
+ * <p>Each {@code begin} method returns early until the recorder is initialized. Loading the first
+ * event class pulls in the recorder's internals, which costs a fresh JVM ~200 ms, so we don't
+ * touch event classes until a recording could be running. After that, {@link Types} checks whether
+ * an event is enabled before allocating it, so writing files doesn't allocate events for
+ * recordings that don't want them.
+ *
+ * <p>JavaPoet doesn't require the {@code jdk.jfr} module. Check {@link #AVAILABLE} before using
+ * anything else in this class, since the events can't be loaded on runtimes without it.
+ */
+final class JfrEvents {
+  static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+  private JfrEvents() {
+  }
+
+  /** Returns a started event, or null if the event isn't enabled. */
+  static ImportResolutionEvent beginImportResolution() {
+    if (!FlightRecorder.isInitialized() || !Types.IMPORT_RESOLUTION.isEnabled()) return null;
+    ImportResolutionEvent event = new ImportResolutionEvent();
+    event.begin();
+    return event;
+  }
+
+  /** Returns a started event, or null if the event isn't enabled. */
+  static FileRenderEvent beginFileRender() {
+    if (!FlightRecorder.isInitialized() || !Types.FILE_RENDER.isEnabled()) return null;
+    FileRenderEvent event = new FileRenderEvent();
+    event.begin();
+    return event;
+  }
+
+  /** Returns a started event, or null if the event isn't enabled. */
+  static FileWriteEvent beginFileWrite() {
+    if (!FlightRecorder.isInitialized() || !Types.FILE_WRITE.isEnabled()) return null;
+    FileWriteEvent event = new FileWriteEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * The types of the events, looked up on first use. Only touch this once the recorder is
+   * initialized, since looking up a type initializes it too.
+   */
+  private static final class Types {
+    static final EventType IMPORT_RESOLUTION = EventType.getEventType(ImportResolutionEvent.class);
+    static final EventType FILE_RENDER = EventType.getEventType(FileRenderEvent.class);
+    static final EventType FILE_WRITE = EventType.getEventType(FileWriteEvent.class);
+  }
+
+  static void commit(ImportResolutionEvent event, JavaFile javaFile, int importCount) {
+    event.end();
+    if (!event.shouldCommit()) return;
+    event.packageName = javaFile.packageName;
+    event.typeName = javaFile.typeSpec.name;
+    event.importCount = importCount;
+    event.commit();
+  }
+
+  static void commit(FileRenderEvent event, JavaFile javaFile, int importCount,
+      long characters) {
+    event.end();
+    if (!event.shouldCommit()) return;
+    event.packageName = javaFile.packageName;
+    event.typeName = javaFile.typeSpec.name;
+    event.importCount = importCount;
+    event.characters = characters;
+    event.commit();
+  }
+
+  /** Commits a write to {@code destination}, reading its size if it's on the file system. */
+  static void commit(FileWriteEvent event, JavaFile javaFile, URI destination) {
+    event.end();
+    if (!event.shouldCommit()) return;
+    event.packageName = javaFile.packageName;
+    event.typeName = javaFile.typeSpec.name;
+    event.destination = destination.toString();
+    if ("file".equals(destination.getScheme())) {
+      try {
+        Path path = Paths.get(destination);
+        event.bytes = Files.size(path);
+      } catch (IOException | RuntimeException ignored) {
+        // The size is best-effort. Leave it unset.
+      }
+    }
+    event.commit();
+  }
+
+  @Name("javapoet.ImportResolution")
+  @Label("Import Resolution")
+  @Description("The first pass of writing a Java file, which finds the types to import")
+  @Category("JavaPoet")
+  @Enabled(false)
+  @StackTrace(false)
+  static final class ImportResolutionEvent extends Event {
+    @Label("Package") String packageName;
+    @Label("Type") String typeName;
+    @Label("Imports") int importCount;
+  }
+
+  @Name("javapoet.FileRender")
+  @Label("File Render")
+  @Description("Rendering a Java file, including import resolution")
+  @Category("JavaPoet")
+  @Enabled(false)
+  @StackTrace(false)
+  static final class FileRenderEvent extends Event {
+    @Label("Package") String packageName;
+    @Label("Type") String typeName;
+    @Label("Imports") int importCount;
+    @Label("Characters") long characters;
+  }
+
+  @Name("javapoet.FileWrite")
+  @Label("File Write")
+  @Description("Rendering a Java file and writing it to a directory or a Filer")
+  @Category("JavaPoet")
+  @Enabled(false)
+  @StackTrace(false)
+  static final class FileWriteEvent extends Event {
+    @Label("Package") String packageName;
+    @Label("Type") String typeName;
+    @Label("Destination") String destination;
+    @Label("Bytes") @Description("The size of the written file, or 0 if it isn't on a file system")
+    @DataAmount long bytes;
+  }
+}
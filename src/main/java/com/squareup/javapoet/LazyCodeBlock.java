@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.function.Supplier;
+
+import static com.squareup.javapoet.Util.checkState;
+
+/**
+ * A code block that is computed each time it's emitted. The result isn't retained, so only the
+ * block being emitted needs to be in memory.
+ */
+final class LazyCodeBlock {
+  private final Supplier<CodeBlock> supplier;
+
+  LazyCodeBlock(Supplier<CodeBlock> supplier) {
+    this.supplier = supplier;
+  }
+
+  CodeBlock get() {
+    CodeBlock codeBlock = supplier.get();
+    checkState(codeBlock != null, "lazy code block supplier returned null");
+    return codeBlock;
+  }
+
+  @Override public String toString() {
+    return get().toString();
+  }
+}
@@ -45,6 +45,9 @@ final class LineWrapper {
    */
   private FlushType nextFlush;
 
+  /** The number of times a wrapping space was emitted as a newline. */
+  int wraps;
+
   LineWrapper(Appendable out, String indent, int columnLimit) {
     checkNotNull(out, "out == null");
     this.out = new RecordingAppendable(out);
@@ -57,6 +60,11 @@ final class LineWrapper {
     return out.lastChar;
   }
 
+  /** Returns the number of chars written to the delegate so far. */
+  long charsWritten() {
+    return out.charsWritten;
+  }
+
   /** Emit {@code s}. This may be buffered to permit line wraps to be inserted. */
   void append(String s) throws IOException {
     if (closed) throw new IllegalStateException("closed");
@@ -110,10 +118,31 @@ final class LineWrapper {
     closed = true;
   }
 
+  /** Returns the capacity of the buffer for text that may yet be wrapped, in chars. */
+  int bufferCapacity() {
+    return buffer.capacity();
+  }
+
+  /**
+   * Discards any buffered text and returns this to its initial state, so it can write more text
+   * to the same appendable.
+   */
+  void reset() {
+    closed = false;
+    buffer.setLength(0);
+    column = 0;
+    indentLevel = -1;
+    nextFlush = null;
+    wraps = 0;
+    out.lastChar = Character.MIN_VALUE;
+    out.charsWritten = 0;
+  }
+
   /** Write the space followed by any buffered text that follows it. */
   private void flush(FlushType flushType) throws IOException {
     switch (flushType) {
       case WRAP:
+        wraps++;
         out.append('\n');
         for (int i = 0; i < indentLevel; i++) {
           out.append(indent);
@@ -145,6 +174,7 @@ final class LineWrapper {
     private final Appendable delegate;
 
     char lastChar = Character.MIN_VALUE;
+    long charsWritten;
 
     RecordingAppendable(Appendable delegate) {
       this.delegate = delegate;
@@ -155,6 +185,7 @@ final class LineWrapper {
       if (length != 0) {
         lastChar = csq.charAt(length - 1);
       }
+      charsWritten += length;
       return delegate.append(csq);
     }
 
@@ -165,6 +196,7 @@ final class LineWrapper {
 
     @Override public Appendable append(char c) throws IOException {
       lastChar = c;
+      charsWritten++;
       return delegate.append(c);
     }
   }
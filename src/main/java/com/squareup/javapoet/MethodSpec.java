@@ -17,7 +17,6 @@ package com.squareup.javapoet;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -43,6 +42,12 @@ import static com.squareup.javapoet.Util.checkState;
 public final class MethodSpec {
   static final String CONSTRUCTOR = "<init>";
 
+  /** HotSpot's default {@code -XX:HugeMethodLimit}. Larger methods are never JIT compiled. */
+  public static final int HUGE_METHOD_LIMIT = 8000;
+
+  /** HotSpot's default {@code -XX:FreqInlineSize}. Larger methods aren't inlined when hot. */
+  public static final int FREQ_INLINE_SIZE = 325;
+
   public final String name;
   public final CodeBlock javadoc;
   public final List<AnnotationSpec> annotations;
@@ -55,23 +60,38 @@ public final class MethodSpec {
   public final CodeBlock code;
   public final CodeBlock defaultValue;
 
-  private MethodSpec(Builder builder) {
-    CodeBlock code = builder.code.build();
-    checkArgument(code.isEmpty() || !builder.modifiers.contains(Modifier.ABSTRACT),
+  private MethodSpec(Builder builder, boolean transfer) {
+    checkArgument(builder.code.isEmpty() || !builder.modifiers.contains(Modifier.ABSTRACT),
         "abstract method %s cannot have code", builder.name);
     checkArgument(!builder.varargs || lastParameterIsArray(builder.parameters),
         "last parameter of varargs method %s must be an array", builder.name);
 
     this.name = checkNotNull(builder.name, "name == null");
-    this.javadoc = builder.javadoc.build();
-    this.annotations = Util.immutableList(builder.annotations);
-    this.modifiers = Util.immutableSet(builder.modifiers);
-    this.typeVariables = Util.immutableList(builder.typeVariables);
+    this.javadoc = builder.javadoc.build(transfer);
+    this.annotations = Util.immutableList(builder.annotations, transfer);
+    this.modifiers = ModifierSet.of(builder.modifiers);
+    this.typeVariables = Util.immutableList(builder.typeVariables, transfer);
     this.returnType = builder.returnType;
-    this.parameters = Util.immutableList(builder.parameters);
+    this.parameters = Util.immutableList(builder.parameters, transfer);
     this.varargs = builder.varargs;
     this.exceptions = Util.immutableList(builder.exceptions);
     this.defaultValue = builder.defaultValue;
+    this.code = builder.code.build(transfer);
+  }
+
+  /** Creates a copy of {@code base} with its annotations, modifiers or code replaced. */
+  private MethodSpec(MethodSpec base, List<AnnotationSpec> annotations, Set<Modifier> modifiers,
+      CodeBlock code) {
+    this.name = base.name;
+    this.javadoc = base.javadoc;
+    this.annotations = annotations;
+    this.modifiers = modifiers;
+    this.typeVariables = base.typeVariables;
+    this.returnType = base.returnType;
+    this.parameters = base.parameters;
+    this.varargs = base.varargs;
+    this.exceptions = base.exceptions;
+    this.defaultValue = base.defaultValue;
     this.code = code;
   }
 
@@ -82,6 +102,32 @@ public final class MethodSpec {
 
   void emit(CodeWriter codeWriter, String enclosingName, Set<Modifier> implicitModifiers)
       throws IOException {
+    emitSignature(codeWriter, enclosingName, implicitModifiers);
+
+    if (hasModifier(Modifier.ABSTRACT)) {
+      codeWriter.emit(";\n");
+    } else if (hasModifier(Modifier.NATIVE)) {
+      // Code is allowed to support stuff like GWT JSNI.
+      codeWriter.emit(code);
+      codeWriter.emit(";\n");
+    } else {
+      codeWriter.emit(" {\n");
+
+      codeWriter.indent();
+      codeWriter.emit(code, true);
+      codeWriter.unindent();
+
+      codeWriter.emit("}\n");
+    }
+    codeWriter.popTypeVariables(typeVariables);
+  }
+
+  /**
+   * Emits everything before the method's body. This declares the method's type variables, which
+   * the caller must pop after emitting the body.
+   */
+  void emitSignature(CodeWriter codeWriter, String enclosingName, Set<Modifier> implicitModifiers)
+      throws IOException {
     codeWriter.emitJavadoc(javadocWithParameters());
     codeWriter.emitAnnotations(annotations, false);
     codeWriter.emitModifiers(modifiers, implicitModifiers);
@@ -121,23 +167,6 @@ public final class MethodSpec {
         firstException = false;
       }
     }
-
-    if (hasModifier(Modifier.ABSTRACT)) {
-      codeWriter.emit(";\n");
-    } else if (hasModifier(Modifier.NATIVE)) {
-      // Code is allowed to support stuff like GWT JSNI.
-      codeWriter.emit(code);
-      codeWriter.emit(";\n");
-    } else {
-      codeWriter.emit(" {\n");
-
-      codeWriter.indent();
-      codeWriter.emit(code, true);
-      codeWriter.unindent();
-
-      codeWriter.emit("}\n");
-    }
-    codeWriter.popTypeVariables(typeVariables);
   }
 
   private CodeBlock javadocWithParameters() {
@@ -158,6 +187,19 @@ public final class MethodSpec {
     return modifiers.contains(modifier);
   }
 
+  /**
+   * Returns an estimate of the size in bytes of the bytecode javac emits for this method's body, or
+   * 0 if it has no body. Compare it with {@link #HUGE_METHOD_LIMIT}, {@link #FREQ_INLINE_SIZE}, or
+   * the 65535 byte limit of the class file format.
+   *
+   * <p>The estimate is computed from the structure of the code: its statements, literals,
+   * invocations, and control flow. Expect it to be within a factor of 2 of javac's output.
+   */
+  public int estimatedBytecodeSize() {
+    if (hasModifier(Modifier.ABSTRACT) || hasModifier(Modifier.NATIVE)) return 0;
+    return BytecodeEstimator.estimate(code);
+  }
+
   public boolean isConstructor() {
     return name.equals(CONSTRUCTOR);
   }
@@ -174,14 +216,7 @@ public final class MethodSpec {
   }
 
   @Override public String toString() {
-    StringBuilder out = new StringBuilder();
-    try {
-      CodeWriter codeWriter = new CodeWriter(out);
-      emit(codeWriter, "Constructor", Collections.emptySet());
-      return out.toString();
-    } catch (IOException e) {
-      throw new AssertionError();
-    }
+    return CodeWriter.render(codeWriter -> emit(codeWriter, "Constructor", Collections.emptySet()));
   }
 
   public static Builder methodBuilder(String name) {
@@ -291,6 +326,35 @@ public final class MethodSpec {
     return builder;
   }
 
+  /**
+   * Returns a copy of this method with {@code annotationSpec} added. Like the other {@code with}
+   * methods, this shares everything else with this method instead of copying it. The annotation
+   * list shares structure with this method's list, so a series of edits allocates O(log n) each
+   * rather than going through {@link #toBuilder}.
+   */
+  public MethodSpec withAnnotationAdded(AnnotationSpec annotationSpec) {
+    checkArgument(annotationSpec != null, "annotationSpec == null");
+    return new MethodSpec(this, PersistentVector.of(annotations).plus(annotationSpec), modifiers,
+        code);
+  }
+
+  /** Returns a copy of this method with its modifiers replaced by {@code modifiers}. */
+  public MethodSpec withModifiers(Modifier... modifiers) {
+    checkArgument(modifiers != null, "modifiers == null");
+    Set<Modifier> newModifiers = ModifierSet.of(modifiers);
+    checkArgument(code.isEmpty() || !newModifiers.contains(Modifier.ABSTRACT),
+        "abstract method %s cannot have code", name);
+    return new MethodSpec(this, annotations, newModifiers, code);
+  }
+
+  /** Returns a copy of this method with {@code code} as its body. */
+  public MethodSpec withCode(CodeBlock code) {
+    checkArgument(code != null, "code == null");
+    checkArgument(code.isEmpty() || !hasModifier(Modifier.ABSTRACT),
+        "abstract method %s cannot have code", name);
+    return new MethodSpec(this, annotations, modifiers, code);
+  }
+
   public static final class Builder {
     private String name;
 
@@ -300,11 +364,12 @@ public final class MethodSpec {
     private final CodeBlock.Builder code = CodeBlock.builder();
     private boolean varargs;
     private CodeBlock defaultValue;
+    private boolean frozen;
 
-    public final List<TypeVariableName> typeVariables = new ArrayList<>();
-    public final List<AnnotationSpec> annotations = new ArrayList<>();
-    public final List<Modifier> modifiers = new ArrayList<>();
-    public final List<ParameterSpec> parameters = new ArrayList<>();
+    public final List<TypeVariableName> typeVariables = new FreezableList<>();
+    public final List<AnnotationSpec> annotations = new FreezableList<>();
+    public final List<Modifier> modifiers = new FreezableList<>();
+    public final List<ParameterSpec> parameters = new FreezableList<>();
 
     private Builder(String name) {
       setName(name);
@@ -532,7 +597,24 @@ public final class MethodSpec {
     }
 
     public MethodSpec build() {
-      return new MethodSpec(this);
+      return build(false);
+    }
+
+    /**
+     * Returns a method like {@link #build}, but hands this builder's lists and code to the method
+     * instead of copying them. Use this for large methods that are built once: this builder can't
+     * be changed or built again afterwards.
+     */
+    public MethodSpec freeze() {
+      return build(true);
+    }
+
+    private MethodSpec build(boolean transfer) {
+      checkState(!frozen, "this builder was frozen");
+      MethodSpec result = new MethodSpec(this, transfer);
+      if (transfer) ((FreezableList<Modifier>) modifiers).freeze();
+      frozen = transfer;
+      return result;
     }
   }
 }
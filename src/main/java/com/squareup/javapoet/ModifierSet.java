@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.lang.model.element.Modifier;
+
+import static com.squareup.javapoet.Util.checkArgument;
+import static com.squareup.javapoet.Util.checkState;
+
+/**
+ * An immutable set of modifiers stored as a bit mask of their ordinals. Like {@code EnumSet} it
+ * iterates in declaration order, which is also the order modifiers are written in source.
+ */
+final class ModifierSet extends AbstractSet<Modifier> {
+  private static final Modifier[] VALUES = Modifier.values();
+  static final ModifierSet EMPTY = new ModifierSet(0L);
+
+  /**
+   * The source text of recently used combinations of modifiers, such as {@code "public static "},
+   * in slots picked by hashing their bit masks. A collision replaces the slot's entry; code uses a
+   * handful of combinations, so that's rare.
+   */
+  private static final Keywords[] KEYWORDS = new Keywords[64];
+
+  static {
+    checkState(VALUES.length <= Long.SIZE, "%s modifiers don't fit in a bit mask", VALUES.length);
+  }
+
+  private final long mask;
+
+  private ModifierSet(long mask) {
+    this.mask = mask;
+  }
+
+  static ModifierSet of(Modifier... modifiers) {
+    long mask = 0L;
+    for (Modifier modifier : modifiers) {
+      checkArgument(modifier != null, "modifiers contain null");
+      mask |= bit(modifier);
+    }
+    return mask == 0L ? EMPTY : new ModifierSet(mask);
+  }
+
+  static ModifierSet of(Collection<Modifier> modifiers) {
+    if (modifiers instanceof ModifierSet) return (ModifierSet) modifiers;
+    return of(modifiers.toArray(new Modifier[0]));
+  }
+
+  /** Returns the bit mask of {@code modifiers}. */
+  static long mask(Set<Modifier> modifiers) {
+    if (modifiers instanceof ModifierSet) return ((ModifierSet) modifiers).mask;
+    long mask = 0L;
+    for (Modifier modifier : modifiers) {
+      mask |= bit(modifier);
+    }
+    return mask;
+  }
+
+  /** Returns the modifiers in {@code mask} as source text, each followed by a space. */
+  static String keywords(long mask) {
+    int slot = (int) ((mask * 0x9E3779B97F4A7C15L) >>> 58);
+    // Entries have only final fields, so racing threads see complete ones and at worst recompute.
+    Keywords cached = KEYWORDS[slot];
+    if (cached != null && cached.mask == mask) return cached.text;
+
+    StringBuilder keywords = new StringBuilder();
+    for (long remaining = mask; remaining != 0L; remaining &= remaining - 1) {
+      // Modifier.toString() is the keyword, including "non-sealed".
+      keywords.append(VALUES[Long.numberOfTrailingZeros(remaining)]).append(' ');
+    }
+    String result = keywords.toString();
+    KEYWORDS[slot] = new Keywords(mask, result);
+    return result;
+  }
+
+  private static long bit(Modifier modifier) {
+    return 1L << modifier.ordinal();
+  }
+
+  @Override public boolean contains(Object o) {
+    return o instanceof Modifier && (mask & bit((Modifier) o)) != 0L;
+  }
+
+  @Override public boolean isEmpty() {
+    return mask == 0L;
+  }
+
+  @Override public int size() {
+    return Long.bitCount(mask);
+  }
+
+  @Override public Iterator<Modifier> iterator() {
+    return new Iterator<Modifier>() {
+      long remaining = mask;
+
+      @Override public boolean hasNext() {
+        return remaining != 0L;
+      }
+
+      @Override public Modifier next() {
+        if (remaining == 0L) throw new NoSuchElementException();
+        Modifier next = VALUES[Long.numberOfTrailingZeros(remaining)];
+        remaining &= remaining - 1;
+        return next;
+      }
+    };
+  }
+
+  @Override public boolean equals(Object o) {
+    if (o instanceof ModifierSet) return ((ModifierSet) o).mask == mask;
+    return super.equals(o);
+  }
+
+  private static final class Keywords {
+    final long mask;
+    final String text;
+
+    Keywords(long mask, String text) {
+      this.mask = mask;
+      this.text = text;
+    }
+  }
+}
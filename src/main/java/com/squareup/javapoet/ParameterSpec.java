@@ -41,7 +41,7 @@ public final class ParameterSpec {
   private ParameterSpec(Builder builder) {
     this.name = checkNotNull(builder.name, "name == null");
     this.annotations = Util.immutableList(builder.annotations);
-    this.modifiers = Util.immutableSet(builder.modifiers);
+    this.modifiers = ModifierSet.of(builder.modifiers);
     this.type = checkNotNull(builder.type, "type == null");
     this.javadoc = builder.javadoc.build();
   }
@@ -73,14 +73,7 @@ public final class ParameterSpec {
   }
 
   @Override public String toString() {
-    StringBuilder out = new StringBuilder();
-    try {
-      CodeWriter codeWriter = new CodeWriter(out);
-      emit(codeWriter, false);
-      return out.toString();
-    } catch (IOException e) {
-      throw new AssertionError();
-    }
+    return CodeWriter.render(codeWriter -> emit(codeWriter, false));
   }
 
   public static ParameterSpec get(VariableElement element) {
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Emits a switch on strings that finds the matching case with a perfect hash of the string's hash
+ * code, using the hash and displace scheme. Hash codes are grouped into buckets, and each bucket
+ * gets a displacement that moves its hash codes into free slots of a table. The displacements are
+ * stored in a string constant, so the lookup is a single dense {@code int} switch over the table,
+ * which javac compiles to a {@code tableswitch}, and one {@code equals()} call unless strings share
+ * a hash code.
+ */
+final class PerfectHash {
+  private static final int BUCKET_MULTIPLIER = 0x9e3779b9;
+  private static final int DISPLACEMENT_MULTIPLIER = 0x85ebca6b;
+  private static final int SLOT_MULTIPLIER = 0xc2b2ae35;
+  /**
+   * Displacements are characters of a string constant. Printable ASCII keeps the generated source
+   * readable, and the constant takes one byte per bucket.
+   */
+  private static final char MIN_DISPLACEMENT = ' ';
+  private static final char MAX_DISPLACEMENT = '~';
+
+  private final CodeBlock.Builder code;
+  private final String subject;
+  private final String index;
+  private final Map<String, Integer> caseNumbers = new LinkedHashMap<>();
+  /** Strings by hash code. Strings that share a hash code share a slot. */
+  private final Map<Integer, List<String>> keysByHash = new LinkedHashMap<>();
+
+  private PerfectHash(CodeBlock.Builder code, String subject) {
+    this.code = code;
+    this.subject = subject;
+    this.index = subject + "Index";
+  }
+
+  static void addSwitch(CodeBlock.Builder code, String subject, Map<String, CodeBlock> cases,
+      CodeBlock defaultCase) {
+    if (cases.isEmpty()) {
+      if (defaultCase.isEmpty()) return;
+      // Keep the switch so that a break in the default case leaves it, like in a non-empty switch.
+      code.beginControlFlow("switch ($N.hashCode())", subject);
+      code.add("default:\n$>").add(defaultCase).unindent();
+      code.endControlFlow();
+      return;
+    }
+    PerfectHash perfectHash = new PerfectHash(code, subject);
+    for (String key : cases.keySet()) {
+      perfectHash.caseNumbers.put(key, perfectHash.caseNumbers.size());
+      perfectHash.keysByHash.computeIfAbsent(key.hashCode(), h -> new ArrayList<>()).add(key);
+    }
+    code.addStatement("int $N = -1", perfectHash.index);
+    perfectHash.addLookup();
+
+    code.beginControlFlow("switch ($N)", perfectHash.index);
+    int caseNumber = 0;
+    for (CodeBlock body : cases.values()) {
+      code.add("case $L:\n$>", caseNumber++).add(body).unindent();
+    }
+    if (!defaultCase.isEmpty()) {
+      code.add("default:\n$>").add(defaultCase).unindent();
+    }
+    code.endControlFlow();
+  }
+
+  /** Adds statements that store the case number of the subject in the index variable. */
+  private void addLookup() {
+    if (keysByHash.size() == 1) {
+      addKeys(keysByHash.values().iterator().next());
+      return;
+    }
+
+    int[] hashes = new int[keysByHash.size()];
+    int h = 0;
+    for (int hash : keysByHash.keySet()) {
+      hashes[h++] = hash;
+    }
+    // About one hash code per bucket. Displacements live in the constant pool, not the bytecode.
+    int bucketBits = bits(hashes.length);
+    // Leave some slack so the last buckets find free slots, and grow the table until they do.
+    int tableSize = hashes.length + hashes.length / 8 + 1;
+    char[] displacements;
+    while ((displacements = displacements(hashes, bucketBits, tableSize)) == null) {
+      tableSize += tableSize / 8 + 1;
+    }
+
+    Map<Integer, Integer> slots = new TreeMap<>();
+    for (int hash : hashes) {
+      slots.put(slot(hash, displacements[bucket(hash, bucketBits)], tableSize), hash);
+    }
+    CodeBlock hash = CodeBlock.of(
+        "($N.hashCode() ^ $S.charAt($N.hashCode() * $L >>> $L) * $L) * $L", subject,
+        new String(displacements), subject, hex(BUCKET_MULTIPLIER), 32 - bucketBits,
+        hex(DISPLACEMENT_MULTIPLIER), hex(SLOT_MULTIPLIER));
+    // Maps the hash onto [0, tableSize) with a multiply and a shift instead of a division.
+    code.beginControlFlow("switch ((int) (($L & 0xffffffffL) * $L >>> 32))", hash, tableSize);
+    for (Map.Entry<Integer, Integer> slot : slots.entrySet()) {
+      code.add("case $L:\n$>", slot.getKey());
+      addKeys(keysByHash.get(slot.getValue()));
+      code.addStatement("break").unindent();
+    }
+    code.endControlFlow();
+  }
+
+  /**
+   * Returns a displacement for each bucket that gives every hash code its own slot in a table of
+   * {@code tableSize} slots, or null if some bucket doesn't fit.
+   */
+  private static char[] displacements(int[] hashes, int bucketBits, int tableSize) {
+    List<List<Integer>> buckets = new ArrayList<>();
+    for (int b = 0; b < 1 << bucketBits; b++) {
+      buckets.add(new ArrayList<>());
+    }
+    for (int hash : hashes) {
+      buckets.get(bucket(hash, bucketBits)).add(hash);
+    }
+    // Place the largest buckets first, while the table is still mostly empty.
+    List<Integer> order = new ArrayList<>();
+    for (int b = 0; b < buckets.size(); b++) {
+      order.add(b);
+    }
+    order.sort(Comparator.comparingInt(b -> -buckets.get(b).size()));
+
+    char[] displacements = new char[buckets.size()];
+    Arrays.fill(displacements, MIN_DISPLACEMENT);
+    boolean[] occupied = new boolean[tableSize];
+    for (int b : order) {
+      List<Integer> bucket = buckets.get(b);
+      if (bucket.isEmpty()) break;
+      int[] bucketSlots = new int[bucket.size()];
+      char displacement = MIN_DISPLACEMENT;
+      while (!fits(bucket, displacement, tableSize, occupied, bucketSlots)) {
+        if (++displacement > MAX_DISPLACEMENT) return null;
+      }
+      displacements[b] = displacement;
+      for (int slot : bucketSlots) {
+        occupied[slot] = true;
+      }
+    }
+    return displacements;
+  }
+
+  /** Returns true if the hashes of {@code bucket} land on distinct free slots. */
+  private static boolean fits(List<Integer> bucket, char displacement, int tableSize,
+      boolean[] occupied, int[] bucketSlots) {
+    for (int i = 0; i < bucket.size(); i++) {
+      int slot = slot(bucket.get(i), displacement, tableSize);
+      if (occupied[slot]) return false;
+      for (int j = 0; j < i; j++) {
+        if (bucketSlots[j] == slot) return false;
+      }
+      bucketSlots[i] = slot;
+    }
+    return true;
+  }
+
+  /** Adds a check for each of {@code keys}, which all have the same hash code. */
+  private void addKeys(List<String> keys) {
+    for (int i = 0; i < keys.size(); i++) {
+      String check = (i == 0 ? "if" : "else if") + " ($N.equals($S))";
+      if (i == 0) {
+        code.beginControlFlow(check, subject, keys.get(i));
+      } else {
+        code.nextControlFlow(check, subject, keys.get(i));
+      }
+      code.addStatement("$N = $L", index, caseNumbers.get(keys.get(i)));
+    }
+    code.endControlFlow();
+  }
+
+  private static int bucket(int hash, int bucketBits) {
+    return hash * BUCKET_MULTIPLIER >>> (32 - bucketBits);
+  }
+
+  private static int slot(int hash, char displacement, int tableSize) {
+    int mixed = (hash ^ displacement * DISPLACEMENT_MULTIPLIER) * SLOT_MULTIPLIER;
+    return (int) ((mixed & 0xffffffffL) * tableSize >>> 32);
+  }
+
+  /** Returns the number of bits needed for {@code count} distinct values. */
+  private static int bits(int count) {
+    return 32 - Integer.numberOfLeadingZeros(count - 1);
+  }
+
+  private static String hex(int value) {
+    return String.format("0x%08x", value);
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list whose modified copies share structure with the original. Elements are stored
+ * in a tree of 32-element arrays, plus a tail array holding the last 1 to 32 elements. Appending
+ * or replacing an element copies one path through the tree, so it allocates O(log n) instead of
+ * copying the whole list.
+ */
+final class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+  private static final PersistentVector<Object> EMPTY =
+      new PersistentVector<>(0, BITS, new Object[WIDTH], new Object[0]);
+
+  private final int size;
+  /** The number of index bits below the root. */
+  private final int shift;
+  /** Internal nodes are arrays of children, and leaves are full arrays of elements. */
+  private final Object[] root;
+  private final Object[] tail;
+
+  private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+    this.size = size;
+    this.shift = shift;
+    this.root = root;
+    this.tail = tail;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <E> PersistentVector<E> empty() {
+    return (PersistentVector<E>) EMPTY;
+  }
+
+  /** Returns {@code list} if it's already a persistent vector, or a vector with its elements. */
+  static <E> PersistentVector<E> of(List<E> list) {
+    if (list instanceof PersistentVector) return (PersistentVector<E>) list;
+    Object[] elements = list.toArray();
+    PersistentVector<E> result = empty();
+    for (int i = 0; i < elements.length; i += WIDTH) {
+      Object[] chunk = Arrays.copyOfRange(elements, i, Math.min(i + WIDTH, elements.length));
+      result = result.withTail(chunk);
+    }
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override public E get(int index) {
+    Objects.checkIndex(index, size);
+    if (index >= tailOffset()) return (E) tail[index - tailOffset()];
+    Object[] node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = (Object[]) node[(index >>> level) & MASK];
+    }
+    return (E) node[index & MASK];
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  /** Returns a copy of this vector with {@code element} appended. */
+  PersistentVector<E> plus(E element) {
+    if (tail.length < WIDTH) {
+      Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+      newTail[tail.length] = element;
+      return new PersistentVector<>(size + 1, shift, root, newTail);
+    }
+    return withTail(new Object[] {element});
+  }
+
+  /** Returns a copy of this vector with the element at {@code index} replaced. */
+  PersistentVector<E> with(int index, E element) {
+    Objects.checkIndex(index, size);
+    if (index >= tailOffset()) {
+      Object[] newTail = tail.clone();
+      newTail[index - tailOffset()] = element;
+      return new PersistentVector<>(size, shift, root, newTail);
+    }
+    return new PersistentVector<>(size, shift, replace(shift, root, index, element), tail);
+  }
+
+  /**
+   * Returns a copy of this vector with {@code newTail} appended. The current tail must be full or
+   * empty; if it's full, it moves into the tree.
+   */
+  private PersistentVector<E> withTail(Object[] newTail) {
+    if (tail.length == 0) {
+      return new PersistentVector<>(newTail.length, shift, root, newTail);
+    }
+    Object[] newRoot;
+    int newShift = shift;
+    if ((size >>> BITS) > (1 << shift)) {
+      // The tree is full. Grow a new root above it.
+      newRoot = new Object[WIDTH];
+      newRoot[0] = root;
+      newRoot[1] = newPath(shift, tail);
+      newShift += BITS;
+    } else {
+      newRoot = pushTail(shift, root);
+    }
+    return new PersistentVector<>(size + newTail.length, newShift, newRoot, newTail);
+  }
+
+  /** Returns a copy of {@code parent} with the current tail added as its last leaf. */
+  private Object[] pushTail(int level, Object[] parent) {
+    int child = ((size - 1) >>> level) & MASK;
+    Object[] result = parent.clone();
+    if (level == BITS) {
+      result[child] = tail;
+    } else if (parent[child] != null) {
+      result[child] = pushTail(level - BITS, (Object[]) parent[child]);
+    } else {
+      result[child] = newPath(level - BITS, tail);
+    }
+    return result;
+  }
+
+  private static Object[] newPath(int level, Object[] leaf) {
+    if (level == 0) return leaf;
+    Object[] result = new Object[WIDTH];
+    result[0] = newPath(level - BITS, leaf);
+    return result;
+  }
+
+  private static Object[] replace(int level, Object[] node, int index, Object element) {
+    Object[] result = node.clone();
+    if (level == 0) {
+      result[index & MASK] = element;
+    } else {
+      int child = (index >>> level) & MASK;
+      result[child] = replace(level - BITS, (Object[]) node[child], index, element);
+    }
+    return result;
+  }
+
+  private int tailOffset() {
+    return size - tail.length;
+  }
+}
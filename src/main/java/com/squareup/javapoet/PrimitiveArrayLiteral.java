@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.IOException;
+
+import static com.squareup.javapoet.Util.characterLiteralWithoutSingleQuotes;
+
+/**
+ * An array initializer like {@code {1, 2, 3}} backed by a primitive array. Elements are formatted
+ * as they're emitted so large tables don't need an object per element.
+ */
+final class PrimitiveArrayLiteral {
+  /** A primitive array like {@code int[]} or {@code boolean[]}. */
+  private final Object values;
+  private final int offset;
+  private final int length;
+
+  PrimitiveArrayLiteral(Object values, int offset, int length) {
+    this.values = values;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  int length() {
+    return length;
+  }
+
+  /** Returns the element type, like {@code int}. */
+  TypeName elementType() {
+    return TypeName.get(values.getClass().getComponentType());
+  }
+
+  /** Returns the elements from {@code from} to {@code to}, sharing this literal's array. */
+  PrimitiveArrayLiteral slice(int from, int to) {
+    return new PrimitiveArrayLiteral(values, offset + from, to - from);
+  }
+
+  void emit(CodeWriter codeWriter) throws IOException {
+    codeWriter.emitAndIndent("{");
+    for (int i = 0; i < length; i++) {
+      if (i > 0) codeWriter.emitAndIndent(",").emitWrappingSpace();
+      codeWriter.emitAndIndent(element(i));
+    }
+    codeWriter.emitAndIndent("}");
+  }
+
+  private String element(int index) {
+    int i = offset + index;
+    if (values instanceof int[]) return Integer.toString(((int[]) values)[i]);
+    if (values instanceof long[]) return ((long[]) values)[i] + "L";
+    if (values instanceof byte[]) return Byte.toString(((byte[]) values)[i]);
+    if (values instanceof short[]) return Short.toString(((short[]) values)[i]);
+    if (values instanceof char[]) return charLiteral(((char[]) values)[i]);
+    if (values instanceof float[]) return floatLiteral(((float[]) values)[i]);
+    if (values instanceof double[]) return doubleLiteral(((double[]) values)[i]);
+    if (values instanceof boolean[]) return Boolean.toString(((boolean[]) values)[i]);
+    throw new AssertionError(values);
+  }
+
+  private static String charLiteral(char c) {
+    // Unpaired surrogates can't be encoded in the source file, so escape them.
+    return Character.isSurrogate(c)
+        ? String.format("'\\u%04x'", (int) c)
+        : "'" + characterLiteralWithoutSingleQuotes(c) + "'";
+  }
+
+  // Use constant expressions for non-finite values; a Float or Double reference could be shadowed.
+  private static String floatLiteral(float f) {
+    if (Float.isNaN(f)) return "0.0f / 0.0f";
+    if (f == Float.POSITIVE_INFINITY) return "1.0f / 0.0f";
+    if (f == Float.NEGATIVE_INFINITY) return "-1.0f / 0.0f";
+    return f + "f";
+  }
+
+  private static String doubleLiteral(double d) {
+    if (Double.isNaN(d)) return "0.0 / 0.0";
+    if (d == Double.POSITIVE_INFINITY) return "1.0 / 0.0";
+    if (d == Double.NEGATIVE_INFINITY) return "-1.0 / 0.0";
+    return Double.toString(d);
+  }
+}
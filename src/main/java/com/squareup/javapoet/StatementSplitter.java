@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits code blocks into top-level statements and regroups them into chunks that can be moved
+ * into separate methods. Code blocks aren't parsed, so this works from their structure: statements
+ * added with {@code addStatement()} and control flow added with {@code beginControlFlow()} and
+ * {@code endControlFlow()}. Raw code is only split after lines ending in a semicolon or a closing
+ * brace.
+ */
+final class StatementSplitter {
+  /** Matches the start of a local variable declaration like {@code final List<String> names =}. */
+  private static final Pattern LOCAL_VARIABLE = Pattern.compile(
+      "(?:final\\s+)?([\\w$.]+(?:<[^=;]*>)?(?:\\[])*)\\s+([\\w$]+)\\s*(?:[=;,]|\\[)");
+  private static final Pattern ASSIGNMENT_OPERATOR = Pattern.compile("(?:[-+*/%&|^]|<<|>>>?)=");
+  private static final Set<String> STATEMENT_KEYWORDS = new HashSet<>(Arrays.asList(
+      "assert", "break", "continue", "return", "throw", "yield"));
+  /** Stands in for lazy blocks in {@link #text}. It has no identifiers, so it uses no locals. */
+  private static final String LAZY_PLACEHOLDER = "0";
+
+  private final List<CodeBlock> statements = new ArrayList<>();
+  private CodeBlock.Builder statement = CodeBlock.builder();
+  private int indentLevel;
+  private boolean inStatement;
+
+  private StatementSplitter() {
+  }
+
+  /**
+   * Returns the top-level statements of {@code block}. Each control flow construct is a single
+   * statement, including everything between its opening and closing braces.
+   */
+  static List<CodeBlock> topLevelStatements(CodeBlock block) {
+    StatementSplitter splitter = new StatementSplitter();
+    splitter.split(block);
+    if (!splitter.statement.isEmpty()) splitter.statements.add(splitter.statement.build());
+    return splitter.statements;
+  }
+
+  private void split(CodeBlock block) {
+    int a = 0;
+    for (int p = 0; p < block.formatParts.size(); p++) {
+      String part = block.formatParts.get(p);
+      Object arg = hasArg(part) ? block.args.get(a++) : null;
+
+      // Code blocks that start a statement are usually lists of statements themselves.
+      if (part.equals("$L") && arg instanceof CodeBlock && statement.isEmpty()) {
+        split((CodeBlock) arg);
+        continue;
+      }
+
+      statement.formatParts.add(part);
+      if (hasArg(part)) statement.args.add(arg);
+
+      switch (part) {
+        case "$>":
+          indentLevel++;
+          break;
+        case "$<":
+          indentLevel--;
+          break;
+        case "$[":
+          inStatement = true;
+          break;
+        case "$]":
+          inStatement = false;
+          break;
+        default:
+          break;
+      }
+
+      if (indentLevel == 0 && !inStatement
+          && (part.equals("$]") || part.endsWith(";\n") || part.endsWith("}\n"))) {
+        statements.add(statement.build());
+        statement = CodeBlock.builder();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of statements in {@code block}, counting the statements nested in control
+   * flow and in code block arguments. Control flow lines like {@code if (a)} count as one
+   * statement each, but closing braces don't.
+   */
+  static int statementCount(CodeBlock block) {
+    int count = 0;
+    boolean inStatement = false;
+    int a = 0;
+    for (String part : block.formatParts) {
+      Object arg = hasArg(part) ? block.args.get(a++) : null;
+      if (part.equals("$[")) {
+        inStatement = true;
+      } else if (part.equals("$]")) {
+        inStatement = false;
+        count++;
+      } else if (!inStatement && !part.startsWith("$") && part.endsWith("\n")
+          && !part.trim().equals("}")) {
+        count++;
+      } else if (arg instanceof CodeBlock) {
+        count += statementCount((CodeBlock) arg);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Groups {@code statements} into chunks of at most {@code maxStatements} statements each. Chunks
+   * are only cut where no local variable is used on both sides of the cut, so a chunk may exceed
+   * the limit if there's no such place.
+   */
+  static List<CodeBlock> chunks(List<CodeBlock> statements, int maxStatements) {
+    boolean[] canCutAfter = cutPoints(statements);
+    List<CodeBlock> chunks = new ArrayList<>();
+    CodeBlock.Builder chunk = CodeBlock.builder();
+    int chunkSize = 0;
+    for (int start = 0; start < statements.size(); ) {
+      // Statements between two cut points must stay together.
+      CodeBlock.Builder atom = CodeBlock.builder();
+      int atomSize = 0;
+      int end = start;
+      do {
+        atom.add(statements.get(end));
+        atomSize += statementCount(statements.get(end));
+      } while (!canCutAfter[end++]);
+
+      if (!chunk.isEmpty() && chunkSize + atomSize > maxStatements) {
+        chunks.add(chunk.build());
+        chunk = CodeBlock.builder();
+        chunkSize = 0;
+      }
+      chunk.add(atom.build());
+      chunkSize += atomSize;
+      start = end;
+    }
+    if (!chunk.isEmpty()) chunks.add(chunk.build());
+    return chunks;
+  }
+
+  /**
+   * Returns whether each statement can be followed by a cut. A cut is forbidden if a local variable
+   * declared at or before the statement is used after it.
+   */
+  static boolean[] cutPoints(List<CodeBlock> statements) {
+    String[] code = new String[statements.size()];
+    Map<String, Integer> lastUses = new HashMap<>();
+    int lastLazy = -1;
+    for (int i = 0; i < code.length; i++) {
+      code[i] = text(statements.get(i));
+      for (String identifier : identifiers(code[i])) {
+        lastUses.put(identifier, i);
+      }
+      if (containsLazy(statements.get(i))) lastLazy = i;
+    }
+
+    boolean[] canCutAfter = new boolean[code.length];
+    int reach = -1;
+    for (int i = 0; i < code.length; i++) {
+      for (String local : declaredLocals(code[i])) {
+        // We can't see into lazy blocks, so assume that they use every local declared before them.
+        reach = Math.max(reach, Math.max(lastUses.get(local), lastLazy));
+      }
+      canCutAfter[i] = reach <= i;
+    }
+    return canCutAfter;
+  }
+
+  /**
+   * Returns the code of {@code statement} for inspection. Lazy blocks are replaced with {@code
+   * LAZY_PLACEHOLDER} so that their suppliers aren't called.
+   */
+  static String text(CodeBlock statement) {
+    return withoutLazyBlocks(statement).toString();
+  }
+
+  private static CodeBlock withoutLazyBlocks(CodeBlock code) {
+    if (!containsLazy(code)) return code;
+    CodeBlock.Builder result = CodeBlock.builder();
+    int a = 0;
+    for (String part : code.formatParts) {
+      result.formatParts.add(part);
+      if (!hasArg(part)) continue;
+      Object arg = code.args.get(a++);
+      if (arg instanceof LazyCodeBlock) {
+        arg = LAZY_PLACEHOLDER;
+      } else if (arg instanceof CodeBlock) {
+        arg = withoutLazyBlocks((CodeBlock) arg);
+      }
+      result.args.add(arg);
+    }
+    return result.build();
+  }
+
+  /** Returns true if {@code code} holds a lazy block, directly or in a nested code block. */
+  static boolean containsLazy(CodeBlock code) {
+    for (Object arg : code.args) {
+      if (arg instanceof LazyCodeBlock
+          || (arg instanceof CodeBlock && containsLazy((CodeBlock) arg))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the names of the local variables declared by the statement {@code code}. */
+  static Set<String> declaredLocals(String code) {
+    Matcher matcher = LOCAL_VARIABLE.matcher(code);
+    if (!matcher.lookingAt() || STATEMENT_KEYWORDS.contains(matcher.group(1))) {
+      return new HashSet<>();
+    }
+    Set<String> result = new LinkedHashSet<>();
+    result.add(matcher.group(2));
+
+    // Additional declarators like ", b = 2" in "int a = 1, b = 2;".
+    int depth = 0;
+    for (int i = matcher.end(2); i < code.length(); i++) {
+      char c = code.charAt(i);
+      if (c == '"' || c == '\'') {
+        i = skipLiteral(code, i);
+      } else if (c == '(' || c == '[' || c == '{') {
+        depth++;
+      } else if (c == ')' || c == ']' || c == '}') {
+        depth--;
+      } else if (c == ';' && depth == 0) {
+        break;
+      } else if (c == ',' && depth == 0) {
+        int start = i + 1;
+        while (start < code.length() && Character.isWhitespace(code.charAt(start))) start++;
+        int end = start;
+        while (end < code.length() && Character.isJavaIdentifierPart(code.charAt(end))) end++;
+        if (end > start) result.add(code.substring(start, end));
+        i = end - 1;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if {@code statement} may return from its method. We can't see into lazy blocks,
+   * so a statement holding one may.
+   */
+  static boolean mayReturn(CodeBlock statement) {
+    return containsLazy(statement) || containsWord(text(statement), "return");
+  }
+
+  /** Returns true if {@code code} contains the identifier or keyword {@code word}. */
+  static boolean containsWord(String code, String word) {
+    return identifiers(code).contains(word);
+  }
+
+  /**
+   * Returns true if {@code code} may assign the variable {@code name}, like {@code name = 1} or
+   * {@code name++}.
+   */
+  static boolean assigns(String code, String name) {
+    for (int i = code.indexOf(name); i != -1; i = code.indexOf(name, i + 1)) {
+      int end = i + name.length();
+      if ((i > 0 && Character.isJavaIdentifierPart(code.charAt(i - 1)))
+          || (end < code.length() && Character.isJavaIdentifierPart(code.charAt(end)))) {
+        continue;
+      }
+      int before = i;
+      while (before > 0 && Character.isWhitespace(code.charAt(before - 1))) before--;
+      int after = end;
+      while (after < code.length() && Character.isWhitespace(code.charAt(after))) after++;
+      if (code.startsWith("++", before - 2) || code.startsWith("--", before - 2)
+          || code.startsWith("++", after) || code.startsWith("--", after)
+          || (code.startsWith("=", after) && !code.startsWith("==", after))
+          || ASSIGNMENT_OPERATOR.matcher(code).region(after, code.length()).lookingAt()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the identifiers in {@code code}, ignoring the contents of string literals. */
+  private static Set<String> identifiers(String code) {
+    Set<String> result = new HashSet<>();
+    for (int i = 0; i < code.length(); i++) {
+      char c = code.charAt(i);
+      if (c == '"' || c == '\'') {
+        i = skipLiteral(code, i);
+      } else if (Character.isJavaIdentifierStart(c)) {
+        int end = i + 1;
+        while (end < code.length() && Character.isJavaIdentifierPart(code.charAt(end))) end++;
+        result.add(code.substring(i, end));
+        i = end - 1;
+      }
+    }
+    return result;
+  }
+
+  /** Returns the index of the quote that closes the literal opened at {@code start}. */
+  private static int skipLiteral(String code, int start) {
+    char quote = code.charAt(start);
+    for (int i = start + 1; i < code.length(); i++) {
+      char c = code.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == quote) {
+        return i;
+      }
+    }
+    return code.length();
+  }
+
+  static boolean hasArg(String part) {
+    return part.length() == 2 && part.charAt(0) == '$' && "LNST".indexOf(part.charAt(1)) != -1;
+  }
+}
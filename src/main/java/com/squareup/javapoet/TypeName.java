@@ -16,6 +16,8 @@
 package com.squareup.javapoet;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -66,6 +68,9 @@ import javax.lang.model.util.SimpleTypeVisitor8;
  * ParameterizedTypeName}, {@link TypeVariableName}, and {@link WildcardTypeName}.
  */
 public class TypeName {
+  private static final VarHandle CACHED_STRING =
+      Util.lazyField(MethodHandles.lookup(), "cachedString", String.class);
+
   public static final TypeName VOID = new TypeName("void");
   public static final TypeName BOOLEAN = new TypeName("boolean");
   public static final TypeName BYTE = new TypeName("byte");
@@ -77,21 +82,12 @@ public class TypeName {
   public static final TypeName DOUBLE = new TypeName("double");
   public static final ClassName OBJECT = ClassName.get("java.lang", "Object");
 
-  private static final ClassName BOXED_VOID = ClassName.get("java.lang", "Void");
-  private static final ClassName BOXED_BOOLEAN = ClassName.get("java.lang", "Boolean");
-  private static final ClassName BOXED_BYTE = ClassName.get("java.lang", "Byte");
-  private static final ClassName BOXED_SHORT = ClassName.get("java.lang", "Short");
-  private static final ClassName BOXED_INT = ClassName.get("java.lang", "Integer");
-  private static final ClassName BOXED_LONG = ClassName.get("java.lang", "Long");
-  private static final ClassName BOXED_CHAR = ClassName.get("java.lang", "Character");
-  private static final ClassName BOXED_FLOAT = ClassName.get("java.lang", "Float");
-  private static final ClassName BOXED_DOUBLE = ClassName.get("java.lang", "Double");
-
   /** The name of this type if it is a keyword, or null. */
   private final String keyword;
   public final List<AnnotationSpec> annotations;
 
-  /** Lazily-initialized toString of this type name. */
+  /** Lazily-initialized toString of this type name. See {@link Util#lazyField}. */
+  @SuppressWarnings("unused") // Accessed through CACHED_STRING.
   private String cachedString;
 
   private TypeName(String keyword) {
@@ -144,14 +140,8 @@ public class TypeName {
    * other types types including unboxed primitives and {@code java.lang.Void}.
    */
   public boolean isBoxedPrimitive() {
-    return this.equals(BOXED_BOOLEAN)
-        || this.equals(BOXED_BYTE)
-        || this.equals(BOXED_SHORT)
-        || this.equals(BOXED_INT)
-        || this.equals(BOXED_LONG)
-        || this.equals(BOXED_CHAR)
-        || this.equals(BOXED_FLOAT)
-        || this.equals(BOXED_DOUBLE);
+    TypeName unboxed = unboxedOrNull();
+    return unboxed != null && unboxed != VOID;
   }
 
   /**
@@ -160,15 +150,15 @@ public class TypeName {
    */
   public TypeName box() {
     if (keyword == null) return this; // Doesn't need boxing.
-    if (this == VOID) return BOXED_VOID;
-    if (this == BOOLEAN) return BOXED_BOOLEAN;
-    if (this == BYTE) return BOXED_BYTE;
-    if (this == SHORT) return BOXED_SHORT;
-    if (this == INT) return BOXED_INT;
-    if (this == LONG) return BOXED_LONG;
-    if (this == CHAR) return BOXED_CHAR;
-    if (this == FLOAT) return BOXED_FLOAT;
-    if (this == DOUBLE) return BOXED_DOUBLE;
+    if (this == VOID) return Boxed.VOID;
+    if (this == BOOLEAN) return Boxed.BOOLEAN;
+    if (this == BYTE) return Boxed.BYTE;
+    if (this == SHORT) return Boxed.SHORT;
+    if (this == INT) return Boxed.INT;
+    if (this == LONG) return Boxed.LONG;
+    if (this == CHAR) return Boxed.CHAR;
+    if (this == FLOAT) return Boxed.FLOAT;
+    if (this == DOUBLE) return Boxed.DOUBLE;
     throw new AssertionError(keyword);
   }
 
@@ -180,16 +170,47 @@ public class TypeName {
    */
   public TypeName unbox() {
     if (keyword != null) return this; // Already unboxed.
-    if (this.equals(BOXED_VOID)) return VOID;
-    if (this.equals(BOXED_BOOLEAN)) return BOOLEAN;
-    if (this.equals(BOXED_BYTE)) return BYTE;
-    if (this.equals(BOXED_SHORT)) return SHORT;
-    if (this.equals(BOXED_INT)) return INT;
-    if (this.equals(BOXED_LONG)) return LONG;
-    if (this.equals(BOXED_CHAR)) return CHAR;
-    if (this.equals(BOXED_FLOAT)) return FLOAT;
-    if (this.equals(BOXED_DOUBLE)) return DOUBLE;
-    throw new UnsupportedOperationException("cannot unbox " + this);
+    TypeName unboxed = unboxedOrNull();
+    if (unboxed == null) throw new UnsupportedOperationException("cannot unbox " + this);
+    return unboxed;
+  }
+
+  /**
+   * Returns the primitive type or void that this unannotated {@code java.lang} class boxes, or
+   * null if it isn't a box. This compares names directly rather than with {@link #equals}, which
+   * would render both types.
+   */
+  private TypeName unboxedOrNull() {
+    if (!(this instanceof ClassName) || isAnnotated()) return null;
+    ClassName className = (ClassName) this;
+    if (className.enclosingClassName != null || !className.packageName.equals("java.lang")) {
+      return null;
+    }
+    switch (className.simpleName) {
+      case "Void": return VOID;
+      case "Boolean": return BOOLEAN;
+      case "Byte": return BYTE;
+      case "Short": return SHORT;
+      case "Integer": return INT;
+      case "Long": return LONG;
+      case "Character": return CHAR;
+      case "Float": return FLOAT;
+      case "Double": return DOUBLE;
+      default: return null;
+    }
+  }
+
+  /** Boxed types, created when first needed instead of when {@code TypeName} is initialized. */
+  private static final class Boxed {
+    static final ClassName VOID = ClassName.get("java.lang", "Void");
+    static final ClassName BOOLEAN = ClassName.get("java.lang", "Boolean");
+    static final ClassName BYTE = ClassName.get("java.lang", "Byte");
+    static final ClassName SHORT = ClassName.get("java.lang", "Short");
+    static final ClassName INT = ClassName.get("java.lang", "Integer");
+    static final ClassName LONG = ClassName.get("java.lang", "Long");
+    static final ClassName CHAR = ClassName.get("java.lang", "Character");
+    static final ClassName FLOAT = ClassName.get("java.lang", "Float");
+    static final ClassName DOUBLE = ClassName.get("java.lang", "Double");
   }
 
   @Override public final boolean equals(Object o) {
@@ -204,19 +225,9 @@ public class TypeName {
   }
 
   @Override public final String toString() {
-    String result = cachedString;
-    if (result == null) {
-      try {
-        StringBuilder resultBuilder = new StringBuilder();
-        CodeWriter codeWriter = new CodeWriter(resultBuilder);
-        emit(codeWriter);
-        result = resultBuilder.toString();
-        cachedString = result;
-      } catch (IOException e) {
-        throw new AssertionError();
-      }
-    }
-    return result;
+    String result = (String) CACHED_STRING.getAcquire(this);
+    if (result != null) return result;
+    return Util.publish(CACHED_STRING, this, CodeWriter.render(this::emit));
   }
 
   CodeWriter emit(CodeWriter out) throws IOException {
@@ -20,16 +20,22 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import javax.annotation.processing.Messager;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.Modifier;
@@ -38,6 +44,7 @@ import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.NoType;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
 
 import static com.squareup.javapoet.Util.checkArgument;
 import static com.squareup.javapoet.Util.checkNotNull;
@@ -60,29 +67,49 @@ public final class TypeSpec {
   public final CodeBlock staticBlock;
   public final CodeBlock initializerBlock;
   public final List<MethodSpec> methodSpecs;
+  /** Methods that are computed as they're emitted. These follow {@link #methodSpecs}. */
+  final List<Supplier<MethodSpec>> lazyMethodSpecs;
   public final List<TypeSpec> typeSpecs;
+  /**
+   * Indexes of {@link #fieldSpecs} in the order they're emitted, static fields first, or null if
+   * that's their order already.
+   */
+  private final int[] fieldOrder;
+  private final int staticFieldCount;
+  /** Indexes of {@link #methodSpecs} in emission order, constructors first, or null. */
+  private final int[] methodOrder;
+  private final int constructorCount;
   final Set<String> nestedTypesSimpleNames;
   public final List<Element> originatingElements;
   public final Set<String> alwaysQualifiedNames;
 
-  private TypeSpec(Builder builder) {
+  private TypeSpec(Builder builder, boolean transfer) {
     this.kind = builder.kind;
     this.name = builder.name;
     this.anonymousTypeArguments = builder.anonymousTypeArguments;
-    this.javadoc = builder.javadoc.build();
-    this.annotations = Util.immutableList(builder.annotations);
-    this.modifiers = Util.immutableSet(builder.modifiers);
-    this.typeVariables = Util.immutableList(builder.typeVariables);
+    this.javadoc = builder.javadoc.build(transfer);
+    this.annotations = Util.immutableList(builder.annotations, transfer);
+    this.modifiers = ModifierSet.of(builder.modifiers);
+    this.typeVariables = Util.immutableList(builder.typeVariables, transfer);
     this.superclass = builder.superclass;
-    this.superinterfaces = Util.immutableList(builder.superinterfaces);
-    this.enumConstants = Util.immutableMap(builder.enumConstants);
-    this.fieldSpecs = Util.immutableList(builder.fieldSpecs);
-    this.staticBlock = builder.staticBlock.build();
-    this.initializerBlock = builder.initializerBlock.build();
-    this.methodSpecs = Util.immutableList(builder.methodSpecs);
-    this.typeSpecs = Util.immutableList(builder.typeSpecs);
+    this.superinterfaces = Util.immutableList(builder.superinterfaces, transfer);
+    this.enumConstants = Util.immutableMap(builder.enumConstants, transfer);
+    this.fieldSpecs = Util.immutableList(builder.fieldSpecs, transfer);
+    this.staticBlock = builder.staticBlock.build(transfer);
+    this.initializerBlock = builder.initializerBlock.build(transfer);
+    this.methodSpecs = Util.immutableList(builder.methodSpecs, transfer);
+    this.lazyMethodSpecs = Util.immutableList(builder.lazyMethodSpecs, transfer);
+    this.typeSpecs = Util.immutableList(builder.typeSpecs, transfer);
     this.alwaysQualifiedNames = Util.immutableSet(builder.alwaysQualifiedNames);
 
+    // Sort members into emission order once, so emitting is a single pass over each list.
+    Predicate<FieldSpec> isStatic = fieldSpec -> fieldSpec.hasModifier(Modifier.STATIC);
+    this.staticFieldCount = count(fieldSpecs, isStatic);
+    this.fieldOrder = emissionOrder(fieldSpecs, isStatic, staticFieldCount);
+    Predicate<MethodSpec> isConstructor = MethodSpec::isConstructor;
+    this.constructorCount = count(methodSpecs, isConstructor);
+    this.methodOrder = emissionOrder(methodSpecs, isConstructor, constructorCount);
+
     nestedTypesSimpleNames = new HashSet<>(builder.typeSpecs.size());
     List<Element> originatingElementsMutable = new ArrayList<>();
     originatingElementsMutable.addAll(builder.originatingElements);
@@ -105,7 +132,7 @@ public final class TypeSpec {
     this.anonymousTypeArguments = null;
     this.javadoc = type.javadoc;
     this.annotations = Collections.emptyList();
-    this.modifiers = Collections.emptySet();
+    this.modifiers = ModifierSet.EMPTY;
     this.typeVariables = Collections.emptyList();
     this.superclass = null;
     this.superinterfaces = Collections.emptyList();
@@ -114,16 +141,228 @@ public final class TypeSpec {
     this.staticBlock = type.staticBlock;
     this.initializerBlock = type.initializerBlock;
     this.methodSpecs = Collections.emptyList();
+    this.lazyMethodSpecs = Collections.emptyList();
     this.typeSpecs = Collections.emptyList();
+    this.fieldOrder = null;
+    this.staticFieldCount = 0;
+    this.methodOrder = null;
+    this.constructorCount = 0;
     this.originatingElements = Collections.emptyList();
     this.nestedTypesSimpleNames = Collections.emptySet();
     this.alwaysQualifiedNames = Collections.emptySet();
   }
 
+  private static <T> int count(List<T> members, Predicate<T> predicate) {
+    int count = 0;
+    for (T member : members) {
+      if (predicate.test(member)) count++;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the indexes of {@code members} with the {@code count} members that match {@code
+   * predicate} first, keeping the order of both groups. Generated members are usually in that order
+   * already, in which case this returns null.
+   */
+  private static <T> int[] emissionOrder(List<T> members, Predicate<T> predicate, int count) {
+    int leading = 0;
+    while (leading < count && predicate.test(members.get(leading))) leading++;
+    if (leading == count) return null;
+
+    int[] result = new int[members.size()];
+    int matched = 0;
+    int unmatched = count;
+    for (int i = 0; i < result.length; i++) {
+      if (predicate.test(members.get(i))) {
+        result[matched++] = i;
+      } else {
+        result[unmatched++] = i;
+      }
+    }
+    return result;
+  }
+
+  /** Returns the {@code i}th member to emit, given the {@code order} of {@code members}. */
+  private static <T> T emitted(List<T> members, int[] order, int i) {
+    return members.get(order != null ? order[i] : i);
+  }
+
+  /** Creates a copy of {@code base} with some of its members replaced. */
+  private TypeSpec(TypeSpec base, List<AnnotationSpec> annotations, Set<Modifier> modifiers,
+      List<FieldSpec> fieldSpecs, int[] fieldOrder, int staticFieldCount,
+      List<MethodSpec> methodSpecs, int[] methodOrder, int constructorCount) {
+    this.kind = base.kind;
+    this.name = base.name;
+    this.anonymousTypeArguments = base.anonymousTypeArguments;
+    this.javadoc = base.javadoc;
+    this.annotations = annotations;
+    this.modifiers = modifiers;
+    this.typeVariables = base.typeVariables;
+    this.superclass = base.superclass;
+    this.superinterfaces = base.superinterfaces;
+    this.enumConstants = base.enumConstants;
+    this.fieldSpecs = fieldSpecs;
+    this.staticBlock = base.staticBlock;
+    this.initializerBlock = base.initializerBlock;
+    this.methodSpecs = methodSpecs;
+    this.lazyMethodSpecs = base.lazyMethodSpecs;
+    this.typeSpecs = base.typeSpecs;
+    this.fieldOrder = fieldOrder;
+    this.staticFieldCount = staticFieldCount;
+    this.methodOrder = methodOrder;
+    this.constructorCount = constructorCount;
+    this.nestedTypesSimpleNames = base.nestedTypesSimpleNames;
+    this.originatingElements = base.originatingElements;
+    this.alwaysQualifiedNames = base.alwaysQualifiedNames;
+  }
+
+  /**
+   * Returns the emission order of {@code members}, whose last member was just appended. If the
+   * other members were in emission order and the new member keeps them that way, this is null.
+   */
+  private static <T> int[] emissionOrder(List<T> members, boolean wasInOrder,
+      Predicate<T> predicate, int count) {
+    T added = members.get(members.size() - 1);
+    if (wasInOrder && (!predicate.test(added) || count == members.size())) return null;
+    return emissionOrder(members, predicate, count);
+  }
+
   public boolean hasModifier(Modifier modifier) {
     return modifiers.contains(modifier);
   }
 
+  /**
+   * Returns a copy of this type with {@code annotationSpec} added.
+   *
+   * <p>Like the other {@code with} methods, this shares everything else with this type instead of
+   * copying it, and the modified list shares structure with this type's list. Converting a list
+   * the first time costs O(n), and each edit after that allocates O(log n). Use these to apply many
+   * small changes to a large type without {@link #toBuilder} round trips.
+   */
+  public TypeSpec withAnnotationAdded(AnnotationSpec annotationSpec) {
+    checkArgument(annotationSpec != null, "annotationSpec == null");
+    return new TypeSpec(this, PersistentVector.of(annotations).plus(annotationSpec), modifiers,
+        fieldSpecs, fieldOrder, staticFieldCount,
+        methodSpecs, methodOrder, constructorCount);
+  }
+
+  /** Returns a copy of this type with its modifiers replaced by {@code modifiers}. */
+  public TypeSpec withModifiers(Modifier... modifiers) {
+    checkArgument(modifiers != null, "modifiers == null");
+    checkState(anonymousTypeArguments == null || modifiers.length == 0,
+        "forbidden on anonymous types.");
+    Set<Modifier> newModifiers = ModifierSet.of(modifiers);
+    checkAbstractMethods(kind, name, newModifiers, methodSpecs);
+    return new TypeSpec(this, annotations, newModifiers,
+        fieldSpecs, fieldOrder, staticFieldCount,
+        methodSpecs, methodOrder, constructorCount);
+  }
+
+  /** Returns a copy of this type with {@code fieldSpec} added. See {@link #withAnnotationAdded}. */
+  public TypeSpec withFieldAdded(FieldSpec fieldSpec) {
+    checkArgument(fieldSpec != null, "fieldSpec == null");
+    checkField(kind, name, fieldSpec);
+    List<FieldSpec> newFieldSpecs = PersistentVector.of(fieldSpecs).plus(fieldSpec);
+    boolean isStatic = fieldSpec.hasModifier(Modifier.STATIC);
+    int newStaticFieldCount = staticFieldCount + (isStatic ? 1 : 0);
+    return new TypeSpec(this, annotations, modifiers,
+        newFieldSpecs, emissionOrder(newFieldSpecs, fieldOrder == null,
+            field -> field.hasModifier(Modifier.STATIC), newStaticFieldCount), newStaticFieldCount,
+        methodSpecs, methodOrder, constructorCount);
+  }
+
+  /**
+   * Returns a copy of this type with {@code methodSpec} added. See {@link #withAnnotationAdded}.
+   */
+  public TypeSpec withMethodAdded(MethodSpec methodSpec) {
+    checkArgument(methodSpec != null, "methodSpec == null");
+    checkMethod(kind, name, methodSpec);
+    checkAbstractMethods(kind, name, modifiers, Collections.singletonList(methodSpec));
+    List<MethodSpec> newMethodSpecs = PersistentVector.of(methodSpecs).plus(methodSpec);
+    int newConstructorCount = constructorCount + (methodSpec.isConstructor() ? 1 : 0);
+    return new TypeSpec(this, annotations, modifiers,
+        fieldSpecs, fieldOrder, staticFieldCount,
+        newMethodSpecs, emissionOrder(newMethodSpecs, methodOrder == null,
+            MethodSpec::isConstructor, newConstructorCount), newConstructorCount);
+  }
+
+  /**
+   * Returns a warning for each method of this type and its nested types whose {@linkplain
+   * MethodSpec#estimatedBytecodeSize() estimated bytecode size} is over {@code maxBytecodeSize}.
+   * The static initializer is checked too. Use {@link MethodSpec#HUGE_METHOD_LIMIT} to find methods
+   * that won't be JIT compiled, or {@link MethodSpec#FREQ_INLINE_SIZE} to find hot path methods
+   * that won't be inlined.
+   */
+  public List<String> oversizedMethodWarnings(int maxBytecodeSize) {
+    List<String> warnings = new ArrayList<>();
+    addOversizedMethodWarnings(warnings, null, null, maxBytecodeSize);
+    return warnings;
+  }
+
+  /**
+   * Reports the {@linkplain #oversizedMethodWarnings oversized methods} of this type as warnings
+   * on the type's originating element.
+   */
+  public void reportOversizedMethods(Messager messager, int maxBytecodeSize) {
+    checkNotNull(messager, "messager == null");
+    addOversizedMethodWarnings(null, messager, null, maxBytecodeSize);
+  }
+
+  private void addOversizedMethodWarnings(List<String> warnings, Messager messager,
+      String enclosingName, int maxBytecodeSize) {
+    String typeName = enclosingName == null ? name : enclosingName + "." + name;
+    Element element = originatingElements.isEmpty() ? null : originatingElements.get(0);
+
+    Map<String, Integer> sizes = new LinkedHashMap<>();
+    int staticInitializerSize = staticInitializerSize();
+    if (staticInitializerSize > maxBytecodeSize) {
+      sizes.put("static initializer", staticInitializerSize);
+    }
+    for (MethodSpec methodSpec : methodSpecs) {
+      int size = methodSpec.estimatedBytecodeSize();
+      if (size <= maxBytecodeSize) continue;
+      StringJoiner signature = new StringJoiner(", ",
+          (methodSpec.isConstructor() ? "constructor " + name : methodSpec.name) + "(", ")");
+      for (ParameterSpec parameter : methodSpec.parameters) {
+        signature.add(parameter.type.toString());
+      }
+      sizes.put(signature.toString(), size);
+    }
+
+    for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+      String warning = String.format("%s %s is about %d bytes of bytecode, over the limit of %d",
+          typeName, entry.getKey(), entry.getValue(), maxBytecodeSize);
+      if (warnings != null) warnings.add(warning);
+      if (messager != null && element != null) {
+        messager.printMessage(Diagnostic.Kind.WARNING, warning, element);
+      } else if (messager != null) {
+        messager.printMessage(Diagnostic.Kind.WARNING, warning);
+      }
+    }
+
+    for (TypeSpec typeSpec : typeSpecs) {
+      typeSpec.addOversizedMethodWarnings(warnings, messager, typeName, maxBytecodeSize);
+    }
+  }
+
+  /** Returns the estimated bytecode size of the static initializer. */
+  private int staticInitializerSize() {
+    int size = 0;
+    for (TypeSpec enumConstant : enumConstants.values()) {
+      size += 20 + BytecodeEstimator.estimate(enumConstant.anonymousTypeArguments);
+    }
+    for (FieldSpec fieldSpec : fieldSpecs) {
+      if (!fieldSpec.hasModifier(Modifier.STATIC) || fieldSpec.initializer.isEmpty()) continue;
+      // Final primitives and strings are usually constants that don't need any code.
+      boolean constant = fieldSpec.hasModifier(Modifier.FINAL)
+          && (fieldSpec.type.isPrimitive() || fieldSpec.type.equals(ClassName.get(String.class)));
+      if (!constant) size += 3 + BytecodeEstimator.estimate(fieldSpec.initializer); // putstatic
+    }
+    if (staticBlock.isEmpty() && size == 0) return 0;
+    return size + BytecodeEstimator.estimate(staticBlockBody());
+  }
+
   public static Builder classBuilder(String name) {
     return new Builder(Kind.CLASS, checkNotNull(name, "name == null"), null);
   }
@@ -175,6 +414,7 @@ public final class TypeSpec {
     builder.enumConstants.putAll(enumConstants);
     builder.fieldSpecs.addAll(fieldSpecs);
     builder.methodSpecs.addAll(methodSpecs);
+    builder.lazyMethodSpecs.addAll(lazyMethodSpecs);
     builder.typeSpecs.addAll(typeSpecs);
     builder.initializerBlock.add(initializerBlock);
     builder.staticBlock.add(staticBlock);
@@ -183,6 +423,406 @@ public final class TypeSpec {
     return builder;
   }
 
+  /**
+   * Returns a copy of this type named {@code name} with the type variables in {@code bindings}
+   * replaced by their bound types. Use this to generate specializations of a generic template, like
+   * {@code IntBuffer} from {@code Buffer<T>} with {@code T} bound to {@link TypeName#INT}, so that
+   * hot paths don't box.
+   *
+   * <p>Type variables are replaced in the type's header, fields, parameters, return types,
+   * exceptions, annotations, nested types, and in {@code $T} arguments of code blocks. Type
+   * variables of methods and nested types hide the bindings of the same name. Where a type variable
+   * is a type argument or bound, like {@code List<T>}, primitive types are boxed. Code blocks use
+   * the boxed type when {@code $T} is followed by a member reference like {@code $T.valueOf()}.
+   * Type variables written directly in format strings aren't replaced.
+   */
+  public TypeSpec specialize(String name, Map<TypeVariableName, TypeName> bindings) {
+    checkArgument(SourceVersion.isName(name), "not a valid name: %s", name);
+    checkArgument(bindings != null, "bindings == null");
+    Set<String> declared = new HashSet<>();
+    for (TypeVariableName typeVariable : typeVariables) {
+      declared.add(typeVariable.name);
+    }
+    Map<String, TypeName> bindingsByName = new LinkedHashMap<>();
+    for (Map.Entry<TypeVariableName, TypeName> binding : bindings.entrySet()) {
+      String typeVariable = binding.getKey().name;
+      checkArgument(declared.contains(typeVariable), "%s is not a type variable of %s",
+          typeVariable, this.name);
+      checkArgument(binding.getValue() != null && binding.getValue() != TypeName.VOID,
+          "invalid binding for %s: %s", typeVariable, binding.getValue());
+      bindingsByName.put(typeVariable, binding.getValue());
+    }
+
+    Builder builder = substitute(new TypeSubstitution(bindingsByName), name);
+    builder.typeVariables.removeIf(typeVariable -> bindingsByName.containsKey(typeVariable.name));
+    return builder.build();
+  }
+
+  /** Returns a copy of this type with the type variables it doesn't hide replaced. */
+  TypeSpec substitute(TypeSubstitution substitution) {
+    return substitute(substitution.shadow(typeVariables), name).build();
+  }
+
+  private Builder substitute(TypeSubstitution substitution, String name) {
+    Builder builder = new Builder(kind, name, anonymousTypeArguments != null
+        ? substitution.code(anonymousTypeArguments)
+        : null);
+    builder.javadoc.add(substitution.code(javadoc));
+    builder.annotations.addAll(substitution.annotations(annotations));
+    builder.modifiers.addAll(modifiers);
+    for (TypeVariableName typeVariable : typeVariables) {
+      builder.typeVariables.add(substitution.declaration(typeVariable));
+    }
+    builder.superclass = substitution.type(superclass);
+    for (TypeName superinterface : superinterfaces) {
+      builder.superinterfaces.add(substitution.type(superinterface));
+    }
+    for (Map.Entry<String, TypeSpec> enumConstant : enumConstants.entrySet()) {
+      builder.enumConstants.put(enumConstant.getKey(),
+          enumConstant.getValue().substitute(substitution));
+    }
+    for (FieldSpec fieldSpec : fieldSpecs) {
+      builder.fieldSpecs.add(substitution.field(fieldSpec));
+    }
+    for (MethodSpec methodSpec : methodSpecs) {
+      builder.methodSpecs.add(substitution.method(methodSpec));
+    }
+    for (Supplier<MethodSpec> supplier : lazyMethodSpecs) {
+      builder.lazyMethodSpecs.add(() -> substitution.method(supplier.get()));
+    }
+    for (TypeSpec typeSpec : typeSpecs) {
+      builder.typeSpecs.add(typeSpec.substitute(substitution));
+    }
+    builder.initializerBlock.add(substitution.code(initializerBlock));
+    builder.staticBlock.add(substitution.code(staticBlock));
+    builder.originatingElements.addAll(originatingElements);
+    builder.alwaysQualifiedNames.addAll(alwaysQualifiedNames);
+    return builder;
+  }
+
+  /**
+   * Returns a copy of this type whose static initialization runs in private static helper methods
+   * of at most {@code maxStatements} statements each, called in order from the static block.
+   */
+  private TypeSpec splitStaticInitializer(int maxStatements) {
+    Set<String> blankFinalFields = new HashSet<>();
+    for (FieldSpec fieldSpec : fieldSpecs) {
+      if (fieldSpec.hasModifier(Modifier.STATIC) && fieldSpec.hasModifier(Modifier.FINAL)
+          && fieldSpec.initializer.isEmpty()) {
+        blankFinalFields.add(fieldSpec.name);
+      }
+    }
+
+    // Static field initializers run before the static block. Non-final fields that follow the last
+    // final field with an initializer can be assigned from the helpers without reordering anything.
+    // So can final fields initialized with an array literal of more than maxStatements elements:
+    // they become blank finals, created in the static block and filled in slices by the helpers.
+    List<FieldSpec> staticFields = new ArrayList<>(staticFieldCount);
+    for (int i = 0; i < staticFieldCount; i++) {
+      staticFields.add(emitted(fieldSpecs, fieldOrder, i));
+    }
+    int firstMovedField = staticFields.size();
+    while (firstMovedField > 0) {
+      FieldSpec fieldSpec = staticFields.get(firstMovedField - 1);
+      if (fieldSpec.hasModifier(Modifier.FINAL) && !fieldSpec.initializer.isEmpty()
+          && !isLargeArrayLiteral(fieldSpec.initializer, maxStatements)) break;
+      firstMovedField--;
+    }
+
+    List<CodeBlock> statements = new ArrayList<>();
+    BitSet fills = new BitSet();
+    Set<FieldSpec> movedFields = new HashSet<>();
+    for (FieldSpec fieldSpec : staticFields.subList(firstMovedField, staticFields.size())) {
+      if (fieldSpec.initializer.isEmpty()) continue;
+      movedFields.add(fieldSpec);
+      if (isLargeArrayLiteral(fieldSpec.initializer, maxStatements)) {
+        PrimitiveArrayLiteral literal = arrayLiteral(fieldSpec.initializer);
+        TypeName elementType = literal.elementType();
+        statements.add(CodeBlock.builder().addStatement("$N = new $T[$L]", fieldSpec, elementType,
+            literal.length()).build());
+        if (fieldSpec.hasModifier(Modifier.FINAL)) blankFinalFields.add(fieldSpec.name);
+        for (int from = 0; from < literal.length(); from += maxStatements) {
+          int to = Math.min(from + maxStatements, literal.length());
+          fills.set(statements.size());
+          statements.add(CodeBlock.builder()
+              .addStatement("$T.arraycopy(new $T[] $L, 0, $N, $L, $L)", System.class, elementType,
+                  literal.slice(from, to), fieldSpec, from, to - from)
+              .build());
+        }
+        continue;
+      }
+      statements.add(isArrayInitializer(fieldSpec.initializer)
+          ? CodeBlock.builder().addStatement("$N = new $T $L", fieldSpec, fieldSpec.type,
+              fieldSpec.initializer).build()
+          : CodeBlock.builder().addStatement("$N = $L", fieldSpec, fieldSpec.initializer).build());
+    }
+    statements.addAll(StatementSplitter.topLevelStatements(staticBlockBody()));
+
+    int statementCount = 0;
+    for (CodeBlock statement : statements) {
+      statementCount += StatementSplitter.statementCount(statement);
+    }
+    if (statementCount <= maxStatements && fills.isEmpty()) return this;
+
+    // Blank final fields can only be assigned in the static block, so those statements stay there.
+    boolean[] canCutAfter = StatementSplitter.cutPoints(statements);
+    for (int i = 0; i < statements.size(); i++) {
+      if (!assignsAny(statements.get(i), blankFinalFields)) continue;
+      if ((i > 0 && !canCutAfter[i - 1]) || !canCutAfter[i]) return this;
+    }
+
+    Set<String> methodNames = new HashSet<>();
+    for (MethodSpec methodSpec : methodSpecs) {
+      methodNames.add(methodSpec.name);
+    }
+
+    CodeBlock.Builder staticBlock = CodeBlock.builder();
+    List<MethodSpec> helpers = new ArrayList<>();
+    int helperIndex = 0;
+    for (int i = 0; i < statements.size(); i++) {
+      int end = i;
+      while (end < statements.size() && !fills.get(end)
+          && !assignsAny(statements.get(end), blankFinalFields)) {
+        end++;
+      }
+      List<CodeBlock> helperBodies =
+          new ArrayList<>(StatementSplitter.chunks(statements.subList(i, end), maxStatements));
+      // Each slice of an array literal is about maxStatements statements of bytecode on its own.
+      boolean fill = fills.get(end);
+      if (fill) helperBodies.add(statements.get(end));
+      for (CodeBlock helperBody : helperBodies) {
+        String helperName;
+        do {
+          helperName = "staticInit" + helperIndex++;
+        } while (methodNames.contains(helperName));
+        helpers.add(MethodSpec.methodBuilder(helperName)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addCode(helperBody)
+            .build());
+        staticBlock.addStatement("$N()", helperName);
+      }
+      if (end < statements.size() && !fill) staticBlock.add(statements.get(end));
+      i = end;
+    }
+
+    Builder builder = toBuilder();
+    builder.staticBlock.clear();
+    builder.addStaticBlock(staticBlock.build());
+    for (int i = 0; i < builder.fieldSpecs.size(); i++) {
+      FieldSpec fieldSpec = builder.fieldSpecs.get(i);
+      if (!movedFields.contains(fieldSpec)) continue;
+      builder.fieldSpecs.set(i, FieldSpec.builder(fieldSpec.type, fieldSpec.name,
+          fieldSpec.modifiers.toArray(new Modifier[0]))
+          .addJavadoc(fieldSpec.javadoc)
+          .addAnnotations(fieldSpec.annotations)
+          .build());
+    }
+    builder.addMethods(helpers);
+    return builder.build();
+  }
+
+  /**
+   * Returns a copy of this type whose methods with more than {@code maxStatements} statements have
+   * their leading statements moved into private helper methods.
+   */
+  private TypeSpec splitLargeMethods(int maxStatements) {
+    Set<String> methodNames = new HashSet<>();
+    for (MethodSpec methodSpec : methodSpecs) {
+      methodNames.add(methodSpec.name);
+    }
+
+    List<MethodSpec> result = new ArrayList<>();
+    List<MethodSpec> helpers = new ArrayList<>();
+    for (MethodSpec methodSpec : methodSpecs) {
+      result.add(splitLargeMethod(methodSpec, maxStatements, methodNames, helpers));
+    }
+    if (helpers.isEmpty()) return this;
+
+    Builder builder = toBuilder();
+    builder.methodSpecs.clear();
+    builder.methodSpecs.addAll(result);
+    builder.methodSpecs.addAll(helpers);
+    return builder.build();
+  }
+
+  private MethodSpec splitLargeMethod(MethodSpec methodSpec, int maxStatements,
+      Set<String> methodNames, List<MethodSpec> helpers) {
+    // Constructors must call this() or super() first and may assign final fields.
+    if (methodSpec.isConstructor() || methodSpec.code.isEmpty()
+        || StatementSplitter.statementCount(methodSpec.code) <= maxStatements) {
+      return methodSpec;
+    }
+
+    List<CodeBlock> statements = StatementSplitter.topLevelStatements(methodSpec.code);
+    for (CodeBlock statement : statements) {
+      String code = StatementSplitter.text(statement);
+      for (ParameterSpec parameter : methodSpec.parameters) {
+        // Helpers get copies of the parameters, so assignments wouldn't be seen by the caller.
+        if (StatementSplitter.assigns(code, parameter.name)) return methodSpec;
+      }
+    }
+
+    // Helpers can't return for the method, so everything from the first return stays in place.
+    int end = 0;
+    while (end < statements.size() && !StatementSplitter.mayReturn(statements.get(end))) end++;
+    boolean[] canCutAfter = StatementSplitter.cutPoints(statements);
+    while (end > 0 && end < statements.size() && !canCutAfter[end - 1]) end--;
+
+    List<CodeBlock> chunks = StatementSplitter.chunks(statements.subList(0, end), maxStatements);
+    // Without a tail the last chunk can stay in place.
+    int movedChunks = end == statements.size() ? chunks.size() - 1 : chunks.size();
+    if (movedChunks <= 0) return methodSpec;
+
+    CodeBlock.Builder arguments = CodeBlock.builder();
+    for (ParameterSpec parameter : methodSpec.parameters) {
+      if (!arguments.isEmpty()) arguments.add(",$W");
+      arguments.add("$N", parameter);
+    }
+
+    CodeBlock.Builder code = CodeBlock.builder();
+    int helperIndex = 0;
+    for (CodeBlock chunk : chunks.subList(0, movedChunks)) {
+      String helperName;
+      do {
+        helperName = methodSpec.name + "Part" + helperIndex++;
+      } while (!methodNames.add(helperName));
+      MethodSpec.Builder helper = MethodSpec.methodBuilder(helperName)
+          .addModifiers(Modifier.PRIVATE)
+          .addTypeVariables(methodSpec.typeVariables)
+          .addParameters(methodSpec.parameters)
+          .addExceptions(methodSpec.exceptions)
+          .addCode(chunk);
+      if (methodSpec.hasModifier(Modifier.STATIC)) helper.addModifiers(Modifier.STATIC);
+      helpers.add(helper.build());
+      code.addStatement("$N($L)", helperName, arguments.build());
+    }
+    for (CodeBlock chunk : chunks.subList(movedChunks, chunks.size())) {
+      code.add(chunk);
+    }
+    for (CodeBlock statement : statements.subList(end, statements.size())) {
+      code.add(statement);
+    }
+    return methodSpec.withCode(code.build());
+  }
+
+  /** Returns the statements of the static blocks, without the {@code static { ... }} wrappers. */
+  private CodeBlock staticBlockBody() {
+    CodeBlock.Builder result = CodeBlock.builder();
+    int indentLevel = 0;
+    int a = 0;
+    for (String part : staticBlock.formatParts) {
+      Object arg = StatementSplitter.hasArg(part) ? staticBlock.args.get(a++) : null;
+      if (part.equals("$>")) {
+        if (++indentLevel == 1) continue;
+      } else if (part.equals("$<")) {
+        if (--indentLevel == 0) continue;
+      } else if (indentLevel == 0) {
+        continue; // "static {" or "}".
+      }
+      result.formatParts.add(part);
+      if (arg != null) result.args.add(arg);
+    }
+    return result.build();
+  }
+
+  private static boolean isLargeArrayLiteral(CodeBlock initializer, int maxStatements) {
+    PrimitiveArrayLiteral literal = arrayLiteral(initializer);
+    return literal != null && literal.length() > maxStatements;
+  }
+
+  /** Returns the literal if {@code initializer} is just {@link CodeBlock#ofIntArray} or similar. */
+  private static PrimitiveArrayLiteral arrayLiteral(CodeBlock initializer) {
+    if (initializer.formatParts.size() != 1 || !initializer.formatParts.get(0).equals("$L")) {
+      return null;
+    }
+    Object arg = initializer.args.get(0);
+    if (arg instanceof PrimitiveArrayLiteral) return (PrimitiveArrayLiteral) arg;
+    return arg instanceof CodeBlock ? arrayLiteral((CodeBlock) arg) : null;
+  }
+
+  private static boolean isArrayInitializer(CodeBlock initializer) {
+    if (initializer.formatParts.isEmpty()) return false;
+    String part = initializer.formatParts.get(0);
+    if (part.equals("$L")) {
+      Object arg = initializer.args.get(0);
+      return arg instanceof PrimitiveArrayLiteral
+          || (arg instanceof CodeBlock && isArrayInitializer((CodeBlock) arg));
+    }
+    return !part.startsWith("$") && part.trim().startsWith("{");
+  }
+
+  /** Returns {@code name} in upper snake case, like {@code FROM_CODE} for {@code fromCode}. */
+  private static String constantName(String name) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (i > 0 && Character.isUpperCase(c) && !Character.isUpperCase(name.charAt(i - 1))) {
+        result.append('_');
+      }
+      result.append(Character.toUpperCase(c));
+    }
+    return result.toString();
+  }
+
+  /**
+   * Returns true if {@code statement} may assign one of {@code fieldNames} anywhere, including in
+   * nested blocks like {@code try} and {@code if}. Lazy blocks can't be inspected, so they may.
+   */
+  private static boolean assignsAny(CodeBlock statement, Set<String> fieldNames) {
+    if (fieldNames.isEmpty()) return false;
+    if (StatementSplitter.containsLazy(statement)) return true;
+    String code = StatementSplitter.text(statement);
+    for (String fieldName : fieldNames) {
+      if (StatementSplitter.assigns(code, fieldName)) return true;
+    }
+    return false;
+  }
+
+  private static void checkField(Kind kind, String name, FieldSpec fieldSpec) {
+    if (kind == Kind.INTERFACE || kind == Kind.ANNOTATION) {
+      requireExactlyOneOf(fieldSpec.modifiers, Modifier.PUBLIC, Modifier.PRIVATE);
+      Set<Modifier> check = EnumSet.of(Modifier.STATIC, Modifier.FINAL);
+      checkState(fieldSpec.modifiers.containsAll(check), "%s %s.%s requires modifiers %s",
+          kind, name, fieldSpec.name, check);
+    }
+  }
+
+  private static void checkMethod(Kind kind, String name, MethodSpec methodSpec) {
+    if (kind == Kind.INTERFACE) {
+      requireExactlyOneOf(methodSpec.modifiers, Modifier.PUBLIC, Modifier.PRIVATE);
+      if (methodSpec.modifiers.contains(Modifier.PRIVATE)) {
+        checkState(!methodSpec.hasModifier(Modifier.DEFAULT),
+            "%s %s.%s cannot be private and default", kind, name, methodSpec.name);
+        checkState(!methodSpec.hasModifier(Modifier.ABSTRACT),
+            "%s %s.%s cannot be private and abstract", kind, name, methodSpec.name);
+      } else {
+        requireExactlyOneOf(methodSpec.modifiers, Modifier.ABSTRACT, Modifier.STATIC,
+            Modifier.DEFAULT);
+      }
+    } else if (kind == Kind.ANNOTATION) {
+      checkState(methodSpec.modifiers.equals(kind.implicitMethodModifiers),
+          "%s %s.%s requires modifiers %s",
+          kind, name, methodSpec.name, kind.implicitMethodModifiers);
+    }
+    if (kind != Kind.ANNOTATION) {
+      checkState(methodSpec.defaultValue == null, "%s %s.%s cannot have a default value",
+          kind, name, methodSpec.name);
+    }
+    if (kind != Kind.INTERFACE) {
+      checkState(!methodSpec.hasModifier(Modifier.DEFAULT), "%s %s.%s cannot be default",
+          kind, name, methodSpec.name);
+    }
+  }
+
+  private static void checkAbstractMethods(Kind kind, String name,
+      Collection<Modifier> modifiers, List<MethodSpec> methodSpecs) {
+    if (modifiers.contains(Modifier.ABSTRACT) || kind != Kind.CLASS) return;
+    for (MethodSpec methodSpec : methodSpecs) {
+      checkArgument(!methodSpec.hasModifier(Modifier.ABSTRACT),
+          "non-abstract type %s cannot declare abstract method %s", name, methodSpec.name);
+    }
+  }
+
   void emit(CodeWriter codeWriter, String enumName, Set<Modifier> implicitModifiers)
       throws IOException {
     // Nested classes interrupt wrapped line indentation. Stash the current wrapping state and put
@@ -200,7 +840,8 @@ public final class TypeSpec {
           codeWriter.emit(anonymousTypeArguments);
           codeWriter.emit(")");
         }
-        if (fieldSpecs.isEmpty() && methodSpecs.isEmpty() && typeSpecs.isEmpty()) {
+        if (fieldSpecs.isEmpty() && methodSpecs.isEmpty() && lazyMethodSpecs.isEmpty()
+            && typeSpecs.isEmpty()) {
           return; // Avoid unnecessary braces "{}".
         }
         codeWriter.emit(" {\n");
@@ -210,53 +851,7 @@ public final class TypeSpec {
         codeWriter.emit(anonymousTypeArguments);
         codeWriter.emit(") {\n");
       } else {
-        // Push an empty type (specifically without nested types) for type-resolution.
-        codeWriter.pushType(new TypeSpec(this));
-
-        codeWriter.emitJavadoc(javadoc);
-        codeWriter.emitAnnotations(annotations, false);
-        codeWriter.emitModifiers(modifiers, Util.union(implicitModifiers, kind.asMemberModifiers));
-        if (kind == Kind.ANNOTATION) {
-          codeWriter.emit("$L $L", "@interface", name);
-        } else {
-          codeWriter.emit("$L $L", kind.name().toLowerCase(Locale.US), name);
-        }
-        codeWriter.emitTypeVariables(typeVariables);
-
-        List<TypeName> extendsTypes;
-        List<TypeName> implementsTypes;
-        if (kind == Kind.INTERFACE) {
-          extendsTypes = superinterfaces;
-          implementsTypes = Collections.emptyList();
-        } else {
-          extendsTypes = superclass.equals(ClassName.OBJECT)
-              ? Collections.emptyList()
-              : Collections.singletonList(superclass);
-          implementsTypes = superinterfaces;
-        }
-
-        if (!extendsTypes.isEmpty()) {
-          codeWriter.emit(" extends");
-          boolean firstType = true;
-          for (TypeName type : extendsTypes) {
-            if (!firstType) codeWriter.emit(",");
-            codeWriter.emit(" $T", type);
-            firstType = false;
-          }
-        }
-
-        if (!implementsTypes.isEmpty()) {
-          codeWriter.emit(" implements");
-          boolean firstType = true;
-          for (TypeName type : implementsTypes) {
-            if (!firstType) codeWriter.emit(",");
-            codeWriter.emit(" $T", type);
-            firstType = false;
-          }
-        }
-
-        codeWriter.popType();
-
+        emitDeclaration(codeWriter, implicitModifiers);
         codeWriter.emit(" {\n");
       }
 
@@ -264,7 +859,8 @@ public final class TypeSpec {
       codeWriter.indent();
       boolean firstMember = true;
       boolean needsSeparator = kind == Kind.ENUM
-              && (!fieldSpecs.isEmpty() || !methodSpecs.isEmpty() || !typeSpecs.isEmpty());
+              && (!fieldSpecs.isEmpty() || !methodSpecs.isEmpty() || !lazyMethodSpecs.isEmpty()
+              || !typeSpecs.isEmpty());
       for (Iterator<Map.Entry<String, TypeSpec>> i = enumConstants.entrySet().iterator();
           i.hasNext(); ) {
         Map.Entry<String, TypeSpec> enumConstant = i.next();
@@ -281,10 +877,9 @@ public final class TypeSpec {
       if (needsSeparator) codeWriter.emit(";\n");
 
       // Static fields.
-      for (FieldSpec fieldSpec : fieldSpecs) {
-        if (!fieldSpec.hasModifier(Modifier.STATIC)) continue;
+      for (int i = 0; i < staticFieldCount; i++) {
         if (!firstMember) codeWriter.emit("\n");
-        fieldSpec.emit(codeWriter, kind.implicitFieldModifiers);
+        emitted(fieldSpecs, fieldOrder, i).emit(codeWriter, kind.implicitFieldModifiers);
         firstMember = false;
       }
 
@@ -295,10 +890,9 @@ public final class TypeSpec {
       }
 
       // Non-static fields.
-      for (FieldSpec fieldSpec : fieldSpecs) {
-        if (fieldSpec.hasModifier(Modifier.STATIC)) continue;
+      for (int i = staticFieldCount; i < fieldSpecs.size(); i++) {
         if (!firstMember) codeWriter.emit("\n");
-        fieldSpec.emit(codeWriter, kind.implicitFieldModifiers);
+        emitted(fieldSpecs, fieldOrder, i).emit(codeWriter, kind.implicitFieldModifiers);
         firstMember = false;
       }
 
@@ -309,17 +903,17 @@ public final class TypeSpec {
         firstMember = false;
       }
 
-      // Constructors.
-      for (MethodSpec methodSpec : methodSpecs) {
-        if (!methodSpec.isConstructor()) continue;
+      // Constructors, then methods (static and non-static).
+      for (int i = 0; i < methodSpecs.size(); i++) {
         if (!firstMember) codeWriter.emit("\n");
-        methodSpec.emit(codeWriter, name, kind.implicitMethodModifiers);
+        emitted(methodSpecs, methodOrder, i).emit(codeWriter, name, kind.implicitMethodModifiers);
         firstMember = false;
       }
 
-      // Methods (static and non-static).
-      for (MethodSpec methodSpec : methodSpecs) {
-        if (methodSpec.isConstructor()) continue;
+      // Lazy methods, computed here and dropped once they're written.
+      for (Supplier<MethodSpec> supplier : lazyMethodSpecs) {
+        MethodSpec methodSpec = supplier.get();
+        checkState(methodSpec != null, "lazy method supplier of %s returned null", name);
         if (!firstMember) codeWriter.emit("\n");
         methodSpec.emit(codeWriter, name, kind.implicitMethodModifiers);
         firstMember = false;
@@ -345,6 +939,61 @@ public final class TypeSpec {
     }
   }
 
+  /**
+   * Emits the declaration of this named type, up to its opening brace. This declares the type's
+   * type variables, which the caller must pop after emitting the type's body.
+   */
+  void emitDeclaration(CodeWriter codeWriter, Set<Modifier> implicitModifiers)
+      throws IOException {
+    // Push an empty type (specifically without nested types) for type-resolution.
+    codeWriter.pushType(new TypeSpec(this));
+
+    codeWriter.emitJavadoc(javadoc);
+    codeWriter.emitAnnotations(annotations, false);
+    codeWriter.emitModifiers(ModifierSet.mask(modifiers)
+        & ~(ModifierSet.mask(implicitModifiers) | ModifierSet.mask(kind.asMemberModifiers)));
+    if (kind == Kind.ANNOTATION) {
+      codeWriter.emit("$L $L", "@interface", name);
+    } else {
+      codeWriter.emit("$L $L", kind.name().toLowerCase(Locale.US), name);
+    }
+    codeWriter.emitTypeVariables(typeVariables);
+
+    List<TypeName> extendsTypes;
+    List<TypeName> implementsTypes;
+    if (kind == Kind.INTERFACE) {
+      extendsTypes = superinterfaces;
+      implementsTypes = Collections.emptyList();
+    } else {
+      extendsTypes = superclass.equals(ClassName.OBJECT)
+          ? Collections.emptyList()
+          : Collections.singletonList(superclass);
+      implementsTypes = superinterfaces;
+    }
+
+    if (!extendsTypes.isEmpty()) {
+      codeWriter.emit(" extends");
+      boolean firstType = true;
+      for (TypeName type : extendsTypes) {
+        if (!firstType) codeWriter.emit(",");
+        codeWriter.emit(" $T", type);
+        firstType = false;
+      }
+    }
+
+    if (!implementsTypes.isEmpty()) {
+      codeWriter.emit(" implements");
+      boolean firstType = true;
+      for (TypeName type : implementsTypes) {
+        if (!firstType) codeWriter.emit(",");
+        codeWriter.emit(" $T", type);
+        firstType = false;
+      }
+    }
+
+    codeWriter.popType();
+  }
+
   @Override public boolean equals(Object o) {
     if (this == o) return true;
     if (o == null) return false;
@@ -357,50 +1006,43 @@ public final class TypeSpec {
   }
 
   @Override public String toString() {
-    StringBuilder out = new StringBuilder();
-    try {
-      CodeWriter codeWriter = new CodeWriter(out);
-      emit(codeWriter, null, Collections.emptySet());
-      return out.toString();
-    } catch (IOException e) {
-      throw new AssertionError();
-    }
+    return CodeWriter.render(codeWriter -> emit(codeWriter, null, Collections.emptySet()));
   }
 
   public enum Kind {
     CLASS(
-        Collections.emptySet(),
-        Collections.emptySet(),
-        Collections.emptySet(),
-        Collections.emptySet()),
+        ModifierSet.EMPTY,
+        ModifierSet.EMPTY,
+        ModifierSet.EMPTY,
+        ModifierSet.EMPTY),
 
     INTERFACE(
-        Util.immutableSet(Arrays.asList(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)),
-        Util.immutableSet(Arrays.asList(Modifier.PUBLIC, Modifier.ABSTRACT)),
-        Util.immutableSet(Arrays.asList(Modifier.PUBLIC, Modifier.STATIC)),
-        Util.immutableSet(Collections.singletonList(Modifier.STATIC))),
+        ModifierSet.of(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL),
+        ModifierSet.of(Modifier.PUBLIC, Modifier.ABSTRACT),
+        ModifierSet.of(Modifier.PUBLIC, Modifier.STATIC),
+        ModifierSet.of(Modifier.STATIC)),
 
     ENUM(
-        Collections.emptySet(),
-        Collections.emptySet(),
-        Collections.emptySet(),
-        Collections.singleton(Modifier.STATIC)),
+        ModifierSet.EMPTY,
+        ModifierSet.EMPTY,
+        ModifierSet.EMPTY,
+        ModifierSet.of(Modifier.STATIC)),
 
     ANNOTATION(
-        Util.immutableSet(Arrays.asList(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)),
-        Util.immutableSet(Arrays.asList(Modifier.PUBLIC, Modifier.ABSTRACT)),
-        Util.immutableSet(Arrays.asList(Modifier.PUBLIC, Modifier.STATIC)),
-        Util.immutableSet(Collections.singletonList(Modifier.STATIC)));
+        ModifierSet.of(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL),
+        ModifierSet.of(Modifier.PUBLIC, Modifier.ABSTRACT),
+        ModifierSet.of(Modifier.PUBLIC, Modifier.STATIC),
+        ModifierSet.of(Modifier.STATIC));
 
-    private final Set<Modifier> implicitFieldModifiers;
-    private final Set<Modifier> implicitMethodModifiers;
-    private final Set<Modifier> implicitTypeModifiers;
-    private final Set<Modifier> asMemberModifiers;
+    final Set<Modifier> implicitFieldModifiers;
+    final Set<Modifier> implicitMethodModifiers;
+    final Set<Modifier> implicitTypeModifiers;
+    private final ModifierSet asMemberModifiers;
 
     Kind(Set<Modifier> implicitFieldModifiers,
         Set<Modifier> implicitMethodModifiers,
         Set<Modifier> implicitTypeModifiers,
-        Set<Modifier> asMemberModifiers) {
+        ModifierSet asMemberModifiers) {
       this.implicitFieldModifiers = implicitFieldModifiers;
       this.implicitMethodModifiers = implicitMethodModifiers;
       this.implicitTypeModifiers = implicitTypeModifiers;
@@ -417,17 +1059,22 @@ public final class TypeSpec {
     private TypeName superclass = ClassName.OBJECT;
     private final CodeBlock.Builder staticBlock = CodeBlock.builder();
     private final CodeBlock.Builder initializerBlock = CodeBlock.builder();
-
-    public final Map<String, TypeSpec> enumConstants = new LinkedHashMap<>();
-    public final List<AnnotationSpec> annotations = new ArrayList<>();
-    public final List<Modifier> modifiers = new ArrayList<>();
-    public final List<TypeVariableName> typeVariables = new ArrayList<>();
-    public final List<TypeName> superinterfaces = new ArrayList<>();
-    public final List<FieldSpec> fieldSpecs = new ArrayList<>();
-    public final List<MethodSpec> methodSpecs = new ArrayList<>();
-    public final List<TypeSpec> typeSpecs = new ArrayList<>();
-    public final List<Element> originatingElements = new ArrayList<>();
-    public final Set<String> alwaysQualifiedNames = new LinkedHashSet<>();
+    private int maxStaticInitializerStatements;
+    private int maxMethodStatements;
+    private boolean frozen;
+
+    public final Map<String, TypeSpec> enumConstants = new FreezableMap<>();
+    public final List<AnnotationSpec> annotations = new FreezableList<>();
+    public final List<Modifier> modifiers = new FreezableList<>();
+    public final List<TypeVariableName> typeVariables = new FreezableList<>();
+    public final List<TypeName> superinterfaces = new FreezableList<>();
+    public final List<FieldSpec> fieldSpecs = new FreezableList<>();
+    public final List<MethodSpec> methodSpecs = new FreezableList<>();
+    final List<Supplier<MethodSpec>> lazyMethodSpecs = new FreezableList<>();
+    public final List<TypeSpec> typeSpecs = new FreezableList<>();
+    public final List<Element> originatingElements = new FreezableList<>();
+    private final FreezableMap<String, Boolean> alwaysQualified = new FreezableMap<>();
+    public final Set<String> alwaysQualifiedNames = Collections.newSetFromMap(alwaysQualified);
 
     private Builder(Kind kind, String name,
         CodeBlock anonymousTypeArguments) {
@@ -588,6 +1235,159 @@ public final class TypeSpec {
       return this;
     }
 
+    /**
+     * Adds enum constants without arguments or bodies. The constants share one empty body, so a
+     * large enum can be fed from a stream with {@code addEnumConstants(names::iterator)}.
+     */
+    public Builder addEnumConstants(Iterable<String> names) {
+      checkArgument(names != null, "names == null");
+      TypeSpec emptyBody = anonymousClassBuilder("").build();
+      for (String name : names) {
+        enumConstants.put(name, emptyBody);
+      }
+      return this;
+    }
+
+    /**
+     * Adds a private static field named {@code fieldName} that holds the enum's constants. Each
+     * call to {@code values()} returns a new array, so code that reads the constants often can use
+     * this field instead.
+     */
+    public Builder addCachedValues(String fieldName) {
+      checkState(kind == Kind.ENUM, "%s is not enum", name);
+      return addField(FieldSpec.builder(ArrayTypeName.of(enumType()), fieldName,
+          Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+          .initializer("values()")
+          .build());
+    }
+
+    /**
+     * Adds a public static method named {@code methodName} that returns the enum constant with an
+     * {@code int} code, or null if no constant has that code. {@code codes} maps the names of enum
+     * constants to their codes; call this after adding the constants.
+     *
+     * <p>If the codes are non-negative and span at most twice as many values as there are codes,
+     * the constant is read from an array indexed by code. Otherwise it's found by a binary search
+     * of the sorted codes. The arrays are private static fields whose names start with {@code
+     * methodName} in upper case, like {@code FROM_CODE_TABLE}.
+     */
+    public Builder addEnumCodeLookup(String methodName, Map<String, Integer> codes) {
+      checkState(kind == Kind.ENUM, "%s is not enum", name);
+      checkArgument(codes != null, "codes == null");
+      TreeMap<Integer, String> constantsByCode = new TreeMap<>();
+      for (Map.Entry<String, Integer> code : codes.entrySet()) {
+        checkArgument(enumConstants.containsKey(code.getKey()), "%s is not a constant of %s",
+            code.getKey(), name);
+        checkArgument(code.getValue() != null, "no code for %s", code.getKey());
+        String previous = constantsByCode.put(code.getValue(), code.getKey());
+        checkArgument(previous == null, "%s and %s have the same code: %s", previous,
+            code.getKey(), code.getValue());
+      }
+
+      MethodSpec.Builder method = MethodSpec.methodBuilder(methodName)
+          .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+          .returns(enumType())
+          .addParameter(int.class, "code");
+      String prefix = constantName(methodName);
+      TypeName arrayType = ArrayTypeName.of(enumType());
+      if (constantsByCode.isEmpty()) {
+        method.addStatement("return null");
+      } else if (constantsByCode.firstKey() >= 0 && (long) constantsByCode.lastKey()
+          - constantsByCode.firstKey() < 2L * constantsByCode.size()) {
+        int min = constantsByCode.firstKey();
+        int max = constantsByCode.lastKey();
+        List<CodeBlock> table = new ArrayList<>();
+        for (int code = min; code <= max; code++) {
+          String constant = constantsByCode.get(code);
+          table.add(constant != null ? CodeBlock.of("$N", constant) : CodeBlock.of("null"));
+        }
+        FieldSpec tableField = FieldSpec.builder(arrayType, prefix + "_TABLE",
+            Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer("{$L}", CodeBlock.join(table, ",$W"))
+            .build();
+        addField(tableField);
+        method.beginControlFlow("if (code < $L || code > $L)", min, max)
+            .addStatement("return null")
+            .endControlFlow();
+        if (min == 0) {
+          method.addStatement("return $N[code]", tableField);
+        } else {
+          method.addStatement("return $N[code - $L]", tableField, min);
+        }
+      } else {
+        int[] sortedCodes = new int[constantsByCode.size()];
+        List<CodeBlock> constants = new ArrayList<>();
+        for (Map.Entry<Integer, String> code : constantsByCode.entrySet()) {
+          sortedCodes[constants.size()] = code.getKey();
+          constants.add(CodeBlock.of("$N", code.getValue()));
+        }
+        FieldSpec codesField = FieldSpec.builder(int[].class, prefix + "_CODES",
+            Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer(CodeBlock.ofIntArray(sortedCodes))
+            .build();
+        FieldSpec constantsField = FieldSpec.builder(arrayType, prefix + "_CONSTANTS",
+            Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer("{$L}", CodeBlock.join(constants, ",$W"))
+            .build();
+        addField(codesField);
+        addField(constantsField);
+        method.addStatement("int index = $T.binarySearch($N, code)", Arrays.class, codesField)
+            .addStatement("return index >= 0 ? $N[index] : null", constantsField);
+      }
+      return addMethod(method.build());
+    }
+
+    /**
+     * Adds a public static method named {@code methodName} that returns the enum constant with a
+     * name, or null if no constant has that name. Unlike {@code valueOf()}, this doesn't throw for
+     * unknown names. Call this after adding the constants.
+     */
+    public Builder addEnumNameLookup(String methodName) {
+      Map<String, String> names = new LinkedHashMap<>();
+      for (String constant : enumConstants.keySet()) {
+        names.put(constant, constant);
+      }
+      return addEnumNameLookup(methodName, names);
+    }
+
+    /**
+     * Adds a public static method named {@code methodName} that returns the enum constant for a
+     * string, or null if no constant has that string. {@code names} maps the names of enum
+     * constants to their strings, like their names in a file format. The method returns null for a
+     * null string. The constant is found with a {@linkplain CodeBlock.Builder#addPerfectHashSwitch
+     * perfect hash switch}.
+     */
+    public Builder addEnumNameLookup(String methodName, Map<String, String> names) {
+      checkState(kind == Kind.ENUM, "%s is not enum", name);
+      checkArgument(names != null, "names == null");
+      Map<String, CodeBlock> cases = new LinkedHashMap<>();
+      for (Map.Entry<String, String> name : names.entrySet()) {
+        checkArgument(enumConstants.containsKey(name.getKey()), "%s is not a constant of %s",
+            name.getKey(), this.name);
+        checkArgument(name.getValue() != null, "no name for %s", name.getKey());
+        // Qualified, so a constant named like the parameter or the lookup's local isn't shadowed.
+        CodeBlock body = CodeBlock.of("return $T.$N;\n", enumType(), name.getKey());
+        checkArgument(cases.put(name.getValue(), body) == null,
+            "%s is the name of more than one constant", name.getValue());
+      }
+      return addMethod(MethodSpec.methodBuilder(methodName)
+          .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+          .returns(enumType())
+          .addParameter(String.class, "name")
+          .beginControlFlow("if (name == null)")
+          .addStatement("return null")
+          .endControlFlow()
+          .addCode(CodeBlock.builder()
+              .addPerfectHashSwitch("name", cases, CodeBlock.of("return null;\n"))
+              .build())
+          .build());
+    }
+
+    /** Returns a name for this enum that resolves within its own body. */
+    private ClassName enumType() {
+      return ClassName.get("", name);
+    }
+
     public Builder addFields(Iterable<FieldSpec> fieldSpecs) {
       checkArgument(fieldSpecs != null, "fieldSpecs == null");
       for (FieldSpec fieldSpec : fieldSpecs) {
@@ -626,6 +1426,55 @@ public final class TypeSpec {
       return this;
     }
 
+    /**
+     * Call this to split static initialization with more than {@code maxStatements} statements
+     * into private static helper methods. The JVM limits each method, including the static
+     * initializer, to 64 KiB of bytecode, and HotSpot won't compile methods over 8000 bytes.
+     *
+     * <p>The statements of the static blocks are grouped into methods named {@code staticInit0},
+     * {@code staticInit1}, etc., which are called in order from a single static block. Initializers
+     * of non-final static fields declared after the last final field with an initializer are moved
+     * too. Statements that assign blank final fields stay in the static block, and statements that
+     * share a local variable are kept in the same method.
+     *
+     * <p>An array literal from {@link CodeBlock#ofIntArray} or similar with more than {@code
+     * maxStatements} elements that initializes one of those fields, or a final field that isn't
+     * followed by another final field with an initializer, is created in the static block and
+     * filled in slices of {@code maxStatements} elements, one helper per slice. Larger array
+     * literals elsewhere are left alone; use {@link TypeSpec#oversizedMethodWarnings} to find them.
+     * Splitting doesn't help with the class's 65535 constant pool entries, which large ints and all
+     * longs, floats and doubles take up; use {@link CodeBlock#ofPackedByteArray} for those tables.
+     */
+    public Builder splitStaticInitializer(int maxStatements) {
+      if (kind != Kind.CLASS && kind != Kind.ENUM) {
+        throw new UnsupportedOperationException(kind + " can't split static initializers");
+      }
+      checkState(anonymousTypeArguments == null, "forbidden on anonymous types.");
+      checkArgument(maxStatements > 0, "maxStatements <= 0: %s", maxStatements);
+      this.maxStaticInitializerStatements = maxStatements;
+      return this;
+    }
+
+    /**
+     * Call this to split methods with more than {@code maxStatements} statements into private
+     * helper methods. Large methods aren't JIT compiled, and the JVM limits each method to 64 KiB
+     * of bytecode.
+     *
+     * <p>Leading top-level statements of the method are grouped into helpers named like {@code
+     * writeToPart0}, {@code writeToPart1}, etc. Helpers take the same parameters and are static if
+     * the method is. Statements are only moved where no local variable is used on both sides of the
+     * cut, and the first statement that contains {@code return} stays in the method along with the
+     * statements after it. Constructors and methods that assign their parameters aren't split.
+     */
+    public Builder splitLargeMethods(int maxStatements) {
+      if (kind == Kind.ANNOTATION) {
+        throw new UnsupportedOperationException(kind + " can't split methods");
+      }
+      checkArgument(maxStatements > 0, "maxStatements <= 0: %s", maxStatements);
+      this.maxMethodStatements = maxStatements;
+      return this;
+    }
+
     public Builder addMethods(Iterable<MethodSpec> methodSpecs) {
       checkArgument(methodSpecs != null, "methodSpecs == null");
       for (MethodSpec methodSpec : methodSpecs) {
@@ -639,6 +1488,22 @@ public final class TypeSpec {
       return this;
     }
 
+    /**
+     * Adds a method that is computed by {@code supplier} each time this type is emitted. The method
+     * isn't retained, so a type with many large methods only needs one of them in memory at a time.
+     * {@link JavaFile} emits its type twice, once to collect imports, so the supplier must return
+     * the same method on every call.
+     *
+     * <p>Lazy methods are emitted after the type's other methods, in the order they were added.
+     * They aren't validated by {@link #build}, and aren't considered by {@link #splitLargeMethods}
+     * or bytecode size estimates.
+     */
+    public Builder addLazyMethod(Supplier<MethodSpec> supplier) {
+      checkArgument(supplier != null, "supplier == null");
+      lazyMethodSpecs.add(supplier);
+      return this;
+    }
+
     public Builder addTypes(Iterable<TypeSpec> typeSpecs) {
       checkArgument(typeSpecs != null, "typeSpecs == null");
       for (TypeSpec typeSpec : typeSpecs) {
@@ -754,6 +1619,21 @@ public final class TypeSpec {
     }
 
     public TypeSpec build() {
+      return build(false);
+    }
+
+    /**
+     * Returns a type like {@link #build}, but hands this builder's member lists to the type instead
+     * of copying them. Use this for large types that are built once: this builder can't be changed
+     * or built again afterwards. Enum constants and modifiers are still copied, but they're frozen
+     * in this builder too.
+     */
+    public TypeSpec freeze() {
+      return build(true);
+    }
+
+    private TypeSpec build(boolean transfer) {
+      checkState(!frozen, "this builder was frozen");
       for (AnnotationSpec annotationSpec : annotations) {
         checkNotNull(annotationSpec, "annotationSpec == null");
       }
@@ -785,39 +1665,11 @@ public final class TypeSpec {
       }
 
       for (FieldSpec fieldSpec : fieldSpecs) {
-        if (kind == Kind.INTERFACE || kind == Kind.ANNOTATION) {
-          requireExactlyOneOf(fieldSpec.modifiers, Modifier.PUBLIC, Modifier.PRIVATE);
-          Set<Modifier> check = EnumSet.of(Modifier.STATIC, Modifier.FINAL);
-          checkState(fieldSpec.modifiers.containsAll(check), "%s %s.%s requires modifiers %s",
-              kind, name, fieldSpec.name, check);
-        }
+        checkField(kind, name, fieldSpec);
       }
 
       for (MethodSpec methodSpec : methodSpecs) {
-        if (kind == Kind.INTERFACE) {
-          requireExactlyOneOf(methodSpec.modifiers, Modifier.PUBLIC, Modifier.PRIVATE);
-          if (methodSpec.modifiers.contains(Modifier.PRIVATE)) {
-            checkState(!methodSpec.hasModifier(Modifier.DEFAULT),
-                "%s %s.%s cannot be private and default", kind, name, methodSpec.name);
-            checkState(!methodSpec.hasModifier(Modifier.ABSTRACT),
-                "%s %s.%s cannot be private and abstract", kind, name, methodSpec.name);
-          } else {
-            requireExactlyOneOf(methodSpec.modifiers, Modifier.ABSTRACT, Modifier.STATIC,
-                Modifier.DEFAULT);
-          }
-        } else if (kind == Kind.ANNOTATION) {
-          checkState(methodSpec.modifiers.equals(kind.implicitMethodModifiers),
-              "%s %s.%s requires modifiers %s",
-              kind, name, methodSpec.name, kind.implicitMethodModifiers);
-        }
-        if (kind != Kind.ANNOTATION) {
-          checkState(methodSpec.defaultValue == null, "%s %s.%s cannot have a default value",
-              kind, name, methodSpec.name);
-        }
-        if (kind != Kind.INTERFACE) {
-          checkState(!methodSpec.hasModifier(Modifier.DEFAULT), "%s %s.%s cannot be default",
-              kind, name, methodSpec.name);
-        }
+        checkMethod(kind, name, methodSpec);
       }
 
       for (TypeSpec typeSpec : typeSpecs) {
@@ -826,18 +1678,27 @@ public final class TypeSpec {
             kind.implicitTypeModifiers);
       }
 
-      boolean isAbstract = modifiers.contains(Modifier.ABSTRACT) || kind != Kind.CLASS;
-      for (MethodSpec methodSpec : methodSpecs) {
-        checkArgument(isAbstract || !methodSpec.hasModifier(Modifier.ABSTRACT),
-            "non-abstract type %s cannot declare abstract method %s", name, methodSpec.name);
-      }
+      checkAbstractMethods(kind, name, modifiers, methodSpecs);
 
       boolean superclassIsObject = superclass.equals(ClassName.OBJECT);
       int interestingSupertypeCount = (superclassIsObject ? 0 : 1) + superinterfaces.size();
       checkArgument(anonymousTypeArguments == null || interestingSupertypeCount <= 1,
           "anonymous type has too many supertypes");
 
-      return new TypeSpec(this);
+      TypeSpec typeSpec = new TypeSpec(this, transfer);
+      if (transfer) {
+        ((FreezableList<Modifier>) modifiers).freeze();
+        ((FreezableList<Element>) originatingElements).freeze();
+        alwaysQualified.freeze();
+      }
+      frozen = transfer;
+      if (maxStaticInitializerStatements > 0) {
+        typeSpec = typeSpec.splitStaticInitializer(maxStaticInitializerStatements);
+      }
+      if (maxMethodStatements > 0) {
+        typeSpec = typeSpec.splitLargeMethods(maxMethodStatements);
+      }
+      return typeSpec;
     }
   }
 }
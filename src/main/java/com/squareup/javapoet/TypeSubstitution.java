@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.Modifier;
+
+/**
+ * Replaces type variables with types throughout specs and code blocks. Where a type variable is
+ * used as a type argument or bound, primitive types are replaced with their boxed types.
+ */
+final class TypeSubstitution {
+  private final Map<String, TypeName> bindings;
+
+  TypeSubstitution(Map<String, TypeName> bindings) {
+    this.bindings = bindings;
+  }
+
+  /** Returns a substitution that doesn't replace type variables hidden by {@code declared}. */
+  TypeSubstitution shadow(List<TypeVariableName> declared) {
+    Map<String, TypeName> result = null;
+    for (TypeVariableName typeVariable : declared) {
+      if (!bindings.containsKey(typeVariable.name)) continue;
+      if (result == null) result = new LinkedHashMap<>(bindings);
+      result.remove(typeVariable.name);
+    }
+    return result != null ? new TypeSubstitution(result) : this;
+  }
+
+  TypeName type(TypeName type) {
+    return substitute(type, false);
+  }
+
+  /**
+   * Returns {@code type} with bound type variables replaced. If {@code reference} is true the
+   * result is used where only reference types are allowed, so primitives are boxed.
+   */
+  private TypeName substitute(TypeName type, boolean reference) {
+    if (type instanceof TypeVariableName) {
+      TypeName binding = bindings.get(((TypeVariableName) type).name);
+      if (binding == null) return type;
+      if (reference) binding = binding.box();
+      return type.isAnnotated() ? binding.annotated(type.annotations) : binding;
+    }
+
+    if (type instanceof ParameterizedTypeName) {
+      ParameterizedTypeName parameterized = (ParameterizedTypeName) type;
+      ParameterizedTypeName enclosingType = parameterized.enclosingType != null
+          ? (ParameterizedTypeName) substitute(parameterized.enclosingType, true)
+          : null;
+      boolean changed = enclosingType != parameterized.enclosingType;
+      List<TypeName> typeArguments = new ArrayList<>();
+      for (TypeName typeArgument : parameterized.typeArguments) {
+        TypeName substituted = substitute(typeArgument, true);
+        changed |= substituted != typeArgument;
+        typeArguments.add(substituted);
+      }
+      if (!changed) return type;
+      TypeName result = new ParameterizedTypeName(enclosingType,
+          parameterized.rawType.withoutAnnotations(), typeArguments);
+      return type.isAnnotated() ? result.annotated(type.annotations) : result;
+    }
+
+    if (type instanceof WildcardTypeName) {
+      WildcardTypeName wildcard = (WildcardTypeName) type;
+      TypeName result;
+      if (!wildcard.lowerBounds.isEmpty()) {
+        TypeName lowerBound = wildcard.lowerBounds.get(0);
+        TypeName substituted = substitute(lowerBound, true);
+        if (substituted == lowerBound) return type;
+        result = WildcardTypeName.supertypeOf(substituted);
+      } else {
+        TypeName upperBound = wildcard.upperBounds.get(0);
+        TypeName substituted = substitute(upperBound, true);
+        if (substituted == upperBound) return type;
+        result = WildcardTypeName.subtypeOf(substituted);
+      }
+      return type.isAnnotated() ? result.annotated(type.annotations) : result;
+    }
+
+    if (type instanceof ArrayTypeName) {
+      // Arrays of primitives are fine: T[] becomes int[].
+      TypeName componentType = ((ArrayTypeName) type).componentType;
+      TypeName substituted = substitute(componentType, false);
+      if (substituted == componentType) return type;
+      TypeName result = ArrayTypeName.of(substituted);
+      return type.isAnnotated() ? result.annotated(type.annotations) : result;
+    }
+
+    return type;
+  }
+
+  /** Returns the declaration {@code typeVariable} with its bounds substituted. */
+  TypeVariableName declaration(TypeVariableName typeVariable) {
+    boolean changed = false;
+    TypeName[] bounds = new TypeName[typeVariable.bounds.size()];
+    for (int i = 0; i < bounds.length; i++) {
+      bounds[i] = substitute(typeVariable.bounds.get(i), true);
+      changed |= bounds[i] != typeVariable.bounds.get(i);
+    }
+    if (!changed) return typeVariable;
+    TypeVariableName result = TypeVariableName.get(typeVariable.name, bounds);
+    return typeVariable.isAnnotated() ? result.annotated(typeVariable.annotations) : result;
+  }
+
+  CodeBlock code(CodeBlock code) {
+    if (bindings.isEmpty() || code.isEmpty()) return code;
+    CodeBlock.Builder result = CodeBlock.builder();
+    // Types between angle brackets are type arguments, like $T in "new HashMap<$T, $T>()".
+    int angleBrackets = 0;
+    int a = 0;
+    for (int p = 0; p < code.formatParts.size(); p++) {
+      String part = code.formatParts.get(p);
+      result.formatParts.add(part);
+      switch (part) {
+        case "$T":
+          // A type followed by a member like $T.valueOf() must be a class, but $T.class is fine.
+          String next = p + 1 < code.formatParts.size() ? code.formatParts.get(p + 1) : "";
+          boolean reference = angleBrackets > 0
+              || (next.startsWith(".") && !next.startsWith(".class"));
+          result.args.add(substitute((TypeName) code.args.get(a++), reference));
+          break;
+        case "$L":
+          result.args.add(literal(code.args.get(a++)));
+          break;
+        case "$N":
+        case "$S":
+          result.args.add(code.args.get(a++));
+          break;
+        default:
+          for (int i = 0; i < part.length(); i++) {
+            char c = part.charAt(i);
+            if (c == '<') {
+              angleBrackets++;
+            } else if (c == '>' && angleBrackets > 0) {
+              angleBrackets--;
+            } else if (c == ';' || c == '{' || c == '}') {
+              angleBrackets = 0;
+            }
+          }
+          break;
+      }
+    }
+    return result.build();
+  }
+
+  private Object literal(Object literal) {
+    if (literal instanceof CodeBlock) return code((CodeBlock) literal);
+    if (literal instanceof LazyCodeBlock) {
+      LazyCodeBlock lazyCodeBlock = (LazyCodeBlock) literal;
+      return new LazyCodeBlock(() -> code(lazyCodeBlock.get()));
+    }
+    if (literal instanceof TypeSpec) return ((TypeSpec) literal).substitute(this);
+    if (literal instanceof AnnotationSpec) return annotation((AnnotationSpec) literal);
+    if (literal instanceof FieldSpec) return field((FieldSpec) literal);
+    if (literal instanceof MethodSpec) return method((MethodSpec) literal);
+    if (literal instanceof ParameterSpec) return parameter((ParameterSpec) literal);
+    return literal;
+  }
+
+  AnnotationSpec annotation(AnnotationSpec annotation) {
+    AnnotationSpec.Builder builder = annotation.toBuilder();
+    for (Map.Entry<String, List<CodeBlock>> member : builder.members.entrySet()) {
+      List<CodeBlock> values = new ArrayList<>();
+      for (CodeBlock value : member.getValue()) {
+        values.add(code(value));
+      }
+      member.setValue(values);
+    }
+    return builder.build();
+  }
+
+  List<AnnotationSpec> annotations(List<AnnotationSpec> annotations) {
+    List<AnnotationSpec> result = new ArrayList<>();
+    for (AnnotationSpec annotation : annotations) {
+      result.add(annotation(annotation));
+    }
+    return result;
+  }
+
+  FieldSpec field(FieldSpec field) {
+    FieldSpec.Builder builder = FieldSpec.builder(type(field.type), field.name)
+        .addJavadoc(code(field.javadoc))
+        .addAnnotations(annotations(field.annotations))
+        .addModifiers(field.modifiers.toArray(new Modifier[0]));
+    if (!field.initializer.isEmpty()) builder.initializer(code(field.initializer));
+    return builder.build();
+  }
+
+  ParameterSpec parameter(ParameterSpec parameter) {
+    return ParameterSpec.builder(type(parameter.type), parameter.name)
+        .addJavadoc(code(parameter.javadoc))
+        .addAnnotations(annotations(parameter.annotations))
+        .addModifiers(parameter.modifiers)
+        .build();
+  }
+
+  MethodSpec method(MethodSpec method) {
+    // Type variables declared by the method hide the type's type variables.
+    TypeSubstitution substitution = shadow(method.typeVariables);
+    MethodSpec.Builder builder = method.isConstructor()
+        ? MethodSpec.constructorBuilder()
+        : MethodSpec.methodBuilder(method.name).returns(substitution.type(method.returnType));
+    builder.addJavadoc(substitution.code(method.javadoc))
+        .addAnnotations(substitution.annotations(method.annotations))
+        .addModifiers(method.modifiers)
+        .varargs(method.varargs)
+        .addCode(substitution.code(method.code));
+    for (TypeVariableName typeVariable : method.typeVariables) {
+      builder.addTypeVariable(substitution.declaration(typeVariable));
+    }
+    for (ParameterSpec parameter : method.parameters) {
+      builder.addParameter(substitution.parameter(parameter));
+    }
+    for (TypeName exception : method.exceptions) {
+      builder.addException(substitution.type(exception));
+    }
+    if (method.defaultValue != null) {
+      builder.defaultValue(substitution.code(method.defaultValue));
+    }
+    return builder.build();
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.squareup.javapoet;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -36,11 +38,14 @@ final class Util {
   private Util() {
   }
 
-  static <K, V> Map<K, List<V>> immutableMultimap(Map<K, List<V>> multimap) {
+  static <K, V> Map<K, List<V>> immutableMultimap(Map<K, List<V>> multimap, boolean transfer) {
     LinkedHashMap<K, List<V>> result = new LinkedHashMap<>();
     for (Map.Entry<K, List<V>> entry : multimap.entrySet()) {
       if (entry.getValue().isEmpty()) continue;
-      result.put(entry.getKey(), immutableList(entry.getValue()));
+      result.put(entry.getKey(), immutableList(entry.getValue(), transfer));
+    }
+    if (transfer && multimap instanceof FreezableMap) {
+      ((FreezableMap<K, List<V>>) multimap).freeze();
     }
     return Collections.unmodifiableMap(result);
   }
@@ -49,6 +54,25 @@ final class Util {
     return Collections.unmodifiableMap(new LinkedHashMap<>(map));
   }
 
+  /**
+   * Returns an immutable copy of {@code map}. If {@code transfer} is true and {@code map} is a
+   * {@link FreezableMap}, it's frozen and an unmodifiable view of it is returned instead.
+   */
+  static <K, V> Map<K, V> immutableMap(Map<K, V> map, boolean transfer) {
+    if (transfer && map instanceof FreezableMap) {
+      FreezableMap<K, V> freezableMap = (FreezableMap<K, V>) map;
+      freezableMap.freeze();
+      return freezableMap.view();
+    }
+    return immutableMap(map);
+  }
+
+  /**
+   * The maximum length of a string constant's modified UTF-8 encoding. The class file format allows
+   * 65535 bytes, but javac rejects string constants with 65535 or more characters.
+   */
+  static final int MAX_STRING_CONSTANT_LENGTH = 65534;
+
   static void checkArgument(boolean condition, String format, Object... args) {
     if (!condition) throw new IllegalArgumentException(String.format(format, args));
   }
@@ -62,19 +86,51 @@ final class Util {
     if (!condition) throw new IllegalStateException(String.format(format, args));
   }
 
+  /**
+   * Returns a handle to a field of the lookup class that caches data derived from an immutable
+   * spec, like its {@code toString()}. Specs are shared between threads without locking, so every
+   * such field follows the same scheme: read it with {@code getAcquire()}, and if it's null,
+   * compute the value and return {@link #publish publish(field, this, value)}. Threads that race
+   * may each compute the value, but they all return the first one published and see it fully
+   * constructed, even if it's a mutable collection.
+   */
+  static VarHandle lazyField(MethodHandles.Lookup lookup, String name, Class<?> type) {
+    try {
+      return lookup.findVarHandle(lookup.lookupClass(), name, type);
+    } catch (ReflectiveOperationException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Stores {@code value} in the {@link #lazyField lazy field} of {@code owner} unless another
+   * thread already did, and returns the stored value.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> T publish(VarHandle field, Object owner, T value) {
+    T witness = (T) field.compareAndExchange(owner, (Object) null, (Object) value);
+    return witness != null ? witness : value;
+  }
+
   static <T> List<T> immutableList(Collection<T> collection) {
     return Collections.unmodifiableList(new ArrayList<>(collection));
   }
 
-  static <T> Set<T> immutableSet(Collection<T> set) {
-    return Collections.unmodifiableSet(new LinkedHashSet<>(set));
+  /**
+   * Returns an immutable copy of {@code list}. If {@code transfer} is true and {@code list} is a
+   * {@link FreezableList}, it's frozen and an unmodifiable view of it is returned instead.
+   */
+  static <T> List<T> immutableList(List<T> list, boolean transfer) {
+    if (transfer && list instanceof FreezableList) {
+      FreezableList<T> freezableList = (FreezableList<T>) list;
+      freezableList.freeze();
+      return freezableList.view();
+    }
+    return immutableList(list);
   }
 
-  static <T> Set<T> union(Set<T> a, Set<T> b) {
-    Set<T> result = new LinkedHashSet<>();
-    result.addAll(a);
-    result.addAll(b);
-    return result;
+  static <T> Set<T> immutableSet(Collection<T> set) {
+    return Collections.unmodifiableSet(new LinkedHashSet<>(set));
   }
 
   static void requireExactlyOneOf(Set<Modifier> modifiers, Modifier... mutuallyExclusive) {
@@ -108,18 +164,7 @@ final class Util {
     result.append('"');
     for (int i = 0; i < value.length(); i++) {
       char c = value.charAt(i);
-      // trivial case: single quote must not be escaped
-      if (c == '\'') {
-        result.append("'");
-        continue;
-      }
-      // trivial case: double quotes must be escaped
-      if (c == '\"') {
-        result.append("\\\"");
-        continue;
-      }
-      // default case: just let character literal do its work
-      result.append(characterLiteralWithoutSingleQuotes(c));
+      appendEscaped(result, c);
       // need to append indent after linefeed?
       if (c == '\n' && i + 1 < value.length()) {
         result.append("\"\n").append(indent).append(indent).append("+ \"");
@@ -128,4 +173,65 @@ final class Util {
     result.append('"');
     return result.toString();
   }
+
+  /**
+   * Returns string literals that concatenate to {@code value}, each including wrapping double
+   * quotes. Each literal's modified UTF-8 encoding, which is how the class file stores string
+   * constants, is at most {@code maxConstantLength} bytes. Returns a single literal if {@code
+   * value} fits.
+   */
+  static List<String> stringLiteralsWithDoubleQuotes(
+      String value, String indent, int maxConstantLength) {
+    List<String> result = new ArrayList<>(1);
+    StringBuilder literal = new StringBuilder(Math.min(value.length(), maxConstantLength) + 2);
+    literal.append('"');
+    int constantLength = 0;
+    boolean pendingLinefeed = false;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      int length = modifiedUtf8Length(c);
+      // Don't split a surrogate pair across two constants.
+      int required = length;
+      if (Character.isHighSurrogate(c)
+          && i + 1 < value.length()
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        required += modifiedUtf8Length(value.charAt(i + 1));
+      }
+      if (constantLength + required > maxConstantLength) {
+        result.add(literal.append('"').toString());
+        literal.setLength(0);
+        literal.append('"');
+        constantLength = 0;
+      } else if (pendingLinefeed) {
+        literal.append("\"\n").append(indent).append(indent).append("+ \"");
+      }
+      appendEscaped(literal, c);
+      constantLength += length;
+      pendingLinefeed = c == '\n';
+    }
+    result.add(literal.append('"').toString());
+    return result;
+  }
+
+  private static void appendEscaped(StringBuilder out, char c) {
+    // trivial case: single quote must not be escaped
+    if (c == '\'') {
+      out.append("'");
+      return;
+    }
+    // trivial case: double quotes must be escaped
+    if (c == '\"') {
+      out.append("\\\"");
+      return;
+    }
+    // default case: just let character literal do its work
+    out.append(characterLiteralWithoutSingleQuotes(c));
+  }
+
+  /** Returns the number of bytes {@code c} takes in the class file's modified UTF-8 encoding. */
+  private static int modifiedUtf8Length(char c) {
+    if (c != 0 && c < 0x80) return 1;
+    if (c < 0x800) return 2;
+    return 3;
+  }
 }
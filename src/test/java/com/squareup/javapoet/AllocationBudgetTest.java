@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.lang.model.element.Modifier;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Pins the number of bytes allocated by emission hot paths. Each budget is the marginal cost of
+ * one more unit of work, measured as the difference between a fixture and one twice its size, so
+ * fixed costs like the writer itself cancel out.
+ *
+ * <p>How much the JIT can eliminate depends on what else ran in the same JVM, so the build runs
+ * this test alone in its own surefire execution. Each budget is about 1.2 times the cost measured
+ * there; a failure means something on the hot path started allocating more per element. Lower a
+ * budget when an optimization makes room under it.
+ */
+public final class AllocationBudgetTest {
+    private static final ClassName[] TYPES = {
+            ClassName.get("java.util", "List"),
+            ClassName.get("java.util", "Map"),
+            ClassName.get("java.util", "Date"),
+            ClassName.get("java.sql", "Date"),
+            ClassName.get("com.example", "Model"),
+            ClassName.get("com.example", "Model", "Builder"),
+    };
+
+    private static com.sun.management.ThreadMXBean threadMXBean;
+
+    @BeforeAll
+    public static void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean,
+                "thread allocation counters are unavailable");
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported(),
+                "thread allocation counters are unsupported");
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void bytesPerTypeReference() {
+        Map<String, ClassName> importedTypes = new LinkedHashMap<>();
+        importedTypes.put("List", TYPES[0]);
+        importedTypes.put("Date", TYPES[2]);
+        importedTypes.put("Model", TYPES[4]);
+        StringBuilder out = new StringBuilder(1 << 20);
+        double bytes = marginalBytes(1_000, count -> {
+            CodeBlock.Builder code = CodeBlock.builder();
+            for (int i = 0; i < count; i++) {
+                code.add("$T ", TYPES[i % TYPES.length]);
+            }
+            CodeBlock block = code.build();
+            return () -> {
+                out.setLength(0);
+                new CodeWriter(out, "  ", importedTypes, Collections.emptySet(),
+                        Collections.emptySet()).emit(block);
+            };
+        });
+        assertBudget("$T", bytes, 350); // Measured 291.
+    }
+
+    @Test
+    public void bytesPerStringLiteralChar() {
+        StringBuilder out = new StringBuilder(1 << 20);
+        double bytes = marginalBytes(10_000, count -> {
+            StringBuilder literal = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                literal.append(i % 10 == 0 ? '"' : 'a');
+            }
+            CodeBlock block = CodeBlock.of("$S", literal.toString());
+            return () -> {
+                out.setLength(0);
+                new CodeWriter(out).emit(block);
+            };
+        });
+        assertBudget("$S char", bytes, 31); // Measured 25.7.
+    }
+
+    @Test
+    public void bytesPerAddStatement() {
+        double bytes = marginalBytes(1_000, count -> () -> {
+            CodeBlock.Builder code = CodeBlock.builder();
+            for (int i = 0; i < count; i++) {
+                code.addStatement("$T $N = $L", TYPES[i % TYPES.length], "value", i);
+            }
+            code.build();
+        });
+        assertBudget("addStatement", bytes, 1_120); // Measured 926.
+    }
+
+    @Test
+    public void bytesPerJavaFileMethod() {
+        StringBuilder out = new StringBuilder(1 << 20);
+        double bytes = marginalBytes(100, count -> {
+            TypeSpec.Builder type = TypeSpec.classBuilder("Generated");
+            for (int i = 0; i < count; i++) {
+                type.addMethod(MethodSpec.methodBuilder("method" + i)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(TYPES[i % TYPES.length])
+                        .addParameter(TYPES[(i + 1) % TYPES.length], "input")
+                        .addStatement("return $T.of(input)", TYPES[(i + 2) % TYPES.length])
+                        .build());
+            }
+            JavaFile javaFile = JavaFile.builder("com.example.generated", type.build()).build();
+            return () -> {
+                out.setLength(0);
+                javaFile.writeTo(out);
+            };
+        });
+        assertBudget("JavaFile method", bytes, 8_200); // Measured 6,685 to 6,753.
+    }
+
+    private static void assertBudget(String what, double bytes, double budget) {
+        assertThat(bytes)
+                .describedAs("bytes allocated per %s", what)
+                .isLessThanOrEqualTo(budget);
+    }
+
+    interface Fixture {
+        Operation create(int count);
+    }
+
+    interface Operation {
+        void run() throws IOException;
+    }
+
+    /**
+     * Returns the bytes allocated by each of the extra {@code count} units of work in a fixture of
+     * size {@code 2 * count}, compared to one of size {@code count}.
+     */
+    private static double marginalBytes(int count, Fixture fixture) {
+        Operation small = fixture.create(count);
+        Operation large = fixture.create(2 * count);
+        return (allocatedBytes(large) - allocatedBytes(small)) / (double) count;
+    }
+
+    /** Returns the fewest bytes allocated by any one of several runs of {@code operation}. */
+    private static long allocatedBytes(Operation operation) {
+        long result = Long.MAX_VALUE;
+        try {
+            // Warm up so the JIT can remove allocations the interpreter would make.
+            for (int i = 0; i < 200; i++) {
+                operation.run();
+            }
+            for (int i = 0; i < 10; i++) {
+                long before = threadMXBean.getCurrentThreadAllocatedBytes();
+                operation.run();
+                result = Math.min(result, threadMXBean.getCurrentThreadAllocatedBytes() - before);
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return result;
+    }
+}
@@ -411,6 +411,31 @@ final class AnnotationSpecTest {
         assertThat(builder.build().toString()).isEqualTo("@java.lang.SuppressWarnings(\"Bar\")");
     }
 
+    @Test
+    void freezeLocksMembers() {
+        AnnotationSpec.Builder builder = AnnotationSpec.builder(SuppressWarnings.class)
+                .addMember("value", "$S", "Foo");
+        AnnotationSpec frozen = builder.freeze();
+        try {
+            builder.addMember("value", "$S", "Bar");
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("this builder was frozen");
+        }
+        try {
+            builder.members.put("other", Arrays.asList(CodeBlock.of("$S", "Bar")));
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("this builder was frozen");
+        }
+        try {
+            frozen.members.get("value").clear();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        assertThat(frozen.toString()).isEqualTo("@java.lang.SuppressWarnings(\"Foo\")");
+    }
+
     static String toString(TypeSpec typeSpec) {
         return JavaFile.builder("com.squareup.tacos", typeSpec).build().toString();
     }
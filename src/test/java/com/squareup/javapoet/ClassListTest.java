@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.lang.model.element.Modifier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks {@code META-INF/javapoet.classlist} against the JavaPoet classes that a fresh JVM loads to
+ * render its first file. When this fails, replace the list's class names with the loaded ones.
+ */
+public final class ClassListTest {
+    /** Anonymous classes are numbered by the compiler, so their names aren't stable. */
+    private static final Pattern ANONYMOUS = Pattern.compile(".*\\$\\d+(\\$.*)?");
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void listsTheClassesLoadedToRenderAFile() throws Exception {
+        List<String> listed = new ArrayList<>();
+        for (String line : readLines("/META-INF/javapoet.classlist")) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            listed.add(line);
+        }
+        assertThat(listed).doesNotHaveDuplicates();
+        assertThat(listed).isSorted();
+
+        Path dump = tmp.resolve("loaded.classlist");
+        String classPath = codeSource(JavaFile.class) + File.pathSeparator
+                + codeSource(FirstFile.class);
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        Process process = new ProcessBuilder(java.toString(), "-Xshare:off",
+                "-XX:DumpLoadedClassList=" + dump, "-cp", classPath, FirstFile.class.getName())
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertThat(process.waitFor()).withFailMessage("%s", output).isEqualTo(0);
+
+        List<String> loaded = new ArrayList<>();
+        for (String line : Files.readAllLines(dump, StandardCharsets.UTF_8)) {
+            // Lines look like "com/squareup/javapoet/JavaFile id: 1234" on recent JDKs.
+            String name = line.split(" ", 2)[0];
+            if (!name.startsWith("com/squareup/javapoet/")
+                    || name.startsWith("com/squareup/javapoet/ClassListTest")
+                    || ANONYMOUS.matcher(name).matches()) {
+                continue;
+            }
+            loaded.add(name);
+        }
+        Collections.sort(loaded);
+        assertThat(listed)
+                .withFailMessage("javapoet.classlist is stale. The loaded classes are:%n%s",
+                        String.join("\n", loaded))
+                .isEqualTo(loaded);
+    }
+
+    /** Writes a small file, like a generator's first use of JavaPoet. */
+    public static final class FirstFile {
+        private FirstFile() {
+        }
+
+        public static void main(String[] args) throws IOException {
+            // Generators write files, which loads more than toString() does.
+            StringBuilder source = new StringBuilder();
+            JavaFile.builder("com.example.generated",
+                    TypeSpec.classBuilder("Greeter")
+                            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                            .addField(ParameterizedTypeName.get(List.class, String.class), "names",
+                                    Modifier.PRIVATE, Modifier.FINAL)
+                            .addMethod(MethodSpec.methodBuilder("greet")
+                                    .addModifiers(Modifier.PUBLIC)
+                                    .returns(String.class)
+                                    .addParameter(int.class, "index")
+                                    .addStatement("return $S + $N.get(index)", "Hello, ", "names")
+                                    .build())
+                            .build())
+                    .build()
+                    .writeTo(source);
+            if (source.length() == 0) throw new AssertionError();
+        }
+    }
+
+    private static Path codeSource(Class<?> type) throws URISyntaxException {
+        return Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    private List<String> readLines(String resource) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (InputStream in = getClass().getResourceAsStream(resource)) {
+            assertThat(in).isNotNull();
+            BufferedReader reader =
+                    new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            for (String line; (line = reader.readLine()) != null; ) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
@@ -215,6 +215,18 @@ final class CodeBlockTest {
         }
     }
 
+    @Test
+    void namedArgumentRequiresWordCharacters() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", Integer.class);
+        try {
+            CodeBlock.builder().addNamed("$a-b:T", map).build();
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessage("unknown format $a at 1 in '$a-b:T'");
+        }
+    }
+
     @Test
     void indexTooHigh() {
         try {
@@ -378,4 +390,210 @@ final class CodeBlockTest {
 
         assertThat(block.toString()).isEmpty();
     }
+
+    @Test
+    void trailingWrappingSpaceIsFlushed() {
+        assertThat(CodeBlock.of("a$Wb").toString()).isEqualTo("a b");
+        assertThat(CodeBlock.of("a$Zb").toString()).isEqualTo("ab");
+    }
+
+    @Test
+    void primitiveArrays() {
+        assertThat(CodeBlock.ofIntArray().toString()).isEqualTo("{}");
+        assertThat(CodeBlock.ofIntArray(1, -2, Integer.MIN_VALUE).toString())
+                .isEqualTo("{1, -2, -2147483648}");
+        assertThat(CodeBlock.ofLongArray(1L, Long.MAX_VALUE).toString())
+                .isEqualTo("{1L, 9223372036854775807L}");
+        assertThat(CodeBlock.ofShortArray((short) 300, (short) -1).toString())
+                .isEqualTo("{300, -1}");
+        assertThat(CodeBlock.ofByteArray((byte) 0x7f, (byte) 0x80).toString())
+                .isEqualTo("{127, -128}");
+        assertThat(CodeBlock.ofCharArray('a', '\'', '\n', '\ud800').toString())
+                .isEqualTo("{'a', '\\'', '\\n', '\\ud800'}");
+        assertThat(CodeBlock.ofFloatArray(1.5f, Float.NaN, Float.NEGATIVE_INFINITY).toString())
+                .isEqualTo("{1.5f, 0.0f / 0.0f, -1.0f / 0.0f}");
+        assertThat(CodeBlock.ofDoubleArray(1e100, Double.POSITIVE_INFINITY).toString())
+                .isEqualTo("{1.0E100, 1.0 / 0.0}");
+        assertThat(CodeBlock.ofBooleanArray(true, false).toString())
+                .isEqualTo("{true, false}");
+    }
+
+    @Test
+    void primitiveArrayIsCopied() {
+        int[] values = {1, 2, 3};
+        CodeBlock block = CodeBlock.ofIntArray(values);
+        values[0] = 4;
+        assertThat(block.toString()).isEqualTo("{1, 2, 3}");
+    }
+
+    @Test
+    void primitiveArrayWraps() {
+        int[] values = new int[40];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 1000;
+        }
+        FieldSpec field = FieldSpec.builder(int[].class, "TABLE")
+                .initializer(CodeBlock.ofIntArray(values))
+                .build();
+        assertThat(field.toString()).isEqualTo(""
+                + "int[] TABLE = {0, 1000, 2000, 3000, 4000, 5000, 6000, 7000, 8000, 9000, 10000, "
+                + "11000, 12000, 13000,\n"
+                + "    14000, 15000, 16000, 17000, 18000, 19000, 20000, 21000, 22000, 23000, 24000, "
+                + "25000, 26000,\n"
+                + "    27000, 28000, 29000, 30000, 31000, 32000, 33000, 34000, 35000, 36000, 37000, "
+                + "38000, 39000};\n");
+    }
+
+    @Test
+    void packedByteArray() {
+        assertThat(CodeBlock.ofPackedByteArray().toString())
+                .isEqualTo("java.util.Base64.getDecoder().decode(\"\")");
+        assertThat(CodeBlock.ofPackedByteArray((byte) 1, (byte) 2, (byte) 3, (byte) 0xff).toString())
+                .isEqualTo("java.util.Base64.getDecoder().decode(\"AQID/w==\")");
+    }
+
+    @Test
+    void packedByteArraySplitsLongConstants() {
+        String packed = CodeBlock.ofPackedByteArray(new byte[81_000]).toString();
+        assertThat(packed).startsWith(
+                "java.util.Base64.getDecoder().decode(java.lang.String.join(\"\",\n"
+                        + "    \"AAAA");
+        assertThat(packed.split("\n")).hasSize(3);
+        assertThat(packed).endsWith("AAAA\"))");
+    }
+
+    @Test
+    void perfectHashSwitch() {
+        Map<String, CodeBlock> cases = new LinkedHashMap<>();
+        cases.put("Aa", CodeBlock.of("return 1;\n"));
+        cases.put("BB", CodeBlock.of("return 2;\n"));
+        cases.put("taco", CodeBlock.of("return 3;\n"));
+        CodeBlock block = CodeBlock.builder()
+                .addPerfectHashSwitch("name", cases, CodeBlock.of("return 0;\n"))
+                .build();
+        assertThat(block.toString()).isEqualTo(""
+                + "int nameIndex = -1;\n"
+                + "switch ((int) (((name.hashCode() ^ \"  \".charAt(name.hashCode() * 0x9e3779b9 >>> 31) * 0x85ebca6b) * 0xc2b2ae35 & 0xffffffffL) * 3 >>> 32)) {\n"
+                + "  case 0:\n"
+                + "    if (name.equals(\"taco\")) {\n"
+                + "      nameIndex = 2;\n"
+                + "    }\n"
+                + "    break;\n"
+                + "  case 2:\n"
+                + "    if (name.equals(\"Aa\")) {\n"
+                + "      nameIndex = 0;\n"
+                + "    } else if (name.equals(\"BB\")) {\n"
+                + "      nameIndex = 1;\n"
+                + "    }\n"
+                + "    break;\n"
+                + "}\n"
+                + "switch (nameIndex) {\n"
+                + "  case 0:\n"
+                + "    return 1;\n"
+                + "  case 1:\n"
+                + "    return 2;\n"
+                + "  case 2:\n"
+                + "    return 3;\n"
+                + "  default:\n"
+                + "    return 0;\n"
+                + "}\n");
+    }
+
+    @Test
+    void perfectHashSwitchWithoutCases() {
+        CodeBlock block = CodeBlock.builder()
+                .addPerfectHashSwitch("name", new LinkedHashMap<>(), CodeBlock.of("return 0;\n"))
+                .build();
+        assertThat(block.toString()).isEqualTo(""
+                + "switch (name.hashCode()) {\n"
+                + "  default:\n"
+                + "    return 0;\n"
+                + "}\n");
+        assertThat(CodeBlock.builder()
+                .addPerfectHashSwitch("name", new LinkedHashMap<>(), CodeBlock.of(""))
+                .build()
+                .isEmpty()).isTrue();
+    }
+
+    @Test
+    void perfectHashSwitchWithoutCasesKeepsBreakInSwitch() {
+        CodeBlock block = CodeBlock.builder()
+                .beginControlFlow("for ($T name : names)", String.class)
+                .addPerfectHashSwitch("name", new LinkedHashMap<>(),
+                        CodeBlock.builder().addStatement("count++").addStatement("break").build())
+                .addStatement("count++")
+                .endControlFlow()
+                .build();
+        assertThat(block.toString()).isEqualTo(""
+                + "for (java.lang.String name : names) {\n"
+                + "  switch (name.hashCode()) {\n"
+                + "    default:\n"
+                + "      count++;\n"
+                + "      break;\n"
+                + "  }\n"
+                + "  count++;\n"
+                + "}\n");
+    }
+
+    @Test
+    void perfectHashSwitchRequiresName() {
+        try {
+            CodeBlock.builder().addPerfectHashSwitch("name()", new LinkedHashMap<>(),
+                    CodeBlock.of(""));
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessage("not a valid name: name()");
+        }
+    }
+
+    @Test
+    void lazyCodeBlockIsComputedWhenEmitted() {
+        int[] calls = new int[1];
+        CodeBlock lazy = CodeBlock.lazy(() -> {
+            calls[0]++;
+            return CodeBlock.builder().addStatement("$T.out.println($S)", System.class, "hi").build();
+        });
+        assertThat(calls[0]).isEqualTo(0);
+        CodeBlock block = CodeBlock.builder().add(lazy).addStatement("return").build();
+        assertThat(block.toString()).isEqualTo(""
+                + "java.lang.System.out.println(\"hi\");\n"
+                + "return;\n");
+        assertThat(block.toString()).isEqualTo(""
+                + "java.lang.System.out.println(\"hi\");\n"
+                + "return;\n");
+        assertThat(calls[0]).isEqualTo(2);
+    }
+
+    @Test
+    void lazyCodeBlockSupplierReturnsNull() {
+        try {
+            CodeBlock.lazy(() -> null).toString();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("lazy code block supplier returned null");
+        }
+    }
+
+    @Test
+    void freezeHandsOverContents() {
+        CodeBlock.Builder builder = CodeBlock.builder().addStatement("int a = $L", 1);
+        CodeBlock frozen = builder.freeze();
+        assertThat(frozen.toString()).isEqualTo("int a = 1;\n");
+        assertThat(frozen.formatParts)
+                .isSameAs(((FreezableList<String>) builder.formatParts).view());
+        assertThat(frozen.args).isSameAs(((FreezableList<Object>) builder.args).view());
+        try {
+            builder.addStatement("int b = $L", 2);
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("this builder was frozen");
+        }
+        try {
+            builder.build();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("this builder was frozen");
+        }
+        assertThat(frozen.toString()).isEqualTo("int a = 1;\n");
+    }
 }
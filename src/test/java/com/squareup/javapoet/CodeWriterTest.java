@@ -3,8 +3,12 @@ package com.squareup.javapoet;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import javax.lang.model.element.Modifier;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
 
 class CodeWriterTest {
 
@@ -20,4 +24,92 @@ class CodeWriterTest {
                         " * B\n" +
                         " */\n");
     }
-}
\ No newline at end of file
+
+    @Test
+    void everyLineBreakIsEmittedAsNewline() throws IOException {
+        StringBuilder out = new StringBuilder();
+        new CodeWriter(out).emit(CodeBlock.of("a\r\nb\rc\u2028d\n\ne"));
+        assertThat(out).hasToString("a\nb\nc\nd\n\ne");
+    }
+
+    @Test
+    void modifiersInStandardOrder() throws IOException {
+        StringBuilder out = new StringBuilder();
+        new CodeWriter(out).emitModifiers(
+                new LinkedHashSet<>(Arrays.asList(Modifier.FINAL, Modifier.STATIC, Modifier.PUBLIC)),
+                ModifierSet.of(Modifier.STATIC));
+        assertThat(out).hasToString("public final ");
+    }
+
+    @Test
+    void nonSealedModifier() throws IOException {
+        StringBuilder out = new StringBuilder();
+        new CodeWriter(out).emitModifiers(ModifierSet.of(Modifier.NON_SEALED, Modifier.PUBLIC));
+        assertThat(out).hasToString("public non-sealed ");
+    }
+
+    @Test
+    void modifierSetIsOrderedAndImmutable() {
+        ModifierSet modifiers = ModifierSet.of(
+                Arrays.asList(Modifier.FINAL, Modifier.PRIVATE, Modifier.STATIC));
+        assertThat(modifiers).containsExactly(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL);
+        assertThat(modifiers).isEqualTo(
+                new LinkedHashSet<>(Arrays.asList(Modifier.STATIC, Modifier.FINAL, Modifier.PRIVATE)));
+        assertThat(modifiers).doesNotContain(Modifier.PUBLIC);
+        try {
+            modifiers.add(Modifier.PUBLIC);
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    void modifierKeywordsSurviveCacheCollisions() {
+        // More combinations than the cache has slots, twice, so some of them share a slot.
+        for (int pass = 0; pass < 2; pass++) {
+            for (Modifier first : Modifier.values()) {
+                for (Modifier second : Modifier.values()) {
+                    ModifierSet modifiers = ModifierSet.of(first, second);
+                    StringBuilder expected = new StringBuilder();
+                    modifiers.forEach(modifier -> expected.append(modifier).append(' '));
+                    assertThat(ModifierSet.keywords(ModifierSet.mask(modifiers)))
+                            .isEqualTo(expected.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    void resetDiscardsState() throws IOException {
+        StringBuilder out = new StringBuilder();
+        CodeWriter codeWriter = new CodeWriter(out);
+        codeWriter.pushPackage("com.example").indent();
+        codeWriter.emit("$T$Wbuffered", ClassName.get("java.util", "List"));
+        codeWriter.reset();
+        out.setLength(0);
+
+        codeWriter.pushPackage("com.example");
+        codeWriter.emit("a\n$T\n", ClassName.get("java.util", "Map"));
+        codeWriter.close();
+        assertThat(out).hasToString("a\njava.util.Map\n");
+        assertThat(codeWriter.suggestedImports()).containsOnlyKeys("Map");
+    }
+
+    @Test
+    void renderIsReentrant() {
+        Object nested = new Object() {
+            @Override public String toString() {
+                return CodeBlock.of("$S", "inner").toString();
+            }
+        };
+        CodeBlock outer = CodeBlock.of("a($L)", nested);
+        assertThat(outer.toString()).isEqualTo("a(\"inner\")");
+        assertThat(outer.toString()).isEqualTo("a(\"inner\")");
+
+        char[] chars = new char[20_000];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        assertThat(CodeBlock.of("$L", large).toString()).isEqualTo(large);
+        assertThat(outer.toString()).isEqualTo("a(\"inner\")");
+    }
+}
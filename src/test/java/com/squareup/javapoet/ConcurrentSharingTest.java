@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.Modifier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stress tests for sharing immutable specs between threads. Each round releases every thread at
+ * once to read the same spec, so the lazily cached data they race to compute is published while
+ * other threads read it.
+ */
+public final class ConcurrentSharingTest {
+    private static final int THREADS = 4;
+    private static final int ROUNDS = 2_000;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void typeNameToStringIsPublishedOnce() throws Exception {
+        for (int i = 0; i < ROUNDS; i++) {
+            TypeName type = ParameterizedTypeName.get(ClassName.get("java.util", "Map"),
+                    ClassName.get("com.example", "Key" + i), ClassName.get("com.example", "Value"));
+            List<String> results = race(type::toString);
+            assertThat(results.get(0))
+                    .isEqualTo("java.util.Map<com.example.Key" + i + ", com.example.Value>");
+            assertAllSame(results);
+        }
+    }
+
+    @Test
+    public void simpleNamesArePublishedOnce() throws Exception {
+        for (int i = 0; i < ROUNDS; i++) {
+            ClassName className = ClassName.get("com.example", "Outer" + i, "Middle", "Inner");
+            List<List<String>> results = race(className::simpleNames);
+            assertThat(results.get(0)).containsExactly("Outer" + i, "Middle", "Inner");
+            assertAllSame(results);
+        }
+    }
+
+    @Test
+    public void sharedSpecsRenderIdentically() throws Exception {
+        for (int i = 0; i < ROUNDS / 10; i++) {
+            JavaFile javaFile = javaFile(i);
+            TypeSpec typeSpec = javaFile.typeSpec;
+            String expectedFile = javaFile(i).toString();
+            String expectedType = javaFile(i).typeSpec.toString();
+            List<List<Object>> results = race(() -> Arrays.asList(
+                    javaFile.toString(), typeSpec.toString(), typeSpec.hashCode(),
+                    typeSpec.methodSpecs.get(0).toString(), typeSpec.fieldSpecs.get(0).toString()));
+            for (List<Object> result : results) {
+                assertThat(result).containsExactly(expectedFile, expectedType,
+                        expectedType.hashCode(), typeSpec.methodSpecs.get(0).toString(),
+                        typeSpec.fieldSpecs.get(0).toString());
+            }
+        }
+    }
+
+    private static JavaFile javaFile(int i) {
+        ClassName model = ClassName.get("com.example", "Model" + i);
+        TypeName map = ParameterizedTypeName.get(ClassName.get("java.util", "Map"),
+                ClassName.get(String.class), model.nestedClass("Entry"));
+        TypeSpec registry = TypeSpec.classBuilder("Registry" + i)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addField(FieldSpec.builder(map, "entries", Modifier.PRIVATE, Modifier.FINAL)
+                        .initializer("new $T<>()", ClassName.get("java.util", "HashMap"))
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("get")
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(model.nestedClass("Entry"))
+                        .addParameter(String.class, "key")
+                        .addStatement("return $N.get($N)", "entries", "key")
+                        .build())
+                .build();
+        return JavaFile.builder("com.example", registry).build();
+    }
+
+    /** Runs {@code task} on every thread at once, and returns each thread's result. */
+    private <T> List<T> race(Callable<T> task) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                barrier.await();
+                return task.call();
+            }));
+        }
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    private static void assertAllSame(List<?> results) {
+        for (Object result : results) {
+            assertThat(result).isSameAs(results.get(0));
+        }
+    }
+}
@@ -20,10 +20,19 @@ import org.junit.jupiter.api.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.Callable;
+import java.util.function.ToIntFunction;
 import javax.lang.model.element.Modifier;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
@@ -119,4 +128,304 @@ public class FileReadingTest extends AbstractTemporaryFolder {
                 .newInstance();
         assertThat(Callable.class.getMethod("call").invoke(test)).isEqualTo(value);
     }
+
+    @Test
+    public void compileJavaFileWithLongString() throws Exception {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; value.length() < 100_000; i++) {
+            value.append("Pi\u00f1ata \ud83c\udf2e #").append(i).append('\n');
+        }
+        TypeSpec type = TypeSpec.classBuilder("Test")
+                .addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(ParameterizedTypeName.get(Callable.class, String.class))
+                .addMethod(MethodSpec.methodBuilder("call")
+                        .returns(String.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addStatement("return $S", value)
+                        .build())
+                .build();
+        JavaFile javaFile = JavaFile.builder("foo", type)
+                .splitLongStrings(true)
+                .build();
+        Callable<?> test = compileAndLoad(javaFile, Callable.class);
+        assertThat(test.call()).isEqualTo(value.toString());
+    }
+
+    @Test
+    public void compileJavaFileWithStringsAtConstantLimit() throws Exception {
+        // javac rejects string constants of 65535 or more chars, one short of the class file limit.
+        for (int length : new int[] {65_534, 65_535}) {
+            char[] chars = new char[length];
+            Arrays.fill(chars, 'a');
+            String value = new String(chars);
+            TypeSpec type = TypeSpec.classBuilder("Test")
+                    .addModifiers(Modifier.PUBLIC)
+                    .addSuperinterface(ParameterizedTypeName.get(Callable.class, String.class))
+                    .addMethod(MethodSpec.methodBuilder("call")
+                            .returns(String.class)
+                            .addModifiers(Modifier.PUBLIC)
+                            .addStatement("return $S", value)
+                            .build())
+                    .build();
+            JavaFile javaFile = JavaFile.builder("foo", type)
+                    .splitLongStrings(true)
+                    .build();
+            assertThat(javaFile.toString().contains("String.join"))
+                    .isEqualTo(length > 65_534);
+            Callable<?> test = compileAndLoad(javaFile, Callable.class);
+            assertThat(test.call()).isEqualTo(value);
+        }
+    }
+
+    @Test
+    public void compileJavaFileWithPackedByteArray() throws Exception {
+        byte[] value = new byte[300_000];
+        new Random(0).nextBytes(value);
+        TypeSpec type = TypeSpec.classBuilder("Test")
+                .addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(ParameterizedTypeName.get(Callable.class, byte[].class))
+                .addField(FieldSpec.builder(byte[].class, "DATA")
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer(CodeBlock.ofPackedByteArray(value))
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("call")
+                        .returns(byte[].class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addStatement("return DATA")
+                        .build())
+                .build();
+        JavaFile javaFile = JavaFile.builder("foo", type).build();
+        Callable<?> test = compileAndLoad(javaFile, Callable.class);
+        assertThat(test.call()).isEqualTo(value);
+    }
+
+    @Test
+    public void compileJavaFileWithPerfectHashSwitch() throws Exception {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 1_500; i++) {
+            keys.add("key" + i);
+        }
+        keys.add("Aa"); // "Aa" and "BB" have the same hash code.
+        keys.add("BB");
+        Map<String, CodeBlock> cases = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            cases.put(keys.get(i), CodeBlock.of("return $L;\n", i));
+        }
+        TypeSpec type = TypeSpec.classBuilder("Test")
+                .addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(ParameterizedTypeName.get(ToIntFunction.class, String.class))
+                .addMethod(MethodSpec.methodBuilder("applyAsInt")
+                        .returns(int.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(String.class, "key")
+                        .addCode(CodeBlock.builder()
+                                .addPerfectHashSwitch("key", cases, CodeBlock.of("return -1;\n"))
+                                .build())
+                        .build())
+                .build();
+        JavaFile javaFile = JavaFile.builder("foo", type).build();
+        @SuppressWarnings("unchecked")
+        ToIntFunction<String> test = compileAndLoad(javaFile, ToIntFunction.class);
+        for (int i = 0; i < keys.size(); i++) {
+            assertThat(test.applyAsInt(keys.get(i))).isEqualTo(i);
+        }
+        assertThat(test.applyAsInt("key1500")).isEqualTo(-1);
+        assertThat(test.applyAsInt("")).isEqualTo(-1);
+    }
+
+    @Test
+    public void compileJavaFileWithEmptyPerfectHashSwitch() throws Exception {
+        // The default case's break leaves the switch, not the loop around it.
+        TypeSpec type = TypeSpec.classBuilder("Test")
+                .addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(ParameterizedTypeName.get(ToIntFunction.class, String[].class))
+                .addMethod(MethodSpec.methodBuilder("applyAsInt")
+                        .returns(int.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(String[].class, "keys")
+                        .addStatement("int count = 0")
+                        .beginControlFlow("for ($T key : keys)", String.class)
+                        .addCode(CodeBlock.builder()
+                                .addPerfectHashSwitch("key", new LinkedHashMap<>(),
+                                        CodeBlock.of("break;\n"))
+                                .build())
+                        .addStatement("count++")
+                        .endControlFlow()
+                        .addStatement("return count")
+                        .build())
+                .build();
+        JavaFile javaFile = JavaFile.builder("foo", type).build();
+        @SuppressWarnings("unchecked")
+        ToIntFunction<String[]> test = compileAndLoad(javaFile, ToIntFunction.class);
+        assertThat(test.applyAsInt(new String[] {"a", "b", "c"})).isEqualTo(3);
+    }
+
+    @Test
+    public void compileJavaFileWithEnumNameLookup() throws Exception {
+        // Constants named like the lookup's parameter and local variable.
+        TypeSpec type = TypeSpec.enumBuilder("Test")
+                .addModifiers(Modifier.PUBLIC)
+                .addEnumConstant("name")
+                .addEnumConstant("nameIndex")
+                .addEnumConstant("other")
+                .addEnumNameLookup("fromName")
+                .build();
+        Class<?> test = compile(JavaFile.builder("foo", type).build());
+        Method fromName = test.getMethod("fromName", String.class);
+        for (Object constant : test.getEnumConstants()) {
+            assertThat(fromName.invoke(null, constant.toString())).isSameAs(constant);
+        }
+        assertThat(fromName.invoke(null, "missing")).isNull();
+        assertThat(fromName.invoke(null, (Object) null)).isNull();
+    }
+
+    @Test
+    public void compileJavaFileWithSplitStaticInitializer() throws Exception {
+        // Without splitting, this static initializer is well over the 64 KiB method limit.
+        CodeBlock.Builder registrations = CodeBlock.builder();
+        for (int i = 0; i < 10_000; i++) {
+            registrations.addStatement("REGISTRY.put($S, $L)", "key" + i, i);
+        }
+        TypeName registryType = ParameterizedTypeName.get(Map.class, String.class, Integer.class);
+        TypeSpec type = TypeSpec.classBuilder("Test")
+                .addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(Callable.class),
+                        registryType))
+                .addField(FieldSpec.builder(registryType, "REGISTRY")
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new $T<>()", HashMap.class)
+                        .build())
+                .addStaticBlock(registrations.build())
+                .addMethod(MethodSpec.methodBuilder("call")
+                        .returns(registryType)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addStatement("return REGISTRY")
+                        .build())
+                .splitStaticInitializer(1_000)
+                .build();
+        JavaFile javaFile = JavaFile.builder("foo", type).build();
+        Callable<?> test = compileAndLoad(javaFile, Callable.class);
+        Map<?, ?> registry = (Map<?, ?>) test.call();
+        assertThat(registry).hasSize(10_000);
+        assertThat(registry.get("key9999")).isEqualTo(9999);
+    }
+
+    @Test
+    public void compileJavaFileWithSplitStaticInitializerAssigningInTry() throws Exception {
+        // Blank finals can only be assigned in the static block, even inside a try.
+        CodeBlock.Builder staticBlock = CodeBlock.builder();
+        for (int i = 0; i < 6; i++) {
+            staticBlock.addStatement("$T.out.println($L)", System.class, i);
+        }
+        staticBlock.beginControlFlow("try")
+                .addStatement("X = $T.parseInt($S)", Integer.class, "1")
+                .nextControlFlow("catch ($T e)", NumberFormatException.class)
+                .addStatement("throw new $T(e)", Error.class)
+                .endControlFlow();
+        TypeSpec type = TypeSpec.classBuilder("Test")
+                .addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(ParameterizedTypeName.get(Callable.class, Integer.class))
+                .addField(int.class, "X", Modifier.STATIC, Modifier.FINAL)
+                .addStaticBlock(staticBlock.build())
+                .addMethod(MethodSpec.methodBuilder("call")
+                        .returns(Integer.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addStatement("return X")
+                        .build())
+                .splitStaticInitializer(2)
+                .build();
+        JavaFile javaFile = JavaFile.builder("foo", type).build();
+        assertThat(javaFile.toString()).contains("    try {\n      X = Integer.parseInt(\"1\");\n");
+        Callable<?> test = compileAndLoad(javaFile, Callable.class);
+        assertThat(test.call()).isEqualTo(1);
+    }
+
+    @Test
+    public void compileJavaFileWithSplitStaticInitializerFillingLargeArray() throws Exception {
+        // Without splitting, the array initializer alone is well over the 64 KiB method limit. The
+        // values fit in a short so they don't each need an entry in the class's constant pool.
+        int[] values = new int[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (short) (i * 31);
+        }
+        TypeSpec type = TypeSpec.classBuilder("Test")
+                .addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(ParameterizedTypeName.get(Callable.class, int[].class))
+                .addField(FieldSpec.builder(int[].class, "TABLE")
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer(CodeBlock.ofIntArray(values))
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("call")
+                        .returns(int[].class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addStatement("return TABLE")
+                        .build())
+                .splitStaticInitializer(1_000)
+                .build();
+        JavaFile javaFile = JavaFile.builder("foo", type).build();
+        Callable<?> test = compileAndLoad(javaFile, Callable.class);
+        assertThat((int[]) test.call()).isEqualTo(values);
+    }
+
+    @Test
+    public void compileJavaFileWithSplitMethod() throws Exception {
+        // Without splitting, this method is well over the 64 KiB method limit.
+        TypeName listType = ParameterizedTypeName.get(List.class, Integer.class);
+        MethodSpec.Builder fill = MethodSpec.methodBuilder("fill")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(listType, "values")
+                .addParameter(int.class, "seed");
+        for (int i = 0; i < 10_000; i++) {
+            fill.addStatement("values.add(seed + $L)", i);
+        }
+        TypeSpec type = TypeSpec.classBuilder("Test")
+                .addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(Callable.class),
+                        listType))
+                .addMethod(fill.build())
+                .addMethod(MethodSpec.methodBuilder("call")
+                        .returns(listType)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addStatement("$T values = new $T<>()", listType, ArrayList.class)
+                        .addStatement("fill(values, 5)")
+                        .addStatement("return values")
+                        .build())
+                .splitLargeMethods(1_000)
+                .build();
+        JavaFile javaFile = JavaFile.builder("foo", type).build();
+        Callable<?> test = compileAndLoad(javaFile, Callable.class);
+        List<?> values = (List<?>) test.call();
+        assertThat(values).hasSize(10_000);
+        assertThat(values.get(9_999)).isEqualTo(10_004);
+    }
+
+    /** Compiles {@code javaFile} and returns a new instance of its top-level type. */
+    private <T> T compileAndLoad(JavaFile javaFile, Class<T> type) throws Exception {
+        return compile(javaFile)
+                .asSubclass(type)
+                .getDeclaredConstructor()
+                .newInstance();
+    }
+
+    /** Compiles {@code javaFile} and loads its top-level type. */
+    private Class<?> compile(JavaFile javaFile) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnosticCollector = new DiagnosticCollector<>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnosticCollector,
+                Locale.getDefault(), UTF_8);
+        fileManager.setLocation(StandardLocation.CLASS_OUTPUT,
+                Collections.singleton(newFolder()));
+        CompilationTask task = compiler.getTask(null,
+                fileManager,
+                diagnosticCollector,
+                Collections.emptySet(),
+                Collections.emptySet(),
+                Collections.singleton(javaFile.toJavaFileObject()));
+
+        assertThat(task.call()).isTrue();
+        assertThat(diagnosticCollector.getDiagnostics()).isEmpty();
+
+        ClassLoader loader = fileManager.getClassLoader(StandardLocation.CLASS_OUTPUT);
+        return Class.forName(javaFile.packageName + "." + javaFile.typeSpec.name, true, loader);
+    }
 }
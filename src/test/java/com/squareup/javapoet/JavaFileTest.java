@@ -1055,4 +1055,53 @@ final class JavaFileTest {
                 + "  }\n"
                 + "}\n");
     }
+
+    @Test
+    public void emissionListenerReceivesStatsOfEachWrite() throws Exception {
+        JavaFile javaFile = JavaFile.builder("com.example",
+                        TypeSpec.classBuilder("Taco")
+                                .addMethod(MethodSpec.methodBuilder("fill")
+                                        .returns(ClassName.get("java.util", "List"))
+                                        .addStatement("return $T.of($L)", ClassName.get("com.other", "List"),
+                                                CodeBlock.of("$Lfirst,$Wsecond", "a".repeat(90)))
+                                        .build())
+                                .addType(TypeSpec.classBuilder("Shell").build())
+                                .addField(ClassName.get("com.example", "Taco", "Shell"), "shell")
+                                .build())
+                .build();
+        List<EmissionStats> emitted = new ArrayList<>();
+        EmissionMetrics metrics = new EmissionMetrics();
+        JavaFile listened = javaFile.toBuilder()
+                .emissionListener((file, stats) -> {
+                    assertThat(file.typeSpec.name).isEqualTo("Taco");
+                    emitted.add(stats);
+                    metrics.fileEmitted(file, stats);
+                })
+                .build();
+
+        // toString() is used by equals() and hashCode() so it doesn't report.
+        String source = listened.toString();
+        assertThat(emitted).isEmpty();
+
+        StringBuilder out = new StringBuilder();
+        listened.writeTo(out);
+        listened.writeTo(new StringBuilder());
+        assertThat(out.toString()).isEqualTo(source);
+        assertThat(emitted).hasSize(2);
+        EmissionStats stats = emitted.get(0);
+        assertThat(stats.charsWritten).isEqualTo(source.length());
+        assertThat(stats.linesWritten).isEqualTo(source.chars().filter(c -> c == '\n').count());
+        assertThat(stats.lineWraps).isEqualTo(1);
+        // java.util.List and Taco.Shell resolve to short names; com.other.List doesn't.
+        assertThat(stats.typeLookups).isEqualTo(3);
+        assertThat(stats.typeLookupHits).isEqualTo(2);
+        assertThat(stats.importPassNanos).isPositive();
+        assertThat(stats.emitPassNanos).isPositive();
+
+        assertThat(metrics.files()).isEqualTo(2);
+        assertThat(metrics.charsWritten()).isEqualTo(2L * source.length());
+        assertThat(metrics.typeLookups()).isEqualTo(6);
+        assertThat(metrics.typeLookupHits()).isEqualTo(4);
+        assertThat(metrics.lineWraps()).isEqualTo(2);
+    }
 }
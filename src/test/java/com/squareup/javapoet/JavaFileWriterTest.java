@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.Modifier;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+final class JavaFileWriterTest {
+    private final ClassName list = ClassName.get(List.class);
+    private final ClassName arrayList = ClassName.get(ArrayList.class);
+    private final TypeName listOfString = ParameterizedTypeName.get(list, ClassName.get(String.class));
+
+    @Test
+    void matchesJavaFile() throws IOException {
+        FieldSpec names = FieldSpec.builder(listOfString, "names", Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("new $T<>()", arrayList)
+                .build();
+        MethodSpec add = MethodSpec.methodBuilder("add")
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(String.class, "name")
+                .beginControlFlow("if (name.isEmpty())")
+                .addStatement("throw new $T($S)", IllegalArgumentException.class, "empty")
+                .nextControlFlow("else")
+                .addStatement("names.add(name)")
+                .endControlFlow()
+                .build();
+        TypeSpec color = TypeSpec.enumBuilder("Color")
+                .addEnumConstant("RED")
+                .addEnumConstant("GREEN")
+                .addField(int.class, "rgb", Modifier.PRIVATE)
+                .build();
+        TypeSpec type = TypeSpec.classBuilder("Names")
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addField(names)
+                .addMethod(add)
+                .addType(color)
+                .build();
+        String expected = JavaFile.builder("com.example", type).build().toString();
+
+        StringBuilder out = new StringBuilder();
+        try (JavaFileWriter writer = JavaFileWriter.builder(out, "com.example")
+                .addImport(IllegalArgumentException.class)
+                .addImport(String.class)
+                .addImport(ArrayList.class)
+                .addImport(List.class)
+                .build()) {
+            writer.beginType(TypeSpec.classBuilder("Names")
+                    .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                    .build());
+            writer.addField(names);
+            writer.beginMethod(MethodSpec.methodBuilder("add")
+                    .addModifiers(Modifier.PUBLIC)
+                    .addParameter(String.class, "name")
+                    .build());
+            writer.beginControlFlow("if (name.isEmpty())");
+            writer.addStatement("throw new $T($S)", IllegalArgumentException.class, "empty");
+            writer.nextControlFlow("else");
+            writer.addStatement("names.add(name)");
+            writer.endControlFlow();
+            writer.endMethod();
+            writer.beginType(TypeSpec.enumBuilder("Color").addEnumConstant("RED").build());
+            writer.addEnumConstant("GREEN");
+            writer.addField(FieldSpec.builder(int.class, "rgb", Modifier.PRIVATE).build());
+            writer.endType();
+            writer.endType();
+        }
+        assertThat(out.toString()).isEqualTo(expected);
+    }
+
+    @Test
+    void enumWithOnlyConstants() throws IOException {
+        TypeSpec roshambo = TypeSpec.enumBuilder("Roshambo")
+                .addEnumConstant("ROCK")
+                .addEnumConstant("PAPER")
+                .build();
+        String expected = JavaFile.builder("com.example", roshambo).build().toString();
+
+        StringBuilder out = new StringBuilder();
+        try (JavaFileWriter writer = JavaFileWriter.builder(out, "com.example").build()) {
+            writer.beginType(TypeSpec.enumBuilder("Roshambo").addEnumConstant("ROCK").build());
+            writer.addEnumConstant("PAPER");
+            writer.endType();
+        }
+        assertThat(out.toString()).isEqualTo(expected);
+    }
+
+    @Test
+    void typesThatArentImportedAreQualified() throws IOException {
+        StringBuilder out = new StringBuilder();
+        try (JavaFileWriter writer = JavaFileWriter.builder(out, "com.example")
+                .addFileComment("Generated.")
+                .addImport(List.class)
+                .build()) {
+            writer.beginType(TypeSpec.classBuilder("Taco").build());
+            writer.beginMethod(MethodSpec.methodBuilder("toppings")
+                    .returns(listOfString)
+                    .build());
+            writer.addStatement("$T result = new $T<>()", listOfString, arrayList);
+            writer.addStatement("result.add($T.toString(1))", ClassName.get("com.example", "Cheese"));
+            writer.addStatement("return result");
+            writer.endMethod();
+            writer.endType();
+        }
+        assertThat(out.toString()).isEqualTo(""
+                + "// Generated.\n"
+                + "package com.example;\n"
+                + "\n"
+                + "import java.util.List;\n"
+                + "\n"
+                + "class Taco {\n"
+                + "  List<java.lang.String> toppings() {\n"
+                + "    List<java.lang.String> result = new java.util.ArrayList<>();\n"
+                + "    result.add(Cheese.toString(1));\n"
+                + "    return result;\n"
+                + "  }\n"
+                + "}\n");
+    }
+
+    @Test
+    void stateErrors() throws IOException {
+        JavaFileWriter writer = JavaFileWriter.builder(new StringBuilder(), "com.example").build();
+        try {
+            writer.addStatement("return");
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("no method is open");
+        }
+        try {
+            writer.addField(FieldSpec.builder(int.class, "a").build());
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("no type is open");
+        }
+
+        writer.beginType(TypeSpec.enumBuilder("Roshambo").addEnumConstant("ROCK").build());
+        writer.addField(FieldSpec.builder(int.class, "a").build());
+        try {
+            writer.addEnumConstant("PAPER");
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("enum constants must be added before other members");
+        }
+
+        writer.beginMethod(MethodSpec.methodBuilder("run").build());
+        try {
+            writer.endType();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("method run is open");
+        }
+        writer.endMethod();
+
+        try {
+            writer.close();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("type Roshambo is open");
+        }
+        writer.endType();
+        try {
+            writer.beginType(TypeSpec.classBuilder("Another").build());
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("a file has only one top-level type");
+        }
+        writer.close();
+    }
+
+    @Test
+    void membersMustBeAddedToWriter() throws IOException {
+        JavaFileWriter writer = JavaFileWriter.builder(new StringBuilder(), "com.example").build();
+        try {
+            writer.beginType(TypeSpec.classBuilder("Taco")
+                    .addMethod(MethodSpec.methodBuilder("eat").build())
+                    .build());
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessage("Taco has members; add them to this writer instead");
+        }
+        writer.beginType(TypeSpec.classBuilder("Taco").build());
+        try {
+            writer.beginMethod(MethodSpec.methodBuilder("eat").addStatement("return").build());
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessage("eat has code; add it to this writer instead");
+        }
+    }
+
+    @Test
+    void importsWithSameSimpleName() {
+        try {
+            JavaFileWriter.builder(new StringBuilder(), "com.example")
+                    .addImport(List.class)
+                    .addImport(ClassName.get("java.awt", "List"));
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessage("java.util.List and java.awt.List have the same simple name");
+        }
+    }
+
+    @Test
+    void nestedTypeCantShadowSamePackageTypeAlreadyWritten() throws IOException {
+        JavaFileWriter writer = JavaFileWriter.builder(new StringBuilder(), "com.example").build();
+        writer.beginType(TypeSpec.classBuilder("Outer").build());
+        writer.addField(FieldSpec.builder(ClassName.get("com.example", "Foo"), "top").build());
+        try {
+            writer.addType(TypeSpec.classBuilder("Foo").build());
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessage(
+                    "Foo clashes with a type in the same package that was already written");
+        }
+        try {
+            writer.beginType(TypeSpec.classBuilder("Foo").build());
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessage(
+                    "Foo clashes with a type in the same package that was already written");
+        }
+    }
+
+    @Test
+    void samePackageTypeShadowedByNestedTypeIsQualified() throws IOException {
+        StringBuilder out = new StringBuilder();
+        JavaFileWriter writer = JavaFileWriter.builder(out, "com.example").build();
+        writer.beginType(TypeSpec.classBuilder("Outer").build());
+        writer.addType(TypeSpec.classBuilder("Foo").build());
+        writer.addField(FieldSpec.builder(ClassName.get("com.example", "Foo"), "top").build());
+        writer.addField(FieldSpec.builder(ClassName.get("com.example", "Outer", "Foo"), "nested")
+                .build());
+        writer.endType();
+        writer.close();
+        assertThat(out.toString()).isEqualTo(""
+                + "package com.example;\n"
+                + "\n"
+                + "class Outer {\n"
+                + "  class Foo {\n"
+                + "  }\n"
+                + "\n"
+                + "  com.example.Foo top;\n"
+                + "\n"
+                + "  Outer.Foo nested;\n"
+                + "}\n");
+    }
+}
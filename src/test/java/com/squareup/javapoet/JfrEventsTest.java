@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class JfrEventsTest {
+    @TempDir
+    Path tmp;
+
+    private final JavaFile javaFile = JavaFile.builder("com.example",
+                    TypeSpec.classBuilder("Taco")
+                            .addField(List.class, "fillings")
+                            .build())
+            .build();
+
+    @Test
+    public void eventsAreRecordedWhenEnabled() throws Exception {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("javapoet.ImportResolution");
+            recording.enable("javapoet.FileRender");
+            recording.enable("javapoet.FileWrite");
+            recording.start();
+            javaFile.writeTo(tmp);
+            recording.stop();
+            events = javaPoetEvents(recording);
+        }
+
+        assertThat(events).extracting(event -> event.getEventType().getName()).containsExactly(
+                "javapoet.ImportResolution", "javapoet.FileRender", "javapoet.FileWrite");
+        for (RecordedEvent event : events) {
+            assertThat(event.getString("packageName")).isEqualTo("com.example");
+            assertThat(event.getString("typeName")).isEqualTo("Taco");
+        }
+        assertThat(events.get(0).getInt("importCount")).isEqualTo(1);
+        assertThat(events.get(1).getInt("importCount")).isEqualTo(1);
+        assertThat(events.get(1).getLong("characters")).isEqualTo(javaFile.toString().length());
+        Path written = tmp.resolve("com/example/Taco.java");
+        assertThat(events.get(2).getString("destination")).isEqualTo(written.toUri().toString());
+        assertThat(events.get(2).getLong("bytes")).isEqualTo(javaFile.toString().length());
+    }
+
+    @Test
+    public void toStringIsNotRecorded() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable("javapoet.ImportResolution");
+            recording.enable("javapoet.FileRender");
+            recording.enable("javapoet.FileWrite");
+            recording.start();
+            assertThat(javaFile.toString()).contains("class Taco");
+            assertThat(javaFile.equals(javaFile.toBuilder().build())).isTrue();
+            javaFile.hashCode();
+            recording.stop();
+            assertThat(javaPoetEvents(recording)).isEmpty();
+        }
+    }
+
+    @Test
+    public void eventsAreDisabledByDefault() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.start();
+            javaFile.writeTo(tmp);
+            recording.stop();
+            assertThat(javaPoetEvents(recording)).isEmpty();
+        }
+    }
+
+    private List<RecordedEvent> javaPoetEvents(Recording recording) throws Exception {
+        Path dump = tmp.resolve("recording.jfr");
+        recording.dump(dump);
+        return RecordingFile.readAllEvents(dump).stream()
+                .filter(event -> event.getEventType().getName().startsWith("javapoet."))
+                .sorted((a, b) -> a.getEndTime().compareTo(b.getEndTime()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import javax.lang.model.element.Modifier;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Links a runtime image holding JavaPoet and a generator module that uses it, then runs the
+ * generator from the image. {@code JlinkMain} in the benchmarks compares the image's size and
+ * startup time with the full JDK's.
+ */
+public final class JlinkImageTest {
+    private static final String EXPECTED_OUTPUT = ""
+            + "package com.example;\n"
+            + "\n"
+            + "class Hello {\n"
+            + "}\n";
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void generatorRunsFromLinkedImage() throws Exception {
+        Path javaHome = Paths.get(System.getProperty("java.home"));
+        Path jlink = javaHome.resolve("bin").resolve(executable("jlink"));
+        assumeTrue(Files.isExecutable(jlink), "jlink is unavailable");
+        Path javapoet = codeSource();
+        assumeTrue(Files.exists(javapoet.resolve("module-info.class")),
+                "JavaPoet isn't running from its compiled module");
+
+        Path generatorClasses = compileGenerator(javapoet);
+        Path image = tmp.resolve("image");
+        // Stripping debug information would triple the time to link, and the image is discarded.
+        run(jlink.toString(),
+                "--module-path", javapoet + File.pathSeparator + generatorClasses,
+                "--add-modules", "generator",
+                "--output", image.toString());
+
+        Path imageJava = image.resolve("bin").resolve(executable("java"));
+        assertThat(run(imageJava.toString(), "-m", "generator/generator.Main"))
+                .isEqualTo(EXPECTED_OUTPUT);
+    }
+
+    /** Writes and compiles a module whose main class prints a generated file. */
+    private Path compileGenerator(Path javapoet) throws IOException {
+        Path sources = tmp.resolve("generator-src");
+        Path classes = tmp.resolve("generator-classes");
+        Files.createDirectories(sources);
+        Path moduleInfo = sources.resolve("module-info.java");
+        Files.write(moduleInfo, Arrays.asList(
+                "module generator {",
+                "  requires com.squareup.javapoet;",
+                "}"), StandardCharsets.UTF_8);
+        TypeSpec main = TypeSpec.classBuilder("Main")
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(MethodSpec.methodBuilder("main")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .addParameter(String[].class, "args")
+                        .addStatement("$T.out.print($T.builder($S, $T.classBuilder($S).build())"
+                                        + ".build())", System.class, JavaFile.class, "com.example",
+                                TypeSpec.class, "Hello")
+                        .build())
+                .build();
+        JavaFile.builder("generator", main).build().writeTo(sources);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null, "javac is unavailable");
+        int status = compiler.run(null, null, null,
+                "--module-path", javapoet.toString(),
+                "-d", classes.toString(),
+                moduleInfo.toString(),
+                sources.resolve("generator").resolve("Main.java").toString());
+        assertThat(status).isEqualTo(0);
+        return classes;
+    }
+
+    /** Returns the directory or jar this test loaded JavaPoet from. */
+    private static Path codeSource() throws URISyntaxException {
+        return Paths.get(JavaFile.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    /** Runs {@code command} and returns its output, failing if it exits with an error. */
+    private static String run(String... command) throws Exception {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertThat(process.waitFor())
+                .withFailMessage("%s failed:%n%s", command[0], output)
+                .isEqualTo(0);
+        return output;
+    }
+
+    private static String executable(String name) {
+        return System.getProperty("os.name").startsWith("Windows") ? name + ".exe" : name;
+    }
+}
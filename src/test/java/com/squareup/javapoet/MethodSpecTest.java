@@ -535,8 +535,117 @@ public final class MethodSpecTest {
                 "}\n");
     }
 
+    @Test
+    public void estimatedBytecodeSize() {
+        MethodSpec.Builder calls = MethodSpec.methodBuilder("calls")
+                .addParameter(ParameterizedTypeName.get(List.class, String.class), "list");
+        for (int i = 0; i < 100; i++) {
+            calls.addStatement("list.add($S)", "s" + i);
+        }
+        // javac emits 901 bytes.
+        assertThat(calls.build().estimatedBytecodeSize()).isBetween(450, 1800);
+
+        MethodSpec.Builder loops = MethodSpec.methodBuilder("loops")
+                .returns(int.class)
+                .addParameter(int[].class, "xs")
+                .addStatement("int total = 0");
+        for (int i = 0; i < 20; i++) {
+            loops.beginControlFlow("for (int i = 0; i < xs.length; i++)")
+                    .beginControlFlow("if (xs[i] > $L)", i)
+                    .addStatement("total += xs[i] * $L", i)
+                    .nextControlFlow("else")
+                    .addStatement("total--")
+                    .endControlFlow()
+                    .endControlFlow();
+        }
+        loops.addStatement("return total");
+        // javac emits 731 bytes.
+        assertThat(loops.build().estimatedBytecodeSize()).isBetween(365, 1462);
+
+        MethodSpec.Builder objects = MethodSpec.methodBuilder("objects")
+                .returns(Object.class)
+                .addStatement("$T<$T, $T> map = new $T<>()",
+                        Map.class, String.class, Integer.class, HashMap.class);
+        for (int i = 0; i < 100; i++) {
+            objects.addStatement("map.put($S, $L)", "k" + i, i * 1000);
+        }
+        objects.addStatement("return map");
+        // javac emits 1594 bytes.
+        assertThat(objects.build().estimatedBytecodeSize()).isBetween(797, 3188);
+
+        MethodSpec.Builder arrays = MethodSpec.methodBuilder("arrays")
+                .returns(int[].class)
+                .addStatement("return new int[] $L", CodeBlock.ofIntArray(new int[200]));
+        // javac emits 1072 bytes.
+        assertThat(arrays.build().estimatedBytecodeSize()).isBetween(536, 2144);
+    }
+
+    @Test
+    public void estimatedBytecodeSizeWithoutBody() {
+        MethodSpec methodSpec = MethodSpec.methodBuilder("foo")
+                .addModifiers(Modifier.ABSTRACT)
+                .build();
+        assertThat(methodSpec.estimatedBytecodeSize()).isEqualTo(0);
+    }
+
     private static CodeBlock named(String format, Map<String, ?> args) {
         return CodeBlock.builder().addNamed(format, args).build();
     }
 
+    @Test
+    void freezeHandsOverCode() {
+        MethodSpec.Builder builder = MethodSpec.methodBuilder("eat")
+                .addParameter(int.class, "bites")
+                .addStatement("$T.out.println(bites)", System.class);
+        MethodSpec built = builder.build();
+        MethodSpec frozen = builder.freeze();
+        assertThat(frozen).isEqualTo(built);
+        assertThat(frozen.parameters)
+                .isSameAs(((FreezableList<ParameterSpec>) builder.parameters).view());
+        try {
+            builder.addStatement("return");
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("this builder was frozen");
+        }
+        try {
+            builder.addModifiers(Modifier.PUBLIC);
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("this builder was frozen");
+        }
+        try {
+            builder.freeze();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("this builder was frozen");
+        }
+        assertThat(frozen.code.toString()).isEqualTo("java.lang.System.out.println(bites);\n");
+    }
+
+    @Test
+    void withEdits() {
+        MethodSpec eat = MethodSpec.methodBuilder("eat")
+                .addParameter(int.class, "bites")
+                .build();
+        AnnotationSpec deprecated = AnnotationSpec.builder(Deprecated.class).build();
+        CodeBlock code = CodeBlock.builder().addStatement("return").build();
+        MethodSpec edited = eat
+                .withAnnotationAdded(deprecated)
+                .withModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .withCode(code);
+        assertThat(edited).isEqualTo(eat.toBuilder()
+                .addAnnotation(deprecated)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addCode(code)
+                .build());
+        assertThat(edited.parameters).isSameAs(eat.parameters);
+        assertThat(eat.annotations).isEmpty();
+        try {
+            edited.withModifiers(Modifier.ABSTRACT);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessage("abstract method eat cannot have code");
+        }
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public final class PersistentVectorTest {
+    @Test
+    public void plusMatchesArrayList() {
+        List<Integer> expected = new ArrayList<>();
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        // Enough elements for a tree three levels deep.
+        for (int i = 0; i < 40_000; i++) {
+            expected.add(i);
+            vector = vector.plus(i);
+        }
+        assertThat(vector).isEqualTo(expected);
+    }
+
+    @Test
+    public void ofMatchesPlus() {
+        for (int size : new int[] {0, 1, 31, 32, 33, 1024, 1056, 1057, 33_000}) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                expected.add(i);
+            }
+            PersistentVector<Integer> vector = PersistentVector.of(expected);
+            assertThat(vector).isEqualTo(expected);
+            // Appending after a bulk conversion continues the same tree.
+            expected.add(-1);
+            assertThat(vector.plus(-1)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void editsDontChangeOriginal() {
+        Random random = new Random(0);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            expected.add(i);
+        }
+        PersistentVector<Integer> original = PersistentVector.of(expected);
+        PersistentVector<Integer> vector = original;
+        List<Integer> edited = new ArrayList<>(expected);
+        for (int i = 0; i < 1_000; i++) {
+            int index = random.nextInt(edited.size());
+            vector = vector.with(index, -i);
+            edited.set(index, -i);
+            vector = vector.plus(i);
+            edited.add(i);
+        }
+        assertThat(vector).isEqualTo(edited);
+        assertThat(original).isEqualTo(expected);
+    }
+
+    @Test
+    public void immutable() {
+        PersistentVector<String> vector = PersistentVector.<String>empty().plus("a");
+        try {
+            vector.add("b");
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            vector.get(1);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class StatementSplitterTest {
+    @Test
+    public void topLevelStatements() {
+        CodeBlock block = CodeBlock.builder()
+                .addStatement("int a = 1")
+                .beginControlFlow("if (a > 0)")
+                .addStatement("a--")
+                .nextControlFlow("else")
+                .addStatement("a++")
+                .endControlFlow()
+                .add(CodeBlock.of("$L", CodeBlock.builder()
+                        .addStatement("b()")
+                        .addStatement("c()")
+                        .build()))
+                .add("d(\n")
+                .add("    a);\n")
+                .build();
+        List<CodeBlock> statements = StatementSplitter.topLevelStatements(block);
+        assertThat(statements).extracting(CodeBlock::toString).containsExactly(
+                "int a = 1;\n",
+                "if (a > 0) {\n  a--;\n} else {\n  a++;\n}\n",
+                "b();\n",
+                "c();\n",
+                "d(\n    a);\n");
+        assertThat(StatementSplitter.statementCount(block)).isEqualTo(9);
+    }
+
+    @Test
+    public void declaredLocals() {
+        assertThat(StatementSplitter.declaredLocals("int a = 1;\n")).containsExactly("a");
+        assertThat(StatementSplitter.declaredLocals("final java.util.Map<K, V> map;\n"))
+                .containsExactly("map");
+        assertThat(StatementSplitter.declaredLocals("int a = f(b, c), d[] = {e, f}, g;\n"))
+                .containsExactly("a", "d", "g");
+        assertThat(StatementSplitter.declaredLocals("String s = \"a, b\";\n"))
+                .containsExactly("s");
+        assertThat(StatementSplitter.declaredLocals("return a;\n")).isEmpty();
+        assertThat(StatementSplitter.declaredLocals("a = b;\n")).isEmpty();
+        assertThat(StatementSplitter.declaredLocals("a.b(c);\n")).isEmpty();
+        assertThat(StatementSplitter.declaredLocals("for (int i = 0; i < 3; i++) {\n}\n")).isEmpty();
+    }
+
+    @Test
+    public void chunksKeepLocalsTogether() {
+        List<CodeBlock> statements = StatementSplitter.topLevelStatements(CodeBlock.builder()
+                .addStatement("a()")
+                .addStatement("int b = 1")
+                .addStatement("c()")
+                .addStatement("d(b)")
+                .addStatement("e(\"b\")")
+                .addStatement("f()")
+                .build());
+        assertThat(StatementSplitter.chunks(statements, 2))
+                .extracting(CodeBlock::toString)
+                .containsExactly("a();\n", "int b = 1;\nc();\nd(b);\n", "e(\"b\");\nf();\n");
+    }
+}
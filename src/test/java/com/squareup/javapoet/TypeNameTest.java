@@ -186,6 +186,10 @@ public class TypeNameTest {
         assertThat(ClassName.get("java.lang", "String").isBoxedPrimitive()).isFalse();
         assertThat(TypeName.VOID.isBoxedPrimitive()).isFalse();
         assertThat(ClassName.get("java.lang", "Void").isBoxedPrimitive()).isFalse();
+        assertThat(ClassName.get("com.example", "Integer").isBoxedPrimitive()).isFalse();
+        assertThat(ClassName.get("java.lang", "Integer")
+                .annotated(AnnotationSpec.builder(Deprecated.class).build())
+                .isBoxedPrimitive()).isFalse();
     }
 
     private void assertEqualsHashCodeAndToString(TypeName a, TypeName b) {
@@ -27,15 +27,21 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EventListener;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import javax.annotation.processing.Messager;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
 
 import com.google.testing.compile.Compiler;
 import com.squareup.javapoet.compile.EvaluatingProcessor;
@@ -2405,6 +2411,631 @@ public final class TypeSpecTest {
                 + "}\n");
     }
 
+    @Test
+    public void splitStaticInitializer() {
+        TypeSpec taco = TypeSpec.classBuilder("Taco")
+                .addField(FieldSpec.builder(int.class, "SIZE", Modifier.STATIC, Modifier.FINAL)
+                        .initializer("3")
+                        .build())
+                .addField(FieldSpec.builder(int[].class, "sizes", Modifier.STATIC)
+                        .initializer("$L", CodeBlock.ofIntArray(1, 2))
+                        .build())
+                .addField(String.class, "NAME", Modifier.STATIC, Modifier.FINAL)
+                .addStaticBlock(CodeBlock.builder()
+                        .addStatement("System.out.println(SIZE)")
+                        .addStatement("int total = SIZE")
+                        .beginControlFlow("for (int size : sizes)")
+                        .addStatement("total += size")
+                        .endControlFlow()
+                        .addStatement("System.out.println(total)")
+                        .addStatement("NAME = $S", "taco")
+                        .addStatement("System.out.println(NAME)")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("staticInit1").build())
+                .splitStaticInitializer(2)
+                .build();
+        assertThat(toString(taco)).isEqualTo(""
+                + "package com.squareup.tacos;\n"
+                + "\n"
+                + "import java.lang.String;\n"
+                + "\n"
+                + "class Taco {\n"
+                + "  static final int SIZE = 3;\n"
+                + "\n"
+                + "  static int[] sizes;\n"
+                + "\n"
+                + "  static final String NAME;\n"
+                + "\n"
+                + "  static {\n"
+                + "    staticInit0();\n"
+                + "    staticInit2();\n"
+                + "    NAME = \"taco\";\n"
+                + "    staticInit3();\n"
+                + "  }\n"
+                + "\n"
+                + "  void staticInit1() {\n"
+                + "  }\n"
+                + "\n"
+                + "  private static void staticInit0() {\n"
+                + "    sizes = new int[] {1, 2};\n"
+                + "    System.out.println(SIZE);\n"
+                + "  }\n"
+                + "\n"
+                + "  private static void staticInit2() {\n"
+                + "    int total = SIZE;\n"
+                + "    for (int size : sizes) {\n"
+                + "      total += size;\n"
+                + "    }\n"
+                + "    System.out.println(total);\n"
+                + "  }\n"
+                + "\n"
+                + "  private static void staticInit3() {\n"
+                + "    System.out.println(NAME);\n"
+                + "  }\n"
+                + "}\n");
+    }
+
+    @Test
+    public void splitStaticInitializerFillsLargeArraysInSlices() {
+        TypeSpec taco = TypeSpec.classBuilder("Taco")
+                .addField(FieldSpec.builder(int.class, "SIZE", Modifier.STATIC, Modifier.FINAL)
+                        .initializer("2")
+                        .build())
+                .addField(FieldSpec.builder(int[].class, "TABLE", Modifier.STATIC, Modifier.FINAL)
+                        .initializer(CodeBlock.ofIntArray(1, 2, 3, 4, 5))
+                        .build())
+                .addField(FieldSpec.builder(long[].class, "longs", Modifier.STATIC)
+                        .initializer(CodeBlock.ofLongArray(6L, 7L, 8L))
+                        .build())
+                .splitStaticInitializer(2)
+                .build();
+        assertThat(toString(taco)).isEqualTo(""
+                + "package com.squareup.tacos;\n"
+                + "\n"
+                + "import java.lang.System;\n"
+                + "\n"
+                + "class Taco {\n"
+                + "  static final int SIZE = 2;\n"
+                + "\n"
+                + "  static final int[] TABLE;\n"
+                + "\n"
+                + "  static long[] longs;\n"
+                + "\n"
+                + "  static {\n"
+                + "    TABLE = new int[5];\n"
+                + "    staticInit0();\n"
+                + "    staticInit1();\n"
+                + "    staticInit2();\n"
+                + "    staticInit3();\n"
+                + "    staticInit4();\n"
+                + "    staticInit5();\n"
+                + "  }\n"
+                + "\n"
+                + "  private static void staticInit0() {\n"
+                + "    System.arraycopy(new int[] {1, 2}, 0, TABLE, 0, 2);\n"
+                + "  }\n"
+                + "\n"
+                + "  private static void staticInit1() {\n"
+                + "    System.arraycopy(new int[] {3, 4}, 0, TABLE, 2, 2);\n"
+                + "  }\n"
+                + "\n"
+                + "  private static void staticInit2() {\n"
+                + "    System.arraycopy(new int[] {5}, 0, TABLE, 4, 1);\n"
+                + "  }\n"
+                + "\n"
+                + "  private static void staticInit3() {\n"
+                + "    longs = new long[3];\n"
+                + "  }\n"
+                + "\n"
+                + "  private static void staticInit4() {\n"
+                + "    System.arraycopy(new long[] {6L, 7L}, 0, longs, 0, 2);\n"
+                + "  }\n"
+                + "\n"
+                + "  private static void staticInit5() {\n"
+                + "    System.arraycopy(new long[] {8L}, 0, longs, 2, 1);\n"
+                + "  }\n"
+                + "}\n");
+    }
+
+    @Test
+    public void splitStaticInitializerKeepsLargeArrayBeforeFinalField() {
+        TypeSpec taco = TypeSpec.classBuilder("Taco")
+                .addField(FieldSpec.builder(int[].class, "TABLE", Modifier.STATIC, Modifier.FINAL)
+                        .initializer(CodeBlock.ofIntArray(1, 2, 3))
+                        .build())
+                .addField(FieldSpec.builder(int.class, "FIRST", Modifier.STATIC, Modifier.FINAL)
+                        .initializer("TABLE[0]")
+                        .build())
+                .splitStaticInitializer(2)
+                .build();
+        assertThat(toString(taco)).isEqualTo(""
+                + "package com.squareup.tacos;\n"
+                + "\n"
+                + "class Taco {\n"
+                + "  static final int[] TABLE = {1, 2, 3};\n"
+                + "\n"
+                + "  static final int FIRST = TABLE[0];\n"
+                + "}\n");
+    }
+
+    @Test
+    public void splitStaticInitializerUnderLimit() {
+        TypeSpec taco = TypeSpec.classBuilder("Taco")
+                .addField(FieldSpec.builder(int.class, "size", Modifier.STATIC)
+                        .initializer("3")
+                        .build())
+                .addStaticBlock(CodeBlock.of("size++;\n"))
+                .splitStaticInitializer(2)
+                .build();
+        assertThat(taco).isEqualTo(taco.toBuilder().build());
+        assertThat(taco.methodSpecs).isEmpty();
+        assertThat(taco.fieldSpecs.get(0).initializer.toString()).isEqualTo("3");
+    }
+
+    @Test
+    public void splitStaticInitializerOnInterface() {
+        try {
+            TypeSpec.interfaceBuilder("Taco").splitStaticInitializer(10);
+            fail();
+        } catch (UnsupportedOperationException expected) {
+            assertThat(expected).hasMessage("INTERFACE can't split static initializers");
+        }
+    }
+
+    @Test
+    public void splitLargeMethods() {
+        TypeSpec taco = TypeSpec.classBuilder("Taco")
+                .addMethod(MethodSpec.methodBuilder("fill")
+                        .addTypeVariable(TypeVariableName.get("T"))
+                        .addModifiers(Modifier.STATIC)
+                        .returns(int.class)
+                        .addParameter(ParameterizedTypeName.get(ClassName.get(List.class),
+                                TypeVariableName.get("T")), "list")
+                        .addParameter(TypeVariableName.get("T"), "value")
+                        .addException(IOException.class)
+                        .addStatement("list.add(value)")
+                        .addStatement("list.add(value)")
+                        .addStatement("int count = list.size()")
+                        .beginControlFlow("if (count > 3)")
+                        .addStatement("list.clear()")
+                        .endControlFlow()
+                        .addStatement("list.add(value)")
+                        .addStatement("list.add(value)")
+                        .addStatement("return list.size()")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("small")
+                        .addStatement("a()")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("noReturn")
+                        .addStatement("a()")
+                        .addStatement("b()")
+                        .addStatement("c()")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("assignsParameter")
+                        .addParameter(int.class, "a")
+                        .addStatement("a++")
+                        .addStatement("b(a)")
+                        .addStatement("c(a)")
+                        .build())
+                .splitLargeMethods(2)
+                .build();
+        assertThat(toString(taco)).isEqualTo(""
+                + "package com.squareup.tacos;\n"
+                + "\n"
+                + "import java.io.IOException;\n"
+                + "import java.util.List;\n"
+                + "\n"
+                + "class Taco {\n"
+                + "  static <T> int fill(List<T> list, T value) throws IOException {\n"
+                + "    fillPart0(list, value);\n"
+                + "    fillPart1(list, value);\n"
+                + "    fillPart2(list, value);\n"
+                + "    return list.size();\n"
+                + "  }\n"
+                + "\n"
+                + "  void small() {\n"
+                + "    a();\n"
+                + "  }\n"
+                + "\n"
+                + "  void noReturn() {\n"
+                + "    noReturnPart0();\n"
+                + "    c();\n"
+                + "  }\n"
+                + "\n"
+                + "  void assignsParameter(int a) {\n"
+                + "    a++;\n"
+                + "    b(a);\n"
+                + "    c(a);\n"
+                + "  }\n"
+                + "\n"
+                + "  private static <T> void fillPart0(List<T> list, T value) throws IOException {\n"
+                + "    list.add(value);\n"
+                + "    list.add(value);\n"
+                + "  }\n"
+                + "\n"
+                + "  private static <T> void fillPart1(List<T> list, T value) throws IOException {\n"
+                + "    int count = list.size();\n"
+                + "    if (count > 3) {\n"
+                + "      list.clear();\n"
+                + "    }\n"
+                + "  }\n"
+                + "\n"
+                + "  private static <T> void fillPart2(List<T> list, T value) throws IOException {\n"
+                + "    list.add(value);\n"
+                + "    list.add(value);\n"
+                + "  }\n"
+                + "\n"
+                + "  private void noReturnPart0() {\n"
+                + "    a();\n"
+                + "    b();\n"
+                + "  }\n"
+                + "}\n");
+    }
+
+    @Test
+    public void splitDoesNotComputeLazyCodeBlocks() {
+        AtomicInteger calls = new AtomicInteger();
+        CodeBlock lazy = CodeBlock.lazy(() -> {
+            calls.incrementAndGet();
+            return CodeBlock.of("b(count)");
+        });
+        CodeBlock staticLazy = CodeBlock.lazy(() -> {
+            calls.incrementAndGet();
+            return CodeBlock.of("b()");
+        });
+        MethodSpec fill = MethodSpec.methodBuilder("fill")
+                .addStatement("int count = 0")
+                .addStatement("a()")
+                .addStatement("$L", lazy)
+                .addStatement("c()")
+                .addStatement("d()")
+                .build();
+        assertThat(fill.estimatedBytecodeSize()).isGreaterThan(0);
+        TypeSpec taco = TypeSpec.classBuilder("Taco")
+                .addField(int.class, "size", Modifier.STATIC, Modifier.FINAL)
+                .addStaticBlock(CodeBlock.builder()
+                        .addStatement("a()")
+                        .addStatement("$L", staticLazy)
+                        .addStatement("size = 3")
+                        .build())
+                .addMethod(fill)
+                .splitStaticInitializer(1)
+                .splitLargeMethods(2)
+                .build();
+        assertThat(calls.get()).isEqualTo(0);
+        assertThat(toString(taco)).isEqualTo(""
+                + "package com.squareup.tacos;\n"
+                + "\n"
+                + "class Taco {\n"
+                + "  static final int size;\n"
+                + "\n"
+                + "  static {\n"
+                + "    staticInit0();\n"
+                + "    b();\n"
+                + "    size = 3;\n"
+                + "  }\n"
+                + "\n"
+                + "  void fill() {\n"
+                + "    int count = 0;\n"
+                + "    a();\n"
+                + "    b(count);\n"
+                + "    c();\n"
+                + "    d();\n"
+                + "  }\n"
+                + "\n"
+                + "  private static void staticInit0() {\n"
+                + "    a();\n"
+                + "  }\n"
+                + "}\n");
+        assertThat(calls.get()).isGreaterThan(0);
+    }
+
+    @Test
+    public void splitKeepsLazyCodeBlocksThatMayReturnInPlace() {
+        MethodSpec.Builder run = MethodSpec.methodBuilder("run")
+                .addParameter(boolean.class, "flag");
+        for (int i = 0; i < 6; i++) {
+            run.addStatement("a($L)", i);
+        }
+        run.addCode(CodeBlock.lazy(() -> CodeBlock.builder()
+                .beginControlFlow("if (flag)")
+                .addStatement("return")
+                .endControlFlow()
+                .build()));
+        for (int i = 0; i < 6; i++) {
+            run.addStatement("b($L)", i);
+        }
+        TypeSpec taco = TypeSpec.classBuilder("Taco")
+                .addMethod(run.build())
+                .splitLargeMethods(3)
+                .build();
+        assertThat(toString(taco)).isEqualTo(""
+                + "package com.squareup.tacos;\n"
+                + "\n"
+                + "class Taco {\n"
+                + "  void run(boolean flag) {\n"
+                + "    runPart0(flag);\n"
+                + "    runPart1(flag);\n"
+                + "    if (flag) {\n"
+                + "      return;\n"
+                + "    }\n"
+                + "    b(0);\n"
+                + "    b(1);\n"
+                + "    b(2);\n"
+                + "    b(3);\n"
+                + "    b(4);\n"
+                + "    b(5);\n"
+                + "  }\n"
+                + "\n"
+                + "  private void runPart0(boolean flag) {\n"
+                + "    a(0);\n"
+                + "    a(1);\n"
+                + "    a(2);\n"
+                + "  }\n"
+                + "\n"
+                + "  private void runPart1(boolean flag) {\n"
+                + "    a(3);\n"
+                + "    a(4);\n"
+                + "    a(5);\n"
+                + "  }\n"
+                + "}\n");
+    }
+
+    @Test
+    public void enumLookups() {
+        Map<String, Integer> codes = new LinkedHashMap<>();
+        codes.put("ROCK", 1);
+        codes.put("PAPER", 2);
+        codes.put("SCISSORS", 4);
+        Map<String, Integer> wireCodes = new LinkedHashMap<>();
+        wireCodes.put("ROCK", 100);
+        wireCodes.put("PAPER", -1);
+        wireCodes.put("SCISSORS", 70000);
+        Map<String, String> names = new LinkedHashMap<>();
+        names.put("ROCK", "rock");
+        names.put("PAPER", "paper");
+        names.put("SCISSORS", "scissors");
+        TypeSpec roshambo = TypeSpec.enumBuilder("Roshambo")
+                .addModifiers(Modifier.PUBLIC)
+                .addEnumConstant("ROCK")
+                .addEnumConstant("PAPER")
+                .addEnumConstant("SCISSORS")
+                .addCachedValues("VALUES")
+                .addEnumCodeLookup("fromCode", codes)
+                .addEnumCodeLookup("fromWireCode", wireCodes)
+                .addEnumNameLookup("fromName", names)
+                .build();
+        assertThat(toString(roshambo)).isEqualTo(""
+                + "package com.squareup.tacos;\n"
+                + "\n"
+                + "import java.lang.String;\n"
+                + "import java.util.Arrays;\n"
+                + "\n"
+                + "public enum Roshambo {\n"
+                + "  ROCK,\n"
+                + "\n"
+                + "  PAPER,\n"
+                + "\n"
+                + "  SCISSORS;\n"
+                + "\n"
+                + "  private static final Roshambo[] VALUES = values();\n"
+                + "\n"
+                + "  private static final Roshambo[] FROM_CODE_TABLE = {ROCK, PAPER, null, SCISSORS};\n"
+                + "\n"
+                + "  private static final int[] FROM_WIRE_CODE_CODES = {-1, 100, 70000};\n"
+                + "\n"
+                + "  private static final Roshambo[] FROM_WIRE_CODE_CONSTANTS = {PAPER, ROCK, SCISSORS};\n"
+                + "\n"
+                + "  public static Roshambo fromCode(int code) {\n"
+                + "    if (code < 1 || code > 4) {\n"
+                + "      return null;\n"
+                + "    }\n"
+                + "    return FROM_CODE_TABLE[code - 1];\n"
+                + "  }\n"
+                + "\n"
+                + "  public static Roshambo fromWireCode(int code) {\n"
+                + "    int index = Arrays.binarySearch(FROM_WIRE_CODE_CODES, code);\n"
+                + "    return index >= 0 ? FROM_WIRE_CODE_CONSTANTS[index] : null;\n"
+                + "  }\n"
+                + "\n"
+                + "  public static Roshambo fromName(String name) {\n"
+                + "    if (name == null) {\n"
+                + "      return null;\n"
+                + "    }\n"
+                + "    int nameIndex = -1;\n"
+                + "    switch ((int) (((name.hashCode() ^ \"!   \".charAt(name.hashCode() * 0x9e3779b9 >>> 30) * 0x85ebca6b) * 0xc2b2ae35 & 0xffffffffL) * 4 >>> 32)) {\n"
+                + "      case 0:\n"
+                + "        if (name.equals(\"rock\")) {\n"
+                + "          nameIndex = 0;\n"
+                + "        }\n"
+                + "        break;\n"
+                + "      case 2:\n"
+                + "        if (name.equals(\"scissors\")) {\n"
+                + "          nameIndex = 2;\n"
+                + "        }\n"
+                + "        break;\n"
+                + "      case 3:\n"
+                + "        if (name.equals(\"paper\")) {\n"
+                + "          nameIndex = 1;\n"
+                + "        }\n"
+                + "        break;\n"
+                + "    }\n"
+                + "    switch (nameIndex) {\n"
+                + "      case 0:\n"
+                + "        return Roshambo.ROCK;\n"
+                + "      case 1:\n"
+                + "        return Roshambo.PAPER;\n"
+                + "      case 2:\n"
+                + "        return Roshambo.SCISSORS;\n"
+                + "      default:\n"
+                + "        return null;\n"
+                + "    }\n"
+                + "  }\n"
+                + "}\n");
+    }
+
+    @Test
+    public void enumCodeLookupRejectsDuplicateCodes() {
+        Map<String, Integer> codes = new LinkedHashMap<>();
+        codes.put("ROCK", 1);
+        codes.put("PAPER", 1);
+        TypeSpec.Builder roshambo = TypeSpec.enumBuilder("Roshambo")
+                .addEnumConstant("ROCK")
+                .addEnumConstant("PAPER");
+        try {
+            roshambo.addEnumCodeLookup("fromCode", codes);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessage("ROCK and PAPER have the same code: 1");
+        }
+    }
+
+    @Test
+    public void enumLookupsRequireEnum() {
+        try {
+            TypeSpec.classBuilder("Taco").addEnumNameLookup("fromName");
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("Taco is not enum");
+        }
+    }
+
+    @Test
+    public void specialize() {
+        TypeVariableName t = TypeVariableName.get("T");
+        TypeVariableName u = TypeVariableName.get("U", ParameterizedTypeName.get(
+                ClassName.get(Comparable.class), t));
+        TypeSpec buffer = TypeSpec.classBuilder("Buffer")
+                .addTypeVariable(t)
+                .addTypeVariable(u)
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(Comparator.class), t))
+                .addField(ArrayTypeName.of(t), "values", Modifier.PRIVATE)
+                .addField(FieldSpec.builder(t, "empty", Modifier.PRIVATE)
+                        .initializer("($T) values[0]", t)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("get")
+                        .returns(t)
+                        .addParameter(int.class, "index")
+                        .addStatement("return values[index]")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("asList")
+                        .returns(ParameterizedTypeName.get(ClassName.get(List.class),
+                                WildcardTypeName.subtypeOf(t)))
+                        .addStatement("$T<$T> result = new $T<>()", List.class, t, ArrayList.class)
+                        .beginControlFlow("for ($T value : values)", t)
+                        .addStatement("result.add($T.valueOf(value))", t)
+                        .endControlFlow()
+                        .addStatement("return result")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("identity")
+                        .addTypeVariable(t)
+                        .returns(t)
+                        .addParameter(t, "value")
+                        .addStatement("return value")
+                        .build())
+                .addType(TypeSpec.classBuilder("Cursor")
+                        .addField(t, "current")
+                        .build())
+                .build();
+        TypeSpec intBuffer = buffer.specialize("IntBuffer", Collections.singletonMap(t, TypeName.INT));
+        assertThat(toString(intBuffer)).isEqualTo(""
+                + "package com.squareup.tacos;\n"
+                + "\n"
+                + "import java.lang.Comparable;\n"
+                + "import java.lang.Integer;\n"
+                + "import java.util.ArrayList;\n"
+                + "import java.util.Comparator;\n"
+                + "import java.util.List;\n"
+                + "\n"
+                + "class IntBuffer<U extends Comparable<Integer>> implements Comparator<Integer> {\n"
+                + "  private int[] values;\n"
+                + "\n"
+                + "  private int empty = (int) values[0];\n"
+                + "\n"
+                + "  int get(int index) {\n"
+                + "    return values[index];\n"
+                + "  }\n"
+                + "\n"
+                + "  List<? extends Integer> asList() {\n"
+                + "    List<Integer> result = new ArrayList<>();\n"
+                + "    for (int value : values) {\n"
+                + "      result.add(Integer.valueOf(value));\n"
+                + "    }\n"
+                + "    return result;\n"
+                + "  }\n"
+                + "\n"
+                + "  <T> T identity(T value) {\n"
+                + "    return value;\n"
+                + "  }\n"
+                + "\n"
+                + "  class Cursor {\n"
+                + "    int current;\n"
+                + "  }\n"
+                + "}\n");
+        assertThat(buffer.typeVariables).containsExactly(t, u);
+    }
+
+    @Test
+    public void specializeUnknownTypeVariable() {
+        TypeSpec buffer = TypeSpec.classBuilder("Buffer")
+                .addTypeVariable(TypeVariableName.get("T"))
+                .build();
+        try {
+            buffer.specialize("IntBuffer",
+                    Collections.singletonMap(TypeVariableName.get("E"), TypeName.INT));
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessage("E is not a type variable of Buffer");
+        }
+    }
+
+    @Test
+    public void oversizedMethodWarnings() {
+        CodeBlock.Builder registrations = CodeBlock.builder();
+        for (int i = 0; i < 100; i++) {
+            registrations.addStatement("register($S)", "taco" + i);
+        }
+        TypeSpec taco = TypeSpec.classBuilder("Taco")
+                .addStaticBlock(registrations.build())
+                .addMethod(MethodSpec.methodBuilder("small")
+                        .addStatement("register($S)", "taco")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("large")
+                        .addParameter(int.class, "a")
+                        .addParameter(String.class, "b")
+                        .addCode(registrations.build())
+                        .build())
+                .addType(TypeSpec.classBuilder("Topping")
+                        .addModifiers(Modifier.STATIC)
+                        .addMethod(MethodSpec.constructorBuilder()
+                                .addCode(registrations.build())
+                                .build())
+                        .build())
+                .build();
+        assertThat(taco.oversizedMethodWarnings(MethodSpec.FREQ_INLINE_SIZE)).containsExactly(
+                "Taco static initializer is about 801 bytes of bytecode, over the limit of 325",
+                "Taco large(int, java.lang.String) is about 801 bytes of bytecode, over the limit "
+                        + "of 325",
+                "Taco.Topping constructor Topping() is about 801 bytes of bytecode, over the limit "
+                        + "of 325");
+        assertThat(taco.oversizedMethodWarnings(MethodSpec.HUGE_METHOD_LIMIT)).isEmpty();
+    }
+
+    @Test
+    public void reportOversizedMethods() {
+        Element element = Mockito.mock(Element.class);
+        Messager messager = Mockito.mock(Messager.class);
+        TypeSpec taco = TypeSpec.classBuilder("Taco")
+                .addOriginatingElement(element)
+                .addMethod(MethodSpec.methodBuilder("large")
+                        .addStatement("register($S, $S)", "taco", "cheese")
+                        .build())
+                .build();
+        taco.reportOversizedMethods(messager, 10);
+        Mockito.verify(messager).printMessage(Diagnostic.Kind.WARNING,
+                "Taco large() is about 11 bytes of bytecode, over the limit of 10", element);
+    }
+
     @Test
     public void initializerBlockInRightPlace() {
         TypeSpec taco = TypeSpec.classBuilder("Taco")
@@ -2752,4 +3383,265 @@ public final class TypeSpecTest {
                 + "class Taco {\n"
                 + "}\n");
     }
+
+    @Test
+    public void lazyMethods() {
+        List<String> calls = new ArrayList<>();
+        TypeSpec taco = TypeSpec.classBuilder("Taco")
+                .addLazyMethod(() -> {
+                    calls.add("toppings");
+                    return MethodSpec.methodBuilder("toppings")
+                            .returns(ParameterizedTypeName.get(List.class, String.class))
+                            .addStatement("return $T.emptyList()", Collections.class)
+                            .build();
+                })
+                .addMethod(MethodSpec.methodBuilder("eat").build())
+                .addMethod(MethodSpec.constructorBuilder().build())
+                .build();
+        assertThat(calls).isEmpty();
+        assertThat(toString(taco)).isEqualTo(""
+                + "package com.squareup.tacos;\n"
+                + "\n"
+                + "import java.lang.String;\n"
+                + "import java.util.Collections;\n"
+                + "import java.util.List;\n"
+                + "\n"
+                + "class Taco {\n"
+                + "  Taco() {\n"
+                + "  }\n"
+                + "\n"
+                + "  void eat() {\n"
+                + "  }\n"
+                + "\n"
+                + "  List<String> toppings() {\n"
+                + "    return Collections.emptyList();\n"
+                + "  }\n"
+                + "}\n");
+        // Once to collect imports, and once to write the file.
+        assertThat(calls).containsExactly("toppings", "toppings");
+    }
+
+    @Test
+    public void lazyMethodsInEnumConstant() {
+        TypeSpec roshambo = TypeSpec.enumBuilder("Roshambo")
+                .addEnumConstant("ROCK", TypeSpec.anonymousClassBuilder("")
+                        .addLazyMethod(() -> MethodSpec.methodBuilder("toString")
+                                .addAnnotation(Override.class)
+                                .addModifiers(Modifier.PUBLIC)
+                                .returns(String.class)
+                                .addStatement("return $S", "rock")
+                                .build())
+                        .build())
+                .build();
+        assertThat(toString(roshambo)).isEqualTo(""
+                + "package com.squareup.tacos;\n"
+                + "\n"
+                + "import java.lang.Override;\n"
+                + "import java.lang.String;\n"
+                + "\n"
+                + "enum Roshambo {\n"
+                + "  ROCK {\n"
+                + "    @Override\n"
+                + "    public String toString() {\n"
+                + "      return \"rock\";\n"
+                + "    }\n"
+                + "  }\n"
+                + "}\n");
+    }
+
+    @Test
+    public void membersAreEmittedInKindOrder() {
+        TypeSpec taco = TypeSpec.classBuilder("Taco")
+                .addFields(IntStream.range(0, 4)
+                        .mapToObj(i -> i % 2 == 0
+                                ? FieldSpec.builder(int.class, "instance" + i).build()
+                                : FieldSpec.builder(int.class, "static" + i, Modifier.STATIC).build())
+                        ::iterator)
+                .addMethod(MethodSpec.methodBuilder("eat").build())
+                .addMethod(MethodSpec.constructorBuilder().build())
+                .addMethod(MethodSpec.methodBuilder("share").build())
+                .build();
+        assertThat(taco.fieldSpecs).extracting(fieldSpec -> fieldSpec.name)
+                .containsExactly("instance0", "static1", "instance2", "static3");
+        assertThat(toString(taco)).isEqualTo(""
+                + "package com.squareup.tacos;\n"
+                + "\n"
+                + "class Taco {\n"
+                + "  static int static1;\n"
+                + "\n"
+                + "  static int static3;\n"
+                + "\n"
+                + "  int instance0;\n"
+                + "\n"
+                + "  int instance2;\n"
+                + "\n"
+                + "  Taco() {\n"
+                + "  }\n"
+                + "\n"
+                + "  void eat() {\n"
+                + "  }\n"
+                + "\n"
+                + "  void share() {\n"
+                + "  }\n"
+                + "}\n");
+    }
+
+    @Test
+    public void enumConstantsFromIterable() {
+        TypeSpec roshambo = TypeSpec.enumBuilder("Roshambo")
+                .addEnumConstants(Stream.of("ROCK", "PAPER", "SCISSORS")::iterator)
+                .build();
+        assertThat(roshambo.enumConstants.get("ROCK"))
+                .isSameAs(roshambo.enumConstants.get("PAPER"));
+        assertThat(toString(roshambo)).isEqualTo(""
+                + "package com.squareup.tacos;\n"
+                + "\n"
+                + "enum Roshambo {\n"
+                + "  ROCK,\n"
+                + "\n"
+                + "  PAPER,\n"
+                + "\n"
+                + "  SCISSORS\n"
+                + "}\n");
+    }
+
+    @Test
+    public void freezeHandsOverEnumConstants() {
+        TypeSpec.Builder builder = TypeSpec.enumBuilder("Roshambo")
+                .addEnumConstants(Arrays.asList("ROCK", "PAPER"));
+        TypeSpec frozen = builder.freeze();
+        assertThat(frozen.enumConstants)
+                .isSameAs(((FreezableMap<String, TypeSpec>) builder.enumConstants).view());
+        assertThat(frozen.enumConstants).containsOnlyKeys("ROCK", "PAPER");
+        try {
+            builder.addEnumConstant("SCISSORS");
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("this builder was frozen");
+        }
+    }
+
+    @Test
+    public void freezeHandsOverMembers() {
+        TypeSpec.Builder builder = TypeSpec.classBuilder("Taco")
+                .addField(int.class, "calories")
+                .addMethod(MethodSpec.methodBuilder("eat").build());
+        TypeSpec built = builder.build();
+        TypeSpec frozen = builder.freeze();
+        assertThat(frozen.toString()).isEqualTo(built.toString());
+        assertThat(frozen.methodSpecs)
+                .isSameAs(((FreezableList<MethodSpec>) builder.methodSpecs).view());
+        assertThat(frozen.fieldSpecs)
+                .isSameAs(((FreezableList<FieldSpec>) builder.fieldSpecs).view());
+        try {
+            builder.addMethod(MethodSpec.methodBuilder("share").build());
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("this builder was frozen");
+        }
+        try {
+            builder.addModifiers(Modifier.PUBLIC);
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("this builder was frozen");
+        }
+        try {
+            builder.alwaysQualify("String");
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("this builder was frozen");
+        }
+        try {
+            builder.enumConstants.clear();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("this builder was frozen");
+        }
+        try {
+            frozen.fieldSpecs.clear();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            builder.build();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("this builder was frozen");
+        }
+        assertThat(frozen.methodSpecs).hasSize(1);
+    }
+
+    @Test
+    public void failedFreezeLeavesBuilderUsable() {
+        TypeSpec.Builder builder = TypeSpec.classBuilder("Taco")
+                .addMethod(MethodSpec.methodBuilder("eat").addModifiers(Modifier.ABSTRACT).build());
+        try {
+            builder.freeze();
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        builder.addModifiers(Modifier.ABSTRACT);
+        assertThat(builder.freeze().methodSpecs).hasSize(1);
+    }
+
+    @Test
+    public void withEdits() {
+        TypeSpec.Builder builder = TypeSpec.classBuilder("Taco")
+                .addField(int.class, "calories")
+                .addMethod(MethodSpec.methodBuilder("eat").build());
+        TypeSpec taco = builder.build();
+        AnnotationSpec deprecated = AnnotationSpec.builder(Deprecated.class).build();
+        FieldSpec count = FieldSpec.builder(int.class, "count", Modifier.STATIC).build();
+        MethodSpec constructor = MethodSpec.constructorBuilder().build();
+        MethodSpec share = MethodSpec.methodBuilder("share").build();
+        TypeSpec edited = taco
+                .withAnnotationAdded(deprecated)
+                .withModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .withFieldAdded(count)
+                .withMethodAdded(share)
+                .withMethodAdded(constructor);
+        TypeSpec expected = builder
+                .addAnnotation(deprecated)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addField(count)
+                .addMethod(share)
+                .addMethod(constructor)
+                .build();
+        assertThat(edited.toString()).isEqualTo(expected.toString());
+        assertThat(edited.fieldSpecs).isEqualTo(expected.fieldSpecs);
+        assertThat(edited.methodSpecs).isEqualTo(expected.methodSpecs);
+        assertThat(edited.typeSpecs).isSameAs(taco.typeSpecs);
+        assertThat(taco.annotations).isEmpty();
+        assertThat(taco.methodSpecs).hasSize(1);
+    }
+
+    @Test
+    public void withEditsAreValidated() {
+        TypeSpec taco = TypeSpec.classBuilder("Taco").build();
+        try {
+            taco.withMethodAdded(MethodSpec.methodBuilder("eat")
+                    .addModifiers(Modifier.ABSTRACT)
+                    .build());
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessage("non-abstract type Taco cannot declare abstract method eat");
+        }
+        TypeSpec food = TypeSpec.interfaceBuilder("Food").build();
+        try {
+            food.withFieldAdded(FieldSpec.builder(int.class, "CALORIES", Modifier.PUBLIC).build());
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(expected).hasMessage("INTERFACE Food.CALORIES requires modifiers [static, final]");
+        }
+        TypeSpec meal = TypeSpec.classBuilder("Meal")
+                .addModifiers(Modifier.ABSTRACT)
+                .addMethod(MethodSpec.methodBuilder("eat").addModifiers(Modifier.ABSTRACT).build())
+                .build();
+        try {
+            meal.withModifiers(Modifier.PUBLIC);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected).hasMessage("non-abstract type Meal cannot declare abstract method eat");
+        }
+    }
 }
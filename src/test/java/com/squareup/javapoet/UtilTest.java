@@ -66,6 +66,24 @@ public class UtilTest {
     stringLiteral("e^{i\\\\pi}+1=0", "e^{i\\pi}+1=0", " ");
   }
 
+  @Test public void stringLiteralsSplitAtConstantLimit() {
+    assertThat(Util.stringLiteralsWithDoubleQuotes("abcdef", " ", 6))
+        .containsExactly("\"abcdef\"");
+    assertThat(Util.stringLiteralsWithDoubleQuotes("abcdefg", " ", 3))
+        .containsExactly("\"abc\"", "\"def\"", "\"g\"");
+    // Escapes don't count, but characters outside of ASCII and NUL take more than one byte.
+    assertThat(Util.stringLiteralsWithDoubleQuotes("a\"\tb", " ", 2))
+        .containsExactly("\"a\\\"\"", "\"\\tb\"");
+    assertThat(Util.stringLiteralsWithDoubleQuotes("\u0000\u00ff\u20ac", " ", 4))
+        .containsExactly("\"\\u0000\u00ff\"", "\"\u20ac\"");
+    // Surrogate pairs stay together.
+    assertThat(Util.stringLiteralsWithDoubleQuotes("a\ud83c\udf2e", " ", 6))
+        .containsExactly("\"a\"", "\"\ud83c\udf2e\"");
+    // Line feeds are continued within a literal but not across literals.
+    assertThat(Util.stringLiteralsWithDoubleQuotes("ab\ncd\nef", " ", 6))
+        .containsExactly("\"ab\\n\"\n  + \"cd\\n\"", "\"ef\"");
+  }
+
   void stringLiteral(String string) {
     stringLiteral(string, string, " ");
   }